@@ -354,6 +354,7 @@ public class GeneratorOfRenderableObjects{
         }
     
         
+        SharedVariables.playback.addLayer(layerOnFlatMap);
         DecoratedLayer layerWithShader = new DecoratedLayer(layerOnFlatMap, shardingDecorator);
     System.out.println("NUM CONNECTIONS: "+layerOnFlatMap.getNumRenderables());
     insertBeforeCompass(wwd, layerWithShader);
@@ -643,6 +644,7 @@ public class GeneratorOfRenderableObjects{
         }
     
         
+        SharedVariables.playback.addLayer(layer);
         DecoratedLayer layerWithShader = new DecoratedLayer(layer, shardingDecorator);
     System.out.println("NUM CONNECTIONS: "+layer.getNumRenderables());
     insertBeforeCompass(wwd, layerWithShader);
@@ -0,0 +1,326 @@
+package it.graphitech.smeSpire;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.OGLStackHandler;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GLContext;
+
+/**
+ * Screen text drawn from a cache texture. Every string is rasterised once, the
+ * first time it is drawn, into a free row of the cache texture and reused in
+ * the following frames. The labels are queued by add() during the frame and
+ * drawn by flush() in one pass: one projection setup, one texture bind and one
+ * glDrawArrays.
+ * <p/>
+ * When the texture is full the cache is emptied and the strings are
+ * rasterised again. The texture and the stack handler are kept until the GL
+ * context changes.
+ */
+public class CachedTextRenderer {
+
+	static final int TEXTURE_SIZE = 1024;
+	//x, y, s, t, r, g, b, a
+	static final int FLOATS_PER_VERTEX = 8;
+
+	private static class Entry {
+		int x;
+		int y;
+		int width;
+		int height;
+		int descent;
+	}
+
+	//regions of the rasterised strings, by font then by text: the label
+	//strings are the keys, no key is built per label
+	private final HashMap<Font, HashMap<String, Entry>> cache = new HashMap<Font, HashMap<String, Entry>>();
+	private int numCached = 0;
+	private final HashMap<Font, FontMetrics> metrics = new HashMap<Font, FontMetrics>();
+	private final Graphics2D metricsGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).createGraphics();
+
+	//rows of the cache texture filled left to right, bottom to top
+	private int rowX = 0;
+	private int rowY = 0;
+	private int rowHeight = 0;
+
+	private int textureObject = 0;
+	private GLContext context;
+	private final OGLStackHandler ogsh = new OGLStackHandler();
+
+	private String[] texts = new String[32];
+	private Font[] fonts = new Font[32];
+	//x, y of the baseline start and r, g, b, a of every label
+	private float[] labels = new float[32 * 6];
+	private int numQueued = 0;
+
+	private float[] vertices = new float[32 * 4 * FLOATS_PER_VERTEX];
+	private FloatBuffer vertexBuffer;
+	private int numRasterised = 0;
+
+	public CachedTextRenderer() {
+
+	}
+
+	/**
+	 * Queues text with the start of its baseline at x, y in screen
+	 * coordinates.
+	 */
+	public void add(String text, Font font, double x, double y, Color color) {
+		if (text == null || text.length() == 0) {
+			return;
+		}
+		if (numQueued == texts.length) {
+			texts = Arrays.copyOf(texts, numQueued * 2);
+			fonts = Arrays.copyOf(fonts, numQueued * 2);
+			labels = Arrays.copyOf(labels, numQueued * 2 * 6);
+		}
+		texts[numQueued] = text;
+		fonts[numQueued] = font;
+		int j = numQueued * 6;
+		labels[j] = (float) x;
+		labels[j + 1] = (float) y;
+		labels[j + 2] = color.getRed() / 255f;
+		labels[j + 3] = color.getGreen() / 255f;
+		labels[j + 4] = color.getBlue() / 255f;
+		labels[j + 5] = color.getAlpha() / 255f;
+		numQueued++;
+	}
+
+	public int getNumQueued() {
+		return numQueued;
+	}
+
+	public int getNumCached() {
+		return numCached;
+	}
+
+	/**
+	 * Strings rasterised since the renderer was created.
+	 */
+	public int getNumRasterised() {
+		return numRasterised;
+	}
+
+	/**
+	 * Draws the queued labels and empties the queue.
+	 */
+	public void flush(DrawContext dc) {
+		if (numQueued == 0) {
+			return;
+		}
+		GL2 gl = dc.getGL().getGL2();
+		bindTexture(gl);
+
+		int numQuads = 0;
+		for (int i = 0; i < numQueued; i++) {
+			HashMap<String, Entry> fontCache = cache.get(fonts[i]);
+			if (fontCache == null) {
+				fontCache = new HashMap<String, Entry>();
+				cache.put(fonts[i], fontCache);
+			}
+			Entry e = fontCache.get(texts[i]);
+			if (e == null) {
+				e = rasterise(gl, texts[i], fonts[i]);
+				if (e == null) {
+					//the texture is full: draw what is queued, then start again
+					draw(dc, numQuads);
+					numQuads = 0;
+					clearCache();
+					e = rasterise(gl, texts[i], fonts[i]);
+					if (e == null) {
+						continue;
+					}
+				}
+				fontCache.put(texts[i], e);
+				numCached++;
+			}
+			if ((numQuads + 1) * 4 * FLOATS_PER_VERTEX > vertices.length) {
+				vertices = Arrays.copyOf(vertices, vertices.length * 2);
+			}
+			appendQuad(e, i, numQuads * 4 * FLOATS_PER_VERTEX);
+			numQuads++;
+		}
+		draw(dc, numQuads);
+		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+		numQueued = 0;
+		Arrays.fill(texts, null);
+	}
+
+	private void bindTexture(GL2 gl) {
+		if (textureObject == 0 || context != gl.getContext()) {
+			int[] tmp = new int[1];
+			gl.glGenTextures(1, tmp, 0);
+			textureObject = tmp[0];
+			context = gl.getContext();
+			gl.glBindTexture(GL.GL_TEXTURE_2D, textureObject);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+			gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_ALPHA, TEXTURE_SIZE, TEXTURE_SIZE, 0, GL.GL_ALPHA,
+					GL.GL_UNSIGNED_BYTE, null);
+			//the strings of the old texture are gone with its context
+			clearCache();
+		} else {
+			gl.glBindTexture(GL.GL_TEXTURE_2D, textureObject);
+		}
+	}
+
+	private void clearCache() {
+		//the maps of the fonts are kept, they are few
+		for (HashMap<String, Entry> fontCache : cache.values()) {
+			fontCache.clear();
+		}
+		numCached = 0;
+		rowX = 0;
+		rowY = 0;
+		rowHeight = 0;
+	}
+
+	private FontMetrics getMetrics(Font font) {
+		FontMetrics fm = metrics.get(font);
+		if (fm == null) {
+			fm = metricsGraphics.getFontMetrics(font);
+			metrics.put(font, fm);
+		}
+		return fm;
+	}
+
+	/**
+	 * Finds room for the string in the texture and draws it there, null if the
+	 * texture is full.
+	 */
+	Entry allocate(String text, Font font) {
+		FontMetrics fm = getMetrics(font);
+		Entry e = new Entry();
+		e.width = Math.max(1, fm.stringWidth(text));
+		e.height = fm.getAscent() + fm.getDescent();
+		e.descent = fm.getDescent();
+		if (e.width > TEXTURE_SIZE) {
+			e.width = TEXTURE_SIZE;
+		}
+
+		if (rowX + e.width > TEXTURE_SIZE) {
+			rowY += rowHeight + 1;
+			rowX = 0;
+			rowHeight = 0;
+		}
+		if (rowY + e.height > TEXTURE_SIZE) {
+			return null;
+		}
+		e.x = rowX;
+		e.y = rowY;
+		rowX += e.width + 1;
+		rowHeight = Math.max(rowHeight, e.height);
+		return e;
+	}
+
+	private Entry rasterise(GL2 gl, String text, Font font) {
+		Entry e = allocate(text, font);
+		if (e == null) {
+			return null;
+		}
+		BufferedImage image = new BufferedImage(e.width, e.height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setFont(font);
+		g.setColor(Color.WHITE);
+		g.drawString(text, 0, e.height - e.descent);
+		g.dispose();
+
+		//the image rows go top down, the texture rows bottom up
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		byte[] flipped = new byte[pixels.length];
+		for (int r = 0; r < e.height; r++) {
+			System.arraycopy(pixels, r * e.width, flipped, (e.height - 1 - r) * e.width, e.width);
+		}
+		gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, 1);
+		gl.glTexSubImage2D(GL.GL_TEXTURE_2D, 0, e.x, e.y, e.width, e.height, GL.GL_ALPHA, GL.GL_UNSIGNED_BYTE,
+				ByteBuffer.wrap(flipped));
+		numRasterised++;
+		return e;
+	}
+
+	private void appendQuad(Entry e, int label, int offset) {
+		int j = label * 6;
+		float x0 = (float) Math.floor(labels[j]);
+		float y0 = (float) Math.floor(labels[j + 1]) - e.descent;
+		float x1 = x0 + e.width;
+		float y1 = y0 + e.height;
+		float s0 = e.x / (float) TEXTURE_SIZE;
+		float t0 = e.y / (float) TEXTURE_SIZE;
+		float s1 = (e.x + e.width) / (float) TEXTURE_SIZE;
+		float t1 = (e.y + e.height) / (float) TEXTURE_SIZE;
+
+		vertex(offset, x0, y0, s0, t0, j);
+		vertex(offset + FLOATS_PER_VERTEX, x1, y0, s1, t0, j);
+		vertex(offset + 2 * FLOATS_PER_VERTEX, x1, y1, s1, t1, j);
+		vertex(offset + 3 * FLOATS_PER_VERTEX, x0, y1, s0, t1, j);
+	}
+
+	private void vertex(int offset, float x, float y, float s, float t, int label) {
+		vertices[offset] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = s;
+		vertices[offset + 3] = t;
+		System.arraycopy(labels, label + 2, vertices, offset + 4, 4);
+	}
+
+	private void draw(DrawContext dc, int numQuads) {
+		if (numQuads == 0) {
+			return;
+		}
+		GL2 gl = dc.getGL().getGL2();
+		int n = numQuads * 4 * FLOATS_PER_VERTEX;
+		if (vertexBuffer == null || vertexBuffer.capacity() < n) {
+			vertexBuffer = SharedVariables.newFloatBuffer(Math.max(n, vertices.length));
+		}
+		vertexBuffer.clear();
+		vertexBuffer.put(vertices, 0, n);
+
+		java.awt.Rectangle viewport = dc.getView().getViewport();
+		ogsh.pushAttrib(gl, GL2.GL_ENABLE_BIT | GL2.GL_CURRENT_BIT | GL2.GL_COLOR_BUFFER_BIT
+				| GL2.GL_DEPTH_BUFFER_BIT | GL2.GL_TEXTURE_BIT);
+		ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+		try {
+			ogsh.pushProjectionIdentity(gl);
+			gl.glOrtho(0d, viewport.width, 0d, viewport.height, -1, 1);
+			ogsh.pushModelviewIdentity(gl);
+
+			gl.glDisable(GL.GL_DEPTH_TEST);
+			gl.glEnable(GL.GL_BLEND);
+			gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+			gl.glEnable(GL.GL_TEXTURE_2D);
+			gl.glBindTexture(GL.GL_TEXTURE_2D, textureObject);
+			gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_MODULATE);
+
+			int stride = FLOATS_PER_VERTEX * SharedVariables.SIZEOF_FLOAT;
+			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+			gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+			gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+			vertexBuffer.position(0);
+			gl.glVertexPointer(2, GL.GL_FLOAT, stride, vertexBuffer);
+			vertexBuffer.position(2);
+			gl.glTexCoordPointer(2, GL.GL_FLOAT, stride, vertexBuffer);
+			vertexBuffer.position(4);
+			gl.glColorPointer(4, GL.GL_FLOAT, stride, vertexBuffer);
+			gl.glDrawArrays(GL2.GL_QUADS, 0, numQuads * 4);
+			vertexBuffer.position(0);
+		} finally {
+			ogsh.pop(gl);
+		}
+	}
+}
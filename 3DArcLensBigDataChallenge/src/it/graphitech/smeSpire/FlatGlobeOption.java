@@ -284,6 +284,45 @@ if(e.getKeyChar()=='4'){
 			SharedVariables.showTextures=!SharedVariables.showTextures;
 			updateWW();
 		}
+		if(e.getKeyChar()=='k'){
+			System.out.println("press k");
+			if(SharedVariables.playback.isPlaying()){
+				SharedVariables.playback.stop();
+			}else{
+				SharedVariables.playback.play();
+			}
+			System.out.println("time: "+SharedVariables.playback.getWindowLabel());
+			updateWW();
+		}
+		if(e.getKeyChar()=='.'){
+			System.out.println("press .");
+			SharedVariables.playback.step(1);
+			System.out.println("time: "+SharedVariables.playback.getWindowLabel());
+			updateWW();
+		}
+		if(e.getKeyChar()==','){
+			System.out.println("press ,");
+			SharedVariables.playback.step(-1);
+			System.out.println("time: "+SharedVariables.playback.getWindowLabel());
+			updateWW();
+		}
+		if(e.getKeyChar()==']'){
+			System.out.println("press ]");
+			SharedVariables.playback.setWindowLength(SharedVariables.playback.getWindowLength()+1);
+			System.out.println("time: "+SharedVariables.playback.getWindowLabel());
+			updateWW();
+		}
+		if(e.getKeyChar()=='['){
+			System.out.println("press [");
+			SharedVariables.playback.setWindowLength(SharedVariables.playback.getWindowLength()-1);
+			System.out.println("time: "+SharedVariables.playback.getWindowLabel());
+			updateWW();
+		}
+		if(e.getKeyChar()=='j'){
+			System.out.println("press j");
+			SharedVariables.playback.showAll();
+			updateWW();
+		}
 	}
 
 	@Override
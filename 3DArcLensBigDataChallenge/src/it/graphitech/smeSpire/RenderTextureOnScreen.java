@@ -7,6 +7,8 @@ import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.OGLStackHandler;
 import it.graphitech.smeSpire.buffers.FBOManager;
 
+import java.awt.Color;
+import java.awt.Font;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -14,7 +16,6 @@ import java.io.InputStream;
 
 import javax.media.opengl.GL;
 import javax.media.opengl.GL2;
-import javax.media.opengl.glu.gl2.GLUgl2;
 
 import com.jogamp.opengl.util.gl2.GLUT;
 import com.jogamp.opengl.util.texture.Texture;
@@ -67,7 +68,6 @@ public void drawFrameBufferOnTheScreen(DrawContext dc){
      //   return;
 
     GL2 gl = dc.getGL().getGL2();
-    OGLStackHandler ogsh = new OGLStackHandler();
 
     try
     {
@@ -180,7 +180,6 @@ public void drawFrameBuffer(DrawContext dc){
      //   return;
 
     GL2 gl = dc.getGL().getGL2();
-    OGLStackHandler ogsh = new OGLStackHandler();
 
     try
     {
@@ -318,120 +317,28 @@ public void drawText(DrawContext dc,Vec4 screenPoint,String text, boolean isOutl
 
 	locationCenter=screenPoint;
 
-    GL2 gl = dc.getGL().getGL2();
-    OGLStackHandler ogsh = new OGLStackHandler();
-    GLUgl2 glu = new GLUgl2();
-    GLUT glut = new GLUT();
-    try
-    {
-    	//System.out.println("in draw gl.glDisable(GL.GL_DEPTH_TEST)");
-        gl.glDisable(GL.GL_DEPTH_TEST);
-
         double width=0;
         double height=0;
             width = this.iconWidth3 * this.iconScale;
             height = this.iconHeight3 * this.iconScale;          
-     
-        // Load a parallel projection with xy dimensions (viewportWidth, viewportHeight)
-        // into the GL projection matrix.
-        java.awt.Rectangle viewport = dc.getView().getViewport();
-        ogsh.pushProjectionIdentity(gl);
-        double maxwh = width > height ? width : height;
-        if (maxwh == 0)
-            maxwh = 1;
-        gl.glOrtho(0d, viewport.width, 0d, viewport.height, -0.6 * maxwh, 0.6 * maxwh);
-
-        ogsh.pushModelviewIdentity(gl);
-        //double scale = this.computeScale(viewport);
-        
-      //  Vec4 locationSW = this.computeLocation(viewport);
-        
-       // double width = this.iconWidth * this.iconScale;
-       // double height = this.iconHeight * this.iconScale;
 
         double x= this.locationCenter.x - width / 2;
         double y= this.locationCenter.y - height / 2;
        
-        Vec4 locationSW = new Vec4(x, y, 0);
-        
-        /*
-        double x_str = arrotonda(screenPoint.x,3);
-        double y_str = arrotonda(screenPoint.y,3);
-        double z_str = arrotonda(screenPoint.z,3);
-        		
-        double x_world_str = arrotonda(worldPoint.x,3);
-        double y_world_str = arrotonda(worldPoint.y,3);
-        double z_world_str = arrotonda(worldPoint.z,3);
-        */
     //    System.out.println("stampo: "+text);
+        //queued, all the labels are drawn by flushText
         if(SharedVariables.chooseColorConfigurations==4){
         	if(isOutliner){
-        		gl.glColor4d(1d, 0d, 0d,1d);
-        		
         		int offset = 0;
         		if(isOdd(arcIndex)){
         			offset=-120;
         		}
         		
-        	 gl.glRasterPos2i((int)locationSW.x+offset, (int)locationSW.y); // raster position in 2D
-             //glut.glutBitmapString(GLUT.BITMAP_TIMES_ROMAN_10,text);
-        	 //gl.glRotatef(-90, 1, 1, 1); 
-        	 glut.glutBitmapString(GLUT.BITMAP_HELVETICA_12,text);
-        	
-        	 
+        	 textRenderer.add(text, HELVETICA_12, (int)x+offset, (int)y, Color.RED);
         	}
         }else{        
-        gl.glRasterPos2i((int)locationSW.x, (int)locationSW.y); // raster position in 2D
-        glut.glutBitmapString(GLUT.BITMAP_TIMES_ROMAN_10,text);
-        //gl.glRasterPos2i(2,-2); // raster position in 2D
-        //glut.glutBitmapString(GLUT.BITMAP_TIMES_ROMAN_10,text);
+        textRenderer.add(text, TIMES_ROMAN_10, (int)x, (int)y, Color.WHITE);
         }
-       // double heading = this.computeHeading(dc.getView());
-     //   gl.glRasterPos2i((int)locationSW.x, (int)locationSW.y-15); // raster position in 2D
-     //   glut.glutBitmapString(GLUT.BITMAP_HELVETICA_10, "x2: "+x_world_str+", y2: "+y_world_str+", z2: "+z_world_str);
-/*
-        gl.glTranslated(locationSW.x, locationSW.y, locationSW.z);
-        Texture iconTexture = null;
-
-	  iconTexture = dc.getTextureCache().getTexture(this.getIconFilePath3());
-	     if (iconTexture == null)
-	     {
-	     	System.out.println("iconTexture == null");
-	         this.initializeTexture3(dc);     
-	     }
-
-            if (iconTexture != null)
-            {            	
-                gl.glEnable(GL.GL_TEXTURE_2D);
-                iconTexture.bind(gl);
-                gl.glColor4d(1d, 1d, 1d,1d);
-                gl.glEnable(GL.GL_BLEND);
-                gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
-                TextureCoords texCoords = iconTexture.getImageTexCoords();
-                gl.glScaled(width, height, 1d);
-                dc.drawUnitQuad(texCoords);
-               
-            }
-*/
-        
-    }
-    finally
-    {
-        dc.restoreDefaultDepthTesting();
-        dc.restoreDefaultCurrentColor();
-
-      //  gl.glEnable(GL.GL_DEPTH_TEST);
-        
-   
-        {
-            gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
-            gl.glDisable(GL.GL_TEXTURE_2D); // restore to default texture state
-            dc.restoreDefaultBlending();
-            gl.glEnable(GL.GL_DEPTH_TEST);
-        }
-
-        ogsh.pop(gl);
-    }
 }
 public void drawText(DrawContext dc,Vec4 screenPoint, Vec4 worldPoint )
 {
@@ -439,42 +346,13 @@ public void drawText(DrawContext dc,Vec4 screenPoint, Vec4 worldPoint )
 
 	locationCenter=screenPoint;
 
-    GL2 gl = dc.getGL().getGL2();
-    OGLStackHandler ogsh = new OGLStackHandler();
-    GLUgl2 glu = new GLUgl2();
-    GLUT glut = new GLUT();
-    try
-    {
-    	//System.out.println("in draw gl.glDisable(GL.GL_DEPTH_TEST)");
-        gl.glDisable(GL.GL_DEPTH_TEST);
-
         double width=0;
         double height=0;
             width = this.iconWidth3 * this.iconScale;
             height = this.iconHeight3 * this.iconScale;          
-     
-        // Load a parallel projection with xy dimensions (viewportWidth, viewportHeight)
-        // into the GL projection matrix.
-        java.awt.Rectangle viewport = dc.getView().getViewport();
-        ogsh.pushProjectionIdentity(gl);
-        double maxwh = width > height ? width : height;
-        if (maxwh == 0)
-            maxwh = 1;
-        gl.glOrtho(0d, viewport.width, 0d, viewport.height, -0.6 * maxwh, 0.6 * maxwh);
-
-        ogsh.pushModelviewIdentity(gl);
-        //double scale = this.computeScale(viewport);
-        
-      //  Vec4 locationSW = this.computeLocation(viewport);
-        
-       // double width = this.iconWidth * this.iconScale;
-       // double height = this.iconHeight * this.iconScale;
 
         double x= this.locationCenter.x - width / 2;
         double y= this.locationCenter.y - height / 2;
-       
-        Vec4 locationSW = new Vec4(x, y, 0);
-        
         
         double x_str = arrotonda(screenPoint.x,3);
         double y_str = arrotonda(screenPoint.y,3);
@@ -484,55 +362,16 @@ public void drawText(DrawContext dc,Vec4 screenPoint, Vec4 worldPoint )
         double y_world_str = arrotonda(worldPoint.y,3);
         double z_world_str = arrotonda(worldPoint.z,3);
         
-        
-        gl.glRasterPos2i((int)locationSW.x, (int)locationSW.y); // raster position in 2D
-        glut.glutBitmapString(GLUT.BITMAP_HELVETICA_10, "x: "+x_str+", y: "+y_str+", z: "+z_str);
-       // double heading = this.computeHeading(dc.getView());
-        gl.glRasterPos2i((int)locationSW.x, (int)locationSW.y-15); // raster position in 2D
-        glut.glutBitmapString(GLUT.BITMAP_HELVETICA_10, "x2: "+x_world_str+", y2: "+y_world_str+", z2: "+z_world_str);
-/*
-        gl.glTranslated(locationSW.x, locationSW.y, locationSW.z);
-        Texture iconTexture = null;
-
-	  iconTexture = dc.getTextureCache().getTexture(this.getIconFilePath3());
-	     if (iconTexture == null)
-	     {
-	     	System.out.println("iconTexture == null");
-	         this.initializeTexture3(dc);     
-	     }
-
-            if (iconTexture != null)
-            {            	
-                gl.glEnable(GL.GL_TEXTURE_2D);
-                iconTexture.bind(gl);
-                gl.glColor4d(1d, 1d, 1d,1d);
-                gl.glEnable(GL.GL_BLEND);
-                gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
-                TextureCoords texCoords = iconTexture.getImageTexCoords();
-                gl.glScaled(width, height, 1d);
-                dc.drawUnitQuad(texCoords);
-               
-            }
-*/
-        
-    }
-    finally
-    {
-        dc.restoreDefaultDepthTesting();
-        dc.restoreDefaultCurrentColor();
-
-      //  gl.glEnable(GL.GL_DEPTH_TEST);
-        
-   
-        {
-            gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
-            gl.glDisable(GL.GL_TEXTURE_2D); // restore to default texture state
-            dc.restoreDefaultBlending();
-            gl.glEnable(GL.GL_DEPTH_TEST);
-        }
+        textRenderer.add("x: "+x_str+", y: "+y_str+", z: "+z_str, HELVETICA_10, (int)x, (int)y, Color.WHITE);
+        textRenderer.add("x2: "+x_world_str+", y2: "+y_world_str+", z2: "+z_world_str, HELVETICA_10, (int)x, (int)y-15, Color.WHITE);
+}
 
-        ogsh.pop(gl);
-    }
+/**
+ * Draws the text queued by drawText in this frame, in one pass.
+ */
+public void flushText(DrawContext dc)
+{
+	textRenderer.flush(dc);
 }
 
 private double arrotonda(double x, int num ){
@@ -553,9 +392,6 @@ public void draw(DrawContext dc,Vec4 p, int type)
      //   return;
 
     GL2 gl = dc.getGL().getGL2();
-    OGLStackHandler ogsh = new OGLStackHandler();
-    GLUgl2 glu = new GLUgl2();
-    GLUT glut = new GLUT();
     try
     {
     	//System.out.println("in draw gl.glDisable(GL.GL_DEPTH_TEST)");
@@ -837,4 +673,13 @@ private void initializeTexture3(DrawContext dc)
 protected double iconScale = 0.1;
 protected Vec4 locationCenter = null;
 
+//kept for the lifetime of the renderer instead of being created at every call
+protected final OGLStackHandler ogsh = new OGLStackHandler();
+protected final GLUT glut = new GLUT();
+protected final CachedTextRenderer textRenderer = new CachedTextRenderer();
+
+static final Font HELVETICA_10 = new Font("SansSerif", Font.PLAIN, 10);
+static final Font HELVETICA_12 = new Font("SansSerif", Font.PLAIN, 12);
+static final Font TIMES_ROMAN_10 = new Font("Serif", Font.PLAIN, 10);
+
 }
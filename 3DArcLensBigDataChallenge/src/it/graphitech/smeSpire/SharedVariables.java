@@ -5,6 +5,7 @@ import it.graphitech.smeSpire.entry.Entry;
 import it.graphitech.smeSpire.framebuffer.MyBasicOrbitView;
 import it.graphitech.smeSpire.framebuffer.MyFlatOrbitView;
 import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+import it.graphitech.smeSpire.playback.PlaybackController;
 
 import java.awt.Color;
 import java.awt.Component;
@@ -71,6 +72,7 @@ public class SharedVariables {
 	public static WorldWindow wwd;
 
 	public static RenderTextureOnScreen sr = new RenderTextureOnScreen();
+	public static PlaybackController playback = new PlaybackController();
 
 	
 	public  static boolean debugMode = false;
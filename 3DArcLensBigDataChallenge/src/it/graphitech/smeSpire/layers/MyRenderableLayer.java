@@ -606,6 +606,8 @@ public void dontUseShader(){
 	//SharedVariables.printSectorContents();
 		
 		this.doRenderNow(dc);
+		//the labels of the arcs, queued while drawing them
+		SharedVariables.sr.flushText(dc);
 		long estimatedTime = System.currentTimeMillis() - startTime;
 		if(SharedVariables.debugMode){
 		System.out.println("time needed for normal render: "
@@ -910,6 +912,9 @@ public void dontUseShader(){
 	            		               	            		                
 	            		                 
 	            		                CubicSplinePolyline line = (CubicSplinePolyline)renderables.get(Math.round(lineIndex));
+	            		                if(!line.isActiveInTime()){
+	            		                	continue;
+	            		                }
 	            		                
 	            		                Vec4 v = new Vec4(isValid, lineIndex, pointIndex, type);
 	            		                
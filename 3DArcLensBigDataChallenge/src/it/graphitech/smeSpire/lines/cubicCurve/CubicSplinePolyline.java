@@ -66,6 +66,10 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 	String from;
 	String to;
 String time;
+	//label drawn by drawTime, built again when time or numberCalls change
+	String timeLabel;
+	//false when the arc is outside the playback time window
+	boolean activeInTime = true;
 	double avgTime;
 	double minAvgTime;
 	double maxAvgTime;
@@ -1371,6 +1375,9 @@ private void setColor(GL2 gl,Color color){
 		if (dc.getSurfaceGeometry() == null)
 			return;
 
+		if (!activeInTime)
+			return;
+
 		this.draw(dc);
 	}
 
@@ -1499,26 +1506,32 @@ private void setColor(GL2 gl,Color color){
 					// int ind=findNearestControlPoint(dc,mp);
 					updRenderableControlPoints.points.add(minInd_int + 1, newP);
 
+					//the arcs are drawn twice per frame: queue the labels
+					//only with the coloured arcs, or they are drawn twice
+					boolean queueLabels = !myRendLayer.isRenderUndesiredArcs();
+
 					if (SharedVariables.showMiddlePoint) {
 
 						// sr.draw(dc, SharedVariables.screenPoint,2);
 						sr.draw(dc, point0, 1);
 						sr.draw(dc, point1, 1);
 
-						sr.drawText(dc, point0, worldPoint0);
-						sr.drawText(dc, point1, worldPoint1);
+						if (queueLabels) {
+							sr.drawText(dc, point0, worldPoint0);
+							sr.drawText(dc, point1, worldPoint1);
+						}
 
 						// sr.draw(dc, movedScreenCoordinates,1);
 					}
 					if (SharedVariables.showIntermediatePoint) {
 
-						drawControlPoint(dc);
+						drawControlPoint(dc, queueLabels);
 					}
 					if(SharedVariables.showTime){
 					//System.out.println("SHOW TIME");
 						int arcIndex = getArcIndexInLens(1);
 						//System.out.println("ARC INDEX: "+arcIndex);
-						drawTime(dc,movedScreenCoordinates,arcIndex);
+						drawTime(dc,movedScreenCoordinates,arcIndex,queueLabels);
 					}
 
 				} else if (infoPoints.size() < 2) {
@@ -1782,23 +1795,30 @@ private void setColor(GL2 gl,Color color){
 		return renderableControlPoints.getDestination();
 	}
 
-	private void drawControlPoint(DrawContext dc) {
+	private void drawControlPoint(DrawContext dc, boolean queueLabels) {
 
 		for (int i = 1; i < updRenderableControlPoints.points.size() - 1; i++) {
 			Vec4 p = updRenderableControlPoints.points.get(i);
 			Vec4 screenPoint = SharedVariables.computeScreenCoordinates(p);
-			SharedVariables.sr.drawText(dc, screenPoint, p);
+			if (queueLabels) {
+				SharedVariables.sr.drawText(dc, screenPoint, p);
+			}
 			sr.draw(dc, screenPoint, 2);
 
 		}
 
 	}
 
-	private void drawTime(DrawContext dc, Vec4 screenCoord, int arcIndex) {
+	private void drawTime(DrawContext dc, Vec4 screenCoord, int arcIndex, boolean queueLabels) {
 
 	
 			//Vec4 screenPoint = SharedVariables.computeScreenCoordinates(p);
-			SharedVariables.sr.drawText(dc, screenCoord, time+", #Calls: "+numberCalls,isNumberCallsOutliner,arcIndex);
+			if (queueLabels) {
+				if (timeLabel == null) {
+					timeLabel = time+", #Calls: "+numberCalls;
+				}
+				SharedVariables.sr.drawText(dc, screenCoord, timeLabel,isNumberCallsOutliner,arcIndex);
+			}
 			sr.draw(dc, screenCoord, 2);
 
 		
@@ -2379,6 +2399,7 @@ private void setColor(GL2 gl,Color color){
 
 	public void setNumberCalls(int numberCalls) {
 		this.numberCalls = numberCalls;
+		this.timeLabel = null;
 	}
 
 	public void setTotNumberCalls(int totNumberCalls) {
@@ -2449,5 +2470,15 @@ private void setColor(GL2 gl,Color color){
 		}
 	public void setTime(String time){
 		this.time =time; 
+		this.timeLabel = null;
+	}
+	public String getTime(){
+		return time;
+	}
+	public void setActiveInTime(boolean activeInTime){
+		this.activeInTime = activeInTime;
+	}
+	public boolean isActiveInTime(){
+		return activeInTime;
 	}
 }
@@ -0,0 +1,212 @@
+package it.graphitech.smeSpire.playback;
+
+import gov.nasa.worldwind.render.Renderable;
+import it.graphitech.smeSpire.SharedVariables;
+import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+import it.graphitech.smeSpire.layers.MyRenderableLayer;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import javax.swing.Timer;
+
+/**
+ * Shows only the arcs whose time falls in a window of consecutive time slots.
+ * Moving the window toggles just the slots entering and leaving it, so
+ * scrubbing costs time proportional to the arcs that change, not to the
+ * dataset. The first window hides all the indexed arcs once.
+ */
+public class PlaybackController implements ActionListener {
+
+	ArrayList<MyRenderableLayer> layers = new ArrayList<MyRenderableLayer>();
+	ArrayList<TimeIndex> indexes;
+
+	//sorted distinct times of the arcs
+	String[] slots = new String[0];
+
+	boolean playbackActive = false;
+	//active window [windowFirst, windowLast)
+	int windowFirst = 0;
+	int windowLast = 0;
+	int windowLength = 1;
+
+	Timer timer = new Timer(500, this);
+
+	public void addLayer(MyRenderableLayer layer) {
+		if (playbackActive) {
+			showAll();
+		}
+		layers.add(layer);
+		indexes = null;
+	}
+
+	private void ensureIndexed() {
+		if (indexes != null) {
+			return;
+		}
+
+		TreeSet<String> times = new TreeSet<String>();
+		for (MyRenderableLayer layer : layers) {
+			for (Renderable r : layer.getRenderables()) {
+				if (r instanceof CubicSplinePolyline && ((CubicSplinePolyline) r).getTime() != null) {
+					times.add(((CubicSplinePolyline) r).getTime());
+				}
+			}
+		}
+		slots = times.toArray(new String[times.size()]);
+
+		HashMap<String, Integer> slotOf = new HashMap<String, Integer>();
+		for (int s = 0; s < slots.length; s++) {
+			slotOf.put(slots[s], s);
+		}
+
+		indexes = new ArrayList<TimeIndex>();
+		for (MyRenderableLayer layer : layers) {
+			indexes.add(new TimeIndex(layer, slotOf, slots.length));
+		}
+	}
+
+	public int getNumSlots() {
+		ensureIndexed();
+		return slots.length;
+	}
+
+	public boolean isPlaybackActive() {
+		return playbackActive;
+	}
+
+	public boolean isPlaying() {
+		return timer.isRunning();
+	}
+
+	/**
+	 * Moves the window so that it starts at the given slot.
+	 *
+	 * @return the number of arcs toggled
+	 */
+	public int setWindow(int first) {
+		ensureIndexed();
+		if (slots.length == 0) {
+			return 0;
+		}
+		first = Math.max(0, Math.min(first, slots.length - 1));
+		int last = Math.min(first + windowLength, slots.length);
+
+		int toggled = 0;
+		if (!playbackActive) {
+			for (TimeIndex index : indexes) {
+				toggled += index.setActive(0, slots.length, false);
+			}
+			windowFirst = 0;
+			windowLast = 0;
+			playbackActive = true;
+		}
+
+		for (TimeIndex index : indexes) {
+			//slots leaving the window
+			toggled += setActive(index, windowFirst, Math.min(windowLast, first), false);
+			toggled += setActive(index, Math.max(windowFirst, last), windowLast, false);
+			//slots entering the window
+			toggled += setActive(index, first, Math.min(last, windowFirst), true);
+			toggled += setActive(index, Math.max(first, windowLast), last, true);
+		}
+		windowFirst = first;
+		windowLast = last;
+		return toggled;
+	}
+
+	private static int setActive(TimeIndex index, int fromSlot, int toSlot, boolean active) {
+		if (fromSlot >= toSlot) {
+			return 0;
+		}
+		return index.setActive(fromSlot, toSlot, active);
+	}
+
+	/**
+	 * Moves the window by delta slots, wrapping around the ends. The first call
+	 * only starts the playback at the current slot.
+	 */
+	public int step(int delta) {
+		ensureIndexed();
+		if (slots.length == 0) {
+			return 0;
+		}
+		if (!playbackActive) {
+			return setWindow(windowFirst);
+		}
+		int n = slots.length;
+		return setWindow(((windowFirst + delta) % n + n) % n);
+	}
+
+	public int scrubTo(String time) {
+		ensureIndexed();
+		int slot = Arrays.binarySearch(slots, time);
+		if (slot < 0) {
+			slot = -slot - 1;
+		}
+		return setWindow(slot);
+	}
+
+	public void setWindowLength(int windowLength) {
+		this.windowLength = Math.max(1, windowLength);
+		if (playbackActive) {
+			setWindow(windowFirst);
+		}
+	}
+
+	public int getWindowLength() {
+		return windowLength;
+	}
+
+	/**
+	 * Stops the playback and shows again all the arcs.
+	 */
+	public void showAll() {
+		timer.stop();
+		if (!playbackActive) {
+			return;
+		}
+		for (TimeIndex index : indexes) {
+			setActive(index, 0, windowFirst, true);
+			setActive(index, windowLast, slots.length, true);
+		}
+		playbackActive = false;
+	}
+
+	public void play() {
+		if (!playbackActive) {
+			step(0);
+		}
+		timer.start();
+	}
+
+	public void stop() {
+		timer.stop();
+	}
+
+	public void setDelay(int milliseconds) {
+		timer.setDelay(milliseconds);
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		step(1);
+		if (SharedVariables.wwd != null) {
+			SharedVariables.wwd.redraw();
+		}
+	}
+
+	public String getWindowLabel() {
+		if (!playbackActive) {
+			return "all";
+		}
+		if (windowLast - windowFirst == 1) {
+			return slots[windowFirst];
+		}
+		return slots[windowFirst] + " - " + slots[windowLast - 1];
+	}
+}
@@ -0,0 +1,84 @@
+package it.graphitech.smeSpire.playback;
+
+import gov.nasa.worldwind.render.Renderable;
+import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+import it.graphitech.smeSpire.layers.MyRenderableLayer;
+
+import java.util.HashMap;
+
+/**
+ * Arcs of a layer bucketed by time slot: the arcs of slot s are
+ * arcs[slotStart[s]] .. arcs[slotStart[s+1]-1]. Arcs without a time (e.g. the
+ * fake line) are not indexed and stay always visible.
+ */
+public class TimeIndex {
+
+	final MyRenderableLayer layer;
+	final CubicSplinePolyline[] arcs;
+	final int[] slotStart;
+
+	/**
+	 * @param slotOf
+	 *            index of every time in the sorted list of slots
+	 */
+	public TimeIndex(MyRenderableLayer layer, HashMap<String, Integer> slotOf, int numSlots) {
+		this.layer = layer;
+
+		//counting sort of the arcs by slot
+		int[] count = new int[numSlots + 1];
+		int numArcs = 0;
+		for (Renderable r : layer.getRenderables()) {
+			Integer slot = slotOf(r, slotOf);
+			if (slot != null) {
+				count[slot + 1]++;
+				numArcs++;
+			}
+		}
+		for (int s = 0; s < numSlots; s++) {
+			count[s + 1] += count[s];
+		}
+		slotStart = count.clone();
+
+		arcs = new CubicSplinePolyline[numArcs];
+		for (Renderable r : layer.getRenderables()) {
+			Integer slot = slotOf(r, slotOf);
+			if (slot != null) {
+				arcs[count[slot]++] = (CubicSplinePolyline) r;
+			}
+		}
+	}
+
+	private static Integer slotOf(Renderable r, HashMap<String, Integer> slotOf) {
+		if (!(r instanceof CubicSplinePolyline)) {
+			return null;
+		}
+		String time = ((CubicSplinePolyline) r).getTime();
+		return time == null ? null : slotOf.get(time);
+	}
+
+	public MyRenderableLayer getLayer() {
+		return layer;
+	}
+
+	public int getNumArcs() {
+		return arcs.length;
+	}
+
+	public int getNumArcs(int slot) {
+		return slotStart[slot + 1] - slotStart[slot];
+	}
+
+	/**
+	 * Shows or hides the arcs of the slots in [fromSlot, toSlot).
+	 *
+	 * @return the number of arcs toggled
+	 */
+	public int setActive(int fromSlot, int toSlot, boolean active) {
+		int from = slotStart[fromSlot];
+		int to = slotStart[toSlot];
+		for (int i = from; i < to; i++) {
+			arcs[i].setActiveInTime(active);
+		}
+		return to - from;
+	}
+}
@@ -5,6 +5,7 @@ import it.graphitech.shader.DecoratedLayer;
 import it.graphitech.shader.ShadingDecorator;
 import it.graphitech.smeSpire.SharedVariables;
 import it.graphitech.smeSpire.layers.MyRenderableLayer;
+import it.graphitech.smeSpire.lines.cubicCurve.ArcLevelOfDetail;
 import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
 import it.graphitech.smeSpire.lines.cubicCurve.RenderableControlPoints;
 
@@ -86,6 +87,8 @@ public class GeneratorOfRenderableObjects{
         //RenderableLayer layer = new RenderableLayer();
        // layer.setName("arcs over the globe");
         layer.setPickEnabled(false);
+        //the arcs share the same spans, so one policy serves the whole layer
+        layer.setLevelOfDetail(new ArcLevelOfDetail(SharedVariables.numSubsegments, SharedVariables.numControlPoints));
 
         for(int i=0;i<entries.size();i++){
         	//System.out.println(i);
@@ -109,7 +112,7 @@ public class GeneratorOfRenderableObjects{
         			renderableControlPoints.setControlPointPosition(setControlPointsOverGlobe(Position.fromDegrees(entry.getFrom_lat(), entry.getFrom_lon()), Position.fromDegrees(entry.getTo_lat(), entry.getTo_lon()),distance));
         			renderableControlPoints.calculatePoints();
         			
-        			CubicSplinePolyline curve = new CubicSplinePolyline(renderableControlPoints);
+        			CubicSplinePolyline curve = new CubicSplinePolyline(layer.getArcStore(), layer.getArcStore().add(renderableControlPoints));
         			//System.out.println("entry.getFrom(): "+entry.getFrom()+" entry.getTo(): "+entry.getTo());
         			curve.setFrom(entry.getFrom_id());
         			curve.setTo(entry.getTo_id());
@@ -179,6 +182,7 @@ public class GeneratorOfRenderableObjects{
         //RenderableLayer layer = new RenderableLayer();
        // layer.setName("arcs over the globe");
         layerOnFlatMap.setPickEnabled(false);
+        layerOnFlatMap.setLevelOfDetail(new ArcLevelOfDetail(SharedVariables.numSubsegments, SharedVariables.numControlPoints));
 
         for(int i=0;i<entries.size();i++){
         	//System.out.println(i);
@@ -201,7 +205,7 @@ public class GeneratorOfRenderableObjects{
         			rendCPOver2DMap.setControlPointPosition(setControlPointsOver2DMap(Position.fromDegrees(entry.getFrom_lat(), entry.getFrom_lon()), Position.fromDegrees(entry.getTo_lat(), entry.getTo_lon()),distance));
         			
         			rendCPOver2DMap.calculatePointsOver2DMap();
-        			CubicSplinePolyline curveOver2DMap = new CubicSplinePolyline(rendCPOver2DMap);
+        			CubicSplinePolyline curveOver2DMap = new CubicSplinePolyline(layerOnFlatMap.getArcStore(), layerOnFlatMap.getArcStore().add(rendCPOver2DMap));
         			//System.out.println("entry.getFrom(): "+entry.getFrom()+" entry.getTo(): "+entry.getTo());
         			curveOver2DMap.setFrom(entry.getFrom_id());
         			curveOver2DMap.setTo(entry.getTo_id());
@@ -271,7 +275,7 @@ public class GeneratorOfRenderableObjects{
 	}
 	
 	
-	private ArrayList<Position> setControlPointsOverGlobe(Position source, Position destination,double distance){
+	static ArrayList<Position> setControlPointsOverGlobe(Position source, Position destination,double distance){
 
 //double distance =2000000;
 			ArrayList<Position> points = new ArrayList<Position>();
@@ -901,6 +901,10 @@ public abstract class MyAbstractSceneController extends WWObjectImpl implements
         	//render the globe
         	//dc.getLayers().getLayerByName("Blue Marble May 2004").setOpacity(0.2);
         	dc.getLayers().getLayerByName(layerEarthName).render(dc); 
+        	
+        	if(SharedVariables.lensIsActive && SharedVariables.gpuOcclusionTest){
+        		MyBasicSceneController.fboManager.copyTerrainDepth(dc);
+        	}
 
                
                
@@ -7,6 +7,7 @@ package it.graphitech.core;
 
 
 
+import it.graphitech.smeSpire.SharedVariables;
 import it.graphitech.smeSpire.buffers.FBOManager;
 import gov.nasa.worldwind.AbstractSceneController;
 import gov.nasa.worldwind.render.DrawContext;
@@ -27,18 +28,22 @@ static public String[] layerNames = {"FLAT MAP: AS Core arcs","AS Core arcs"};
     public void doRepaint(DrawContext dc)
     {
     
-    	fboManager.setup(dc);
-    	
-    	//fboManager.setup(dc);
+    	//the FBO is only used by the point detection of the lens
+    	boolean offscreenPass = FBOManager.isOffscreenPassNeeded();
     	
     	
         this.initializeFrame(dc);
+        SharedVariables.frameMetrics.beginFrame(dc.getGL().getGL2());
         
         try
         {
        
         	
             this.applyView(dc);
+            if(offscreenPass){
+            	//after applyView, so that the textures follow the viewport of this frame
+            	fboManager.setup(dc);
+            }
             this.createPickFrustum(dc);
             this.createTerrain(dc);
             this.preRender(dc);
@@ -53,9 +58,11 @@ static public String[] layerNames = {"FLAT MAP: AS Core arcs","AS Core arcs"};
        
            
         
+			if(offscreenPass){
 			 MyBasicSceneController.fboManager.bindFramebufferObject_PointDetection(dc);
 			 clearFrame(dc);			
 			 MyBasicSceneController.fboManager.unbindFramebufferObject(dc);
+			}
             this.clearFrame(dc);
           
             
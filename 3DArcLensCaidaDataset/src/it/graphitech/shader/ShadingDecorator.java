@@ -6,7 +6,9 @@ import it.graphitech.core.MyAbstractSceneController;
 import it.graphitech.core.MyBasicSceneController;
 import it.graphitech.monitor.PathTest;
 import it.graphitech.smeSpire.SharedVariables;
+import it.graphitech.smeSpire.buffers.FBOManager;
 import it.graphitech.smeSpire.buffers.TransformFeedbackObject;
+import it.graphitech.smeSpire.framebuffer.MyFlatOrbitView;
 import it.graphitech.smeSpire.layers.MyRenderableLayer;
 
 import java.io.File;
@@ -138,6 +140,14 @@ public class ShadingDecorator {
 
   
    
+    /**
+     * True when the points behind the globe are discarded by the point detection
+     * shader, so that the CPU ray casting of SharedVariables.isPositionVisible can be skipped.
+     */
+    public static boolean isGPUOcclusionTest(){
+    	return SharedVariables.gpuOcclusionTest && !(SharedVariables.wwd.getView() instanceof MyFlatOrbitView);
+    }
+    
     public void render(DrawContext dc, Layer layer) {
        if(layer.isEnabled()){
     	
@@ -177,11 +187,22 @@ public class ShadingDecorator {
      gl.glUniform1f(loc_lensDiameter, (float)SharedVariables.lense_h);
      gl.glUniform1i(loc_numElements, numElements);
      
+     //occlusion test against the terrain depth, one texture fetch per point
+     boolean occlusionTest = isGPUOcclusionTest();
+     gl.glUniform1i(gl.glGetUniformLocation(glsl_pointDetection.getProgramObject(), "occlusionTest"), occlusionTest ? 1 : 0);
+     gl.glUniform1i(gl.glGetUniformLocation(glsl_pointDetection.getProgramObject(), "depthMap"), 0);
+     gl.glUniform1f(gl.glGetUniformLocation(glsl_pointDetection.getProgramObject(), "nearClip"), (float)dc.getView().getNearClipDistance());
+     gl.glUniform1f(gl.glGetUniformLocation(glsl_pointDetection.getProgramObject(), "farClip"), (float)dc.getView().getFarClipDistance());
+     gl.glUniform1f(gl.glGetUniformLocation(glsl_pointDetection.getProgramObject(), "occlusionTolerance"), (float)SharedVariables.occlusionTolerance);
+     gl.glActiveTexture(GL.GL_TEXTURE0);
+     gl.glBindTexture(GL.GL_TEXTURE_2D, occlusionTest ? FBOManager.depthTextureObject : 0);
+     
    	gl.glEnable(GL2.GL_VERTEX_PROGRAM_POINT_SIZE);
      
             MyBasicSceneController.fboManager.bindFramebufferObject_PointDetection(dc);
             layer.render(dc);
             MyBasicSceneController.fboManager.unbindFramebufferObject(dc);  
+            gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
             //glsl.endShader();
 
             glsl_pointDetection.endShader();
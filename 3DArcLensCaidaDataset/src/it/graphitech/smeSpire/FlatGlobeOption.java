@@ -267,6 +267,30 @@ if(wwd.getView() instanceof MyFlatOrbitView)
 			SharedVariables.showTextures=!SharedVariables.showTextures;
 			updateWW();
 		}
+		if(e.getKeyChar()=='g'){
+			System.out.println("press g");
+			SharedVariables.batchedRendering=!SharedVariables.batchedRendering;
+			System.out.println("batched rendering: "+SharedVariables.batchedRendering);
+			updateWW();
+		}
+		if(e.getKeyChar()=='h'){
+			System.out.println("press h");
+			SharedVariables.gpuOcclusionTest=!SharedVariables.gpuOcclusionTest;
+			System.out.println("gpu occlusion test: "+SharedVariables.gpuOcclusionTest);
+			updateWW();
+		}
+		if(e.getKeyChar()=='e'){
+			System.out.println("press e");
+			SharedVariables.levelOfDetail=!SharedVariables.levelOfDetail;
+			System.out.println("level of detail: "+SharedVariables.levelOfDetail);
+			updateWW();
+		}
+		if(e.getKeyChar()=='c'){
+			System.out.println("press c");
+			SharedVariables.culling=!SharedVariables.culling;
+			System.out.println("culling: "+SharedVariables.culling);
+			updateWW();
+		}
 	}
 
 	@Override
@@ -0,0 +1,261 @@
+package it.graphitech.smeSpire;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.WorldWindowGLDrawable;
+import gov.nasa.worldwind.WorldWindowImpl;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.layers.LayerList;
+import it.graphitech.ColorsList;
+import it.graphitech.core.MyAbstractSceneController;
+import it.graphitech.core.MyBasicSceneController;
+import it.graphitech.smeSpire.framebuffer.MyBasicOrbitView;
+import it.graphitech.smeSpire.framebuffer.MyRectangularTessellator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLEventListener;
+import javax.media.opengl.GLOffscreenAutoDrawable;
+
+/**
+ * Renders the AS Core arcs with the lens into an offscreen GL drawable, with no
+ * window, from a fixed camera centred on the lens, and writes for every frame
+ * its time and the counters of the lens pipeline (points captured by the
+ * detection pass, deformed, filtered and culled arcs) to a CSV file. The pass
+ * times of FrameMetrics are written next to it.
+ * <p/>
+ * Given the CSV of a previous run, the counters of the last frame must be the
+ * same and the median frame time at most harness.tolerance (default 1.25)
+ * times the previous one, otherwise the exit status is 1.
+ * <p/>
+ * No GPU is needed: on a Linux box without one, run it from the project
+ * directory with Mesa's software rasteriser, e.g.
+ * <pre>
+ * LIBGL_ALWAYS_SOFTWARE=1 GALLIUM_DRIVER=llvmpipe xvfb-run -a java ... it.graphitech.smeSpire.Main_HEADLESS 300 frames.csv [previous.csv]
+ * </pre>
+ */
+public class Main_HEADLESS {
+
+	static final int WIDTH = 800;
+	static final int HEIGHT = 600;
+	//frames rendered before the measured ones, so that the detection buffers are full
+	static final int WARMUP_FRAMES = 10;
+	static final Position LENS_POSITION = Position.fromDegrees(45, 10, 0);
+	static final double EYE_ALTITUDE = 10000000;
+	static final String LAYER_NAME = "AS Core arcs";
+
+	static final String[] COLUMNS = { "frame", "ms", "intersection points", "end points inside lens",
+			"lines inside lens", "distorted lines", "filtered lines", "simple lines", "culled lines" };
+
+	private final ArrayList<double[]> rows = new ArrayList<double[]>();
+	private long frameStart;
+
+	public static void main(String[] args) {
+		int numFrames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		File output = new File(args.length > 1 ? args[1] : "frames.csv");
+		File previous = args.length > 2 ? new File(args[2]) : null;
+		double tolerance = Double.parseDouble(System.getProperty("harness.tolerance", "1.25"));
+
+		try {
+			Main_HEADLESS harness = new Main_HEADLESS();
+			harness.run(numFrames);
+			harness.write(output);
+			File passes = new File(output.getAbsoluteFile().getParentFile(), "passes_" + output.getName());
+			SharedVariables.frameMetrics.exportCSV(passes);
+			System.out.println("median frame ms " + harness.getMedianTime() + ", written " + output + " and " + passes);
+
+			if (previous != null && !harness.compare(read(previous), tolerance)) {
+				System.exit(1);
+			}
+			System.exit(0);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(2);
+		}
+	}
+
+	public void run(int numFrames) {
+		//the imagery must not change while measuring
+		WorldWind.setOfflineMode(true);
+
+		GLCapabilities caps = Configuration.getRequiredGLCapabilities();
+		caps.setOnscreen(false);
+		caps.setSampleBuffers(false);
+		GLOffscreenAutoDrawable drawable = GLDrawableFactory.getFactory(caps.getGLProfile())
+				.createOffscreenAutoDrawable(null, caps, null, WIDTH, HEIGHT);
+
+		WorldWindowGLDrawable wwd = (WorldWindowGLDrawable) WorldWind
+				.createConfigurationComponent(AVKey.WORLD_WINDOW_CLASS_NAME);
+		wwd.initDrawable(drawable);
+		wwd.initGpuResourceCache(WorldWindowImpl.createGpuResourceCache());
+		wwd.setView((View) WorldWind.createConfigurationComponent(AVKey.VIEW_CLASS_NAME));
+
+		MyBasicSceneController myBsc = new MyBasicSceneController();
+		myBsc.addPropertyChangeListener(wwd.getView());
+		wwd.setSceneController(myBsc);
+		SharedVariables.wwd = wwd;
+
+		Model m = (Model) WorldWind.createConfigurationComponent(AVKey.MODEL_CLASS_NAME);
+		wwd.setModel(m);
+		wwd.endInitialization();
+
+		MyBasicOrbitView view = new MyBasicOrbitView();
+		view.setGlobe(m.getGlobe());
+		wwd.setView(view);
+		view.setEyePosition(new Position(LENS_POSITION, EYE_ALTITUDE));
+
+		//only the earth under the arcs
+		LayerList layers = m.getLayers();
+		for (Layer layer : new ArrayList<Layer>(layers)) {
+			if (!layer.getName().equals(MyAbstractSceneController.layerEarthName)) {
+				layers.remove(layer);
+			}
+		}
+		Main_STANDALONE_CAIDA.AppFrame.createLayers(wwd);
+		layers.getLayerByName(LAYER_NAME).setEnabled(true);
+		m.getGlobe().setTessellator(new MyRectangularTessellator());
+		SectorManager.initLensAnglesMap(4);
+		ColorsList.generateColorListHSB();
+
+		//the camera looks at the lens, so it starts at the centre of the viewport
+		SharedVariables.pos = LENS_POSITION;
+		SharedVariables.screenPoint = new Vec4(WIDTH / 2, HEIGHT / 2);
+
+		drawable.addGLEventListener(new GLEventListener() {
+			public void init(GLAutoDrawable drawable) {
+			}
+
+			public void dispose(GLAutoDrawable drawable) {
+			}
+
+			public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+			}
+
+			//after the WorldWindow, the frame is finished
+			public void display(GLAutoDrawable drawable) {
+				drawable.getGL().glFinish();
+				record((System.nanoTime() - frameStart) / 1e6);
+			}
+		});
+
+		for (int i = 0; i < WARMUP_FRAMES + numFrames; i++) {
+			if (i == WARMUP_FRAMES) {
+				rows.clear();
+				SharedVariables.frameMetrics.clear();
+			}
+			frameStart = System.nanoTime();
+			wwd.redrawNow();
+			//exactly where the view projects the lens
+			Vec4 globePoint = m.getGlobe().computePointFromPosition(SharedVariables.pos);
+			SharedVariables.screenPoint = SharedVariables.computeScreenCoordinates(globePoint);
+		}
+
+		wwd.shutdown();
+		drawable.destroy();
+	}
+
+	private void record(double ms) {
+		rows.add(new double[] { rows.size(), ms, SharedVariables.counterOfIntersectionPoints,
+				SharedVariables.counterOfEndPointsInsideLens, SharedVariables.counterOfLinesInsideLens,
+				SharedVariables.counterOfDistortedLines, SharedVariables.counterOfFilteredLines,
+				SharedVariables.counterOfSimpleLines, SharedVariables.counterOfCulledLines });
+	}
+
+	public double getMedianTime() {
+		return median(rows);
+	}
+
+	private static double median(ArrayList<double[]> rows) {
+		if (rows.isEmpty()) {
+			return Double.NaN;
+		}
+		double[] times = new double[rows.size()];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = rows.get(i)[1];
+		}
+		Arrays.sort(times);
+		return times[times.length / 2];
+	}
+
+	/**
+	 * True if the counters of the last frame are the same of the previous run
+	 * and the median time is not more than tolerance times the previous one.
+	 */
+	public boolean compare(ArrayList<double[]> previous, double tolerance) {
+		if (rows.isEmpty() || previous.isEmpty()) {
+			System.out.println("REGRESSION: no frames to compare");
+			return false;
+		}
+		boolean ok = true;
+		double[] last = rows.get(rows.size() - 1);
+		double[] previousLast = previous.get(previous.size() - 1);
+		for (int c = 2; c < COLUMNS.length; c++) {
+			if (last[c] != previousLast[c]) {
+				System.out.println("REGRESSION: " + COLUMNS[c] + " " + (int) last[c] + " instead of "
+						+ (int) previousLast[c]);
+				ok = false;
+			}
+		}
+		double time = median(rows);
+		double previousTime = median(previous);
+		if (time > previousTime * tolerance) {
+			System.out.println("REGRESSION: median frame " + time + " ms instead of " + previousTime + " ms");
+			ok = false;
+		}
+		return ok;
+	}
+
+	public void write(File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			for (int c = 0; c < COLUMNS.length; c++) {
+				out.write((c > 0 ? "," : "") + COLUMNS[c]);
+			}
+			out.newLine();
+			for (double[] row : rows) {
+				out.write((int) row[0] + "," + row[1]);
+				for (int c = 2; c < row.length; c++) {
+					out.write("," + (int) row[c]);
+				}
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ArrayList<double[]> read(File file) throws IOException {
+		ArrayList<double[]> rows = new ArrayList<double[]>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			//the header
+			String line = in.readLine();
+			while ((line = in.readLine()) != null) {
+				String[] values = line.split(",");
+				double[] row = new double[values.length];
+				for (int i = 0; i < values.length; i++) {
+					row[i] = Double.parseDouble(values[i]);
+				}
+				rows.add(row);
+			}
+		} finally {
+			in.close();
+		}
+		return rows;
+	}
+}
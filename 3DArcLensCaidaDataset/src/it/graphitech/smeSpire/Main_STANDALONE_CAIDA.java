@@ -27,10 +27,12 @@ import it.graphitech.ColorsList;
 import it.graphitech.GeneratorOfRenderableObjects;
 import it.graphitech.core.MyBasicSceneController;
 import it.graphitech.smeSpire.entry.Entry;
+import it.graphitech.smeSpire.entry.FlowsLoader;
 import it.graphitech.smeSpire.framebuffer.MyBasicOrbitView;
 import it.graphitech.smeSpire.framebuffer.MyRectangularTessellator;
 import it.graphitech.smeSpire.layers.GlobeAnnotation;
 import it.graphitech.smeSpire.layers.MyRenderableLayer;
+import it.graphitech.smeSpire.layers.NodeLabelLayer;
 import it.graphitech.smeSpire.layers.Earth.BMNGWMSLayer;
 import it.graphitech.smeSpire.statistics.StatisticsPanel;
 
@@ -47,10 +49,6 @@ import it.graphitech.smeSpire.statistics.StatisticsPanel;
 import javax.swing.*;
 
 import java.awt.*;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -389,15 +387,7 @@ public class Main_STANDALONE_CAIDA{
          
          
          
-         //CARICO PUNTI
-         SharedVariables.entries = new ArrayList<String>();
-         SharedVariables.nodes =new HashMap<String, Position>();     
-         SharedVariables.city_to_city = new HashMap<String, Entry>();            
-     	 dataPath = "./src/data/caida3.csv";        	
-         loadFlowsDataFromFILE(dataPath,SharedVariables.nodes,SharedVariables.entries,SharedVariables.city_to_city); 
-        System.out.println("AS Core arcs");
-         System.out.println("# nodi: "+SharedVariables.nodes.size());
-         System.out.println("# archi: "+SharedVariables.city_to_city.size());
+         //STESSI PUNTI, GIA' CARICATI
          insertAnnotations(wwd,SharedVariables.nodes,"FLAT MAP: AS Core arcs annotations");
          GeneratorOfRenderableObjects.GeneratorOfRenderableObjectsOnFlatMap(wwd, SharedVariables.entries, SharedVariables.city_to_city, "FLAT MAP: AS Core arcs");
         
@@ -554,10 +544,13 @@ public class Main_STANDALONE_CAIDA{
         
         static public void insertAnnotations(WorldWindow wwd,HashMap<String, Position> list, String name){
         	
-        	AnnotationLayer annLayer = new AnnotationLayer();
+        	//one layer draws all the labels, sharing the same attributes
+        	NodeLabelLayer annLayer = new NodeLabelLayer();
         	annLayer.setName(name);
         	
         	annLayer.setPickEnabled(false);
+        	annLayer.setEnabled(false);
+        	annLayer.getAttributes().setTextColor(Color.WHITE);
         	
         	int index =0;
         	
@@ -568,30 +561,8 @@ public class Main_STANDALONE_CAIDA{
         		String nameAnn = ""+index;
         		nameAnn=reverseIt(nameAnn);
         		
-        		GlobeAnnotation a = new GlobeAnnotation(nameAnn, newPos);
+        		annLayer.addLabel(nameAnn, newPos);
         		index++;
-        		 // Create default attributes
-                AnnotationAttributes defaultAttributes = new AnnotationAttributes();
-                defaultAttributes.setCornerRadius(10);
-               // defaultAttributes.setInsets(new Insets(8, 8, 8, 8));
-                defaultAttributes.setFrameShape(AVKey.SHAPE_NONE); 
-                //defaultAttributes.setBackgroundColor(new Color(0f, 0f, 0f, .5f));
-                defaultAttributes.setBackgroundColor(null);
-                defaultAttributes.setTextColor(Color.WHITE);
-                //defaultAttributes.setDrawOffset(new Point(25, 25));
-                defaultAttributes.setDistanceMinScale(.5);
-                defaultAttributes.setDistanceMaxScale(2);
-                defaultAttributes.setDistanceMinOpacity(.5);
-                defaultAttributes.setLeaderGapWidth(14);
-                defaultAttributes.setDrawOffset(new Point(0, 0));
-                defaultAttributes.setOpacity(1);
-                
-                a.setAttributes(defaultAttributes);
-                a.setAltitudeMode(WorldWind.RELATIVE_TO_GROUND);
-                a.setAlwaysOnTop(false);
-                annLayer.setEnabled(false);
-               // a.setHeightInMeter(200000);
-        		annLayer.addAnnotation(a);        		
         	}
         	
         	 int compassPosition = 0;
@@ -615,136 +586,19 @@ public class Main_STANDALONE_CAIDA{
           }
         
         static public void loadFlowsDataFromFILE(String dataPath,HashMap<String, Position> nodes,ArrayList<String> entries, HashMap<String, Entry> city_to_city) {
-        	int i=1;
-        	int maxDegree = 0;
-        	int minDegree = Integer.MAX_VALUE;
+        	FlowsLoader loader = new FlowsLoader();
+        	loader.load(dataPath);
         	
-        	try{
-        		//String dataPath = "./src/data/City2City_flows.csv"; 
-        		
-        		//String dataPath = "./src/data/test.csv";
-        		FileInputStream fstream = new FileInputStream(dataPath);
-        		DataInputStream in = new DataInputStream(fstream);
-        		BufferedReader br = new BufferedReader(new InputStreamReader(in));
-        		 
-        		String strLine;
-        		
-        		while ((strLine = br.readLine()) != null) {  
-        			
-        			
-        			Entry entry = new Entry();
-        			
-        			String[] data = strLine.split(";");
-        			
-        			
-        			if(		(data[0].compareTo("#N/A")!=0)&&
-        					(data[1].compareTo("#N/A")!=0)&&
-        					(data[2].compareTo("#N/A")!=0)&&
-        					(data[3].compareTo("#N/A")!=0)&&
-        					(data[4].compareTo("#N/A")!=0)&&
-        					(data[5].compareTo("#N/A")!=0)&&
-        					(data[6].compareTo("#N/A")!=0)&&
-        					(data[7].compareTo("#N/A")!=0)&&
-        					(data[8].compareTo("#N/A")!=0)&&
-        					(data[9].compareTo("#N/A")!=0)&&
-        					(data[10].compareTo("#N/A")!=0)        					
-        					){
-        			
-        			String fromID = data[1].trim();
-        			String fromOrg = data[0].trim();
-        			double fromLat = Double.parseDouble(data[3].trim());
-        			double fromLon = Double.parseDouble(data[4].trim());
-        			
-        			//System.out.println("-sss-> "+Double.parseDouble(data[2].replace(",",".").trim()));
-        			//System.out.println("--> "+Integer.parseInt(data[2].trim()));
-        			
-        			int from_trafficDegree = (int)Double.parseDouble(data[2].replace(",",".").trim());
-        			
-        			
-        			entry.setFrom_id(fromID);        			
-        			entry.setFrom_org(fromOrg);    
-        			
-        			entry.setFrom_lat(fromLat);
-        			entry.setFrom_lon(fromLon);
-        			
-        			entry.setFrom_trafficDegree(from_trafficDegree);
-        			
-        			
-        			
-        			entry.setTo_id(data[6].trim());
-        			entry.setTo_org(data[5].trim());    
-        			
-        			entry.setTo_lat(Double.parseDouble(data[8].trim()));
-        			entry.setTo_lon(Double.parseDouble(data[9].trim()));
-        			
-        			int to_trafficDegree = (int)Double.parseDouble(data[7].replace(",",".").trim());
-        			
-        			entry.setTo_trafficDegree(to_trafficDegree);
-        			
-        			int trafficDegree = (int)Double.parseDouble(data[10].replace(",",".").trim());
-        			
-        			
-        			entry.setTrafficDegree(trafficDegree);
-        		
-	i++;
-				
-	int numDegree = 100;
-	
-	if((from_trafficDegree>numDegree)&&(to_trafficDegree>numDegree)){
-	
-		if(from_trafficDegree>maxDegree){
-			maxDegree=from_trafficDegree;
-		}
-		if(to_trafficDegree>maxDegree){
-			maxDegree=to_trafficDegree;
-		}
-		if(from_trafficDegree<minDegree){
-			minDegree=from_trafficDegree;
-		}
-		if(to_trafficDegree<minDegree){
-			minDegree=to_trafficDegree;
-		}
-		
-		
-        	        		//if(true){
-        			if(!nodes.containsKey(entry.getFrom_id())){
-        				Position p = Position.fromDegrees(entry.getFrom_lat(), entry.getFrom_lon());
-        				nodes.put(entry.getFrom_id(), p);	        			
-	        		}
-        			if(!nodes.containsKey(entry.getTo_id())){
-        				Position p = Position.fromDegrees(entry.getTo_lat(), entry.getTo_lon());
-        				nodes.put(entry.getTo_id(), p);	      		
-	        		}
-        			
-        			
-        						String key = entry.getFrom_id() + "-" + entry.getTo_id();
-	        		if(!entries.contains(key)){
-	        			entries.add(key);
-	        			city_to_city.put(key, entry);
-	        		}
-	        		
-	}
-	        	//	else{
-	       			//	Entry updated = city_to_city.get(key);
-	       			//	updated.setEc_funding(updated.getEc_funding() + entry.getEc_funding());
-	       			//	city_to_city.put(key, updated);
-	       			//}	
-	        		
-        					}
-        		//		}
-        			
-        		}
-        		//}
-        		
-        		System.out.println("## nodes: "+nodes.size());
-        		SharedVariables.maxTransitDegree=maxDegree;
-        		SharedVariables.minTransitDegree=minDegree;
-        		System.out.println("minDegree: "+minDegree);
-        		System.out.println("maxDegree: "+maxDegree);
-        		System.out.println("FINITO LINES");
-        		
-        		in.close();
-        	}catch (Exception e){System.err.println("Error: " + e.getMessage() + " " + i);}
+        	nodes.putAll(loader.getNodes());
+        	entries.addAll(loader.getEntries());
+        	city_to_city.putAll(loader.getCity_to_city());
+        	
+        	System.out.println("## nodes: "+nodes.size());
+        	SharedVariables.maxTransitDegree=loader.getMaxDegree();
+        	SharedVariables.minTransitDegree=loader.getMinDegree();
+        	System.out.println("minDegree: "+loader.getMinDegree());
+        	System.out.println("maxDegree: "+loader.getMaxDegree());
+        	System.out.println("FINITO LINES");
 		}
         
     
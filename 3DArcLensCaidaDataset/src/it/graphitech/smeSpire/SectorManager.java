@@ -2,34 +2,55 @@ package it.graphitech.smeSpire;
 
 import gov.nasa.worldwind.geom.Vec4;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class SectorManager {
-	public static HashMap<Integer , ArrayList<String>> lensSectorsMap = new HashMap<Integer, ArrayList<String>>();
-	public static HashMap<String , Double> mapArcDistance = new HashMap<String, Double>();
-	
+	//an arc control point is identified by (indexArc << CONTROL_POINT_BITS) | indexControlPoint
+	static final int CONTROL_POINT_BITS = 8;
+
 	public static int numSectors = 4;
 	static public int deltaDistance = 10;
-	
+
+	//entries added in the current frame
+	static int numEntries = 0;
+	static int[] entryKeys = new int[64];
+	static int[] entrySectors = new int[64];
+	static double[] entryDistances = new double[64];
+
+	//entries ordered by sector and then by distance
+	static int[] sectorStart = new int[numSectors + 1];
+	static int[] orderedEntries = new int[64];
+	//position in orderedEntries of every entry
+	static int[] entryRank = new int[64];
+
+	//keys in ascending order, for the binary search of returnSector and returnDistance
+	static int[] sortedKeys = new int[64];
+	static int[] sortedKeyEntries = new int[64];
+
+	static long[] sortBuffer = new long[64];
+
+	public static int packKey(int indexArc, int indexControlPoint){
+		return (indexArc << CONTROL_POINT_BITS) | indexControlPoint;
+	}
+
 	public static double returnDistance(int indexArc, int indexControPoint){
-		int numSector = returnSector(indexArc,indexControPoint);
-		//System.out.println("cerco la distanza dell'arco:"+indexArc+" in numSector: "+numSector);		
-		//System.out.println(indexArc+"-"+indexControPoint);
-		//ArrayList<Integer> orderedListOfArcs = lensSectorsMap.get(numSector);	
-		ArrayList<String> orderedListOfArcs = lensSectorsMap.get(numSector);
-		int index = orderedListOfArcs.indexOf(indexArc+"-"+indexControPoint);
-		
-		int numArcs = orderedListOfArcs.size();
-		
+		int entry = findEntry(packKey(indexArc, indexControPoint));
+		if(entry<0){
+			return 0;
+		}
+		int numSector = entrySectors[entry];
+		int index = entryRank[entry] - sectorStart[numSector];
+
+		int numArcs = sectorStart[numSector + 1] - sectorStart[numSector];
+
 		double maxDistance = deltaDistance*(numArcs-1);
 		if(maxDistance>SharedVariables.maxDistance){
 			return (SharedVariables.maxDistance/numArcs)*index;
 		}
 		return deltaDistance*index;
-			
+
 	}
-	
+
 	public static int calculateSector(Vec4 p){
 		double angle = computeAngle(p);
 		double selSector = ((Math.PI+angle)/(2*Math.PI))*numSectors;
@@ -39,37 +60,109 @@ public class SectorManager {
 		System.out.println("angle: "+angle);
 		System.out.println("selSector: "+selSector);
 		*/
-		return (int)selSector;
+		//atan2 returns PI for the points on the negative y axis
+		return Math.min((int)selSector, numSectors-1);
 	}
 	static int returnSector(int indexArc,int indexControlPoint){
-		for(java.util.Map.Entry<Integer, ArrayList<String>> sector :lensSectorsMap.entrySet()){
-			if(sector.getValue().contains(indexArc+"-"+indexControlPoint)){
-				return sector.getKey();
-			}
+		int entry = findEntry(packKey(indexArc, indexControlPoint));
+		if(entry<0){
+			return -1;
+		}
+		return entrySectors[entry];
+
+	}
+
+	private static int findEntry(int key){
+		int i = Arrays.binarySearch(sortedKeys, 0, numEntries, key);
+		if(i<0){
+			return -1;
 		}
-		return -1;
-		
+		return sortedKeyEntries[i];
 	}
-	
+
+	/**
+	 * Adds an arc control point to a sector; the entries of the sectors are
+	 * ordered by sort().
+	 */
+	public static void add(int indexArc, int indexControlPoint, int sector, double distance){
+		if(numEntries==entryKeys.length){
+			int capacity = numEntries*2;
+			entryKeys = Arrays.copyOf(entryKeys, capacity);
+			entrySectors = Arrays.copyOf(entrySectors, capacity);
+			entryDistances = Arrays.copyOf(entryDistances, capacity);
+			orderedEntries = new int[capacity];
+			entryRank = new int[capacity];
+			sortedKeys = new int[capacity];
+			sortedKeyEntries = new int[capacity];
+			sortBuffer = new long[capacity];
+		}
+		entryKeys[numEntries] = packKey(indexArc, indexControlPoint);
+		entrySectors[numEntries] = sector;
+		entryDistances[numEntries] = distance;
+		numEntries++;
+	}
+
+	/**
+	 * Orders the entries of every sector by distance (entries with the same
+	 * distance keep the order in which they were added) and indexes them by key.
+	 */
+	public static void sort(){
+		//count the entries of every sector
+		Arrays.fill(sectorStart, 0);
+		for(int e=0;e<numEntries;e++){
+			sectorStart[entrySectors[e]+1]++;
+		}
+		for(int s=0;s<numSectors;s++){
+			sectorStart[s+1]+=sectorStart[s];
+		}
+
+		//distances are not negative, so their float bits sort like the distances
+		int[] next = Arrays.copyOf(sectorStart, numSectors);
+		for(int e=0;e<numEntries;e++){
+			float distance = (float)entryDistances[e];
+			sortBuffer[next[entrySectors[e]]++] = ((long)Float.floatToIntBits(distance) << 32) | e;
+		}
+		for(int s=0;s<numSectors;s++){
+			Arrays.sort(sortBuffer, sectorStart[s], sectorStart[s+1]);
+		}
+		for(int i=0;i<numEntries;i++){
+			int e = (int)sortBuffer[i];
+			orderedEntries[i] = e;
+			entryRank[e] = i;
+		}
+
+		for(int e=0;e<numEntries;e++){
+			sortBuffer[e] = ((long)entryKeys[e] << 32) | e;
+		}
+		Arrays.sort(sortBuffer, 0, numEntries);
+		for(int i=0;i<numEntries;i++){
+			sortedKeys[i] = (int)(sortBuffer[i] >> 32);
+			sortedKeyEntries[i] = (int)sortBuffer[i];
+		}
+	}
+
 	 static public void printSectorContents(){
-			for(java.util.Map.Entry<Integer, ArrayList<String>> sector :lensSectorsMap.entrySet()){
-				System.out.println("sector "+sector.getKey());
-				ArrayList<String> arcs = (sector.getValue());
-					for(String in : arcs){
-						double d= mapArcDistance.get(in);
-						System.out.println("arc "+in+" with distance: "+d);
+			for(int s=0;s<numSectors;s++){
+				System.out.println("sector "+s);
+					for(int i=sectorStart[s];i<sectorStart[s+1];i++){
+						int e = orderedEntries[i];
+						int key = entryKeys[e];
+						System.out.println("arc "+(key >> CONTROL_POINT_BITS)+"-"+(key & ((1 << CONTROL_POINT_BITS)-1))+" with distance: "+entryDistances[e]);
 					}
 			}
 		}
-	
-	
+
+
 	private static double computeAngle(Vec4 p){
 		return Math.atan2(p.x,p.y);
 		//return 0;
 	}
-	public static void initLensAnglesMap(int numSectors){		
-		for(int i=0;i<numSectors;i++){
-			lensSectorsMap.put(i, new ArrayList<String>());
+	public static void initLensAnglesMap(int numSectors){
+		SectorManager.numSectors = numSectors;
+		if(sectorStart.length!=numSectors+1){
+			sectorStart = new int[numSectors+1];
 		}
+		Arrays.fill(sectorStart, 0);
+		numEntries = 0;
 	}
 }
@@ -5,6 +5,7 @@ import it.graphitech.smeSpire.entry.Entry;
 import it.graphitech.smeSpire.framebuffer.MyBasicOrbitView;
 import it.graphitech.smeSpire.framebuffer.MyFlatOrbitView;
 import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+import it.graphitech.smeSpire.statistics.FrameMetrics;
 
 import java.awt.Color;
 import java.awt.Component;
@@ -52,6 +53,16 @@ public class SharedVariables {
 	static public int counterOfDistortedLines=0;
 	static public int counterOfSimpleLines=0;
 	static public int counterOfLinesInsideLens=0;
+	//vertices of the context arcs drawn in the frame
+	static public int counterOfContextVertices=0;
+	//arcs outside the view or behind the horizon
+	static public int counterOfCulledLines=0;
+	//node labels drawn, the others are hidden or overlap
+	static public int counterOfLabels=0;
+	//points of the last detection pass where the arcs cross the lens border
+	static public int counterOfIntersectionPoints=0;
+	//points of the last detection pass at an arc end inside the lens
+	static public int counterOfEndPointsInsideLens=0;
 	
 	 static public int numSubsegments = 30;
 	//static public int numSubsegments = 5;
@@ -71,6 +82,7 @@ public class SharedVariables {
 	public static WorldWindow wwd;
 
 	public static RenderTextureOnScreen sr = new RenderTextureOnScreen();
+	public static FrameMetrics frameMetrics = new FrameMetrics();
 
 	
 	public  static boolean debugMode = false;
@@ -81,6 +93,18 @@ public class SharedVariables {
 	//public static boolean useGlobalLineWidth = false; 
 	public static boolean lensIsActive = true;
 	public static boolean showTextures = false;
+	//draw the arcs of each state class with one glMultiDrawArrays (see ArcBatch)
+	public static boolean batchedRendering = true;
+	//hide the points behind the globe in the point detection geometry shader, using the terrain depth (see FBOManager.copyTerrainDepth)
+	public static boolean gpuOcclusionTest = true;
+	//relative eye distance a point may lie behind the terrain and still be visible
+	public static double occlusionTolerance = 0.005;
+	//draw the context arcs with fewer vertices when they are short on the screen (see ArcLevelOfDetail)
+	public static boolean levelOfDetail = true;
+	//skip the arcs outside the view frustum or behind the horizon (see ArcCuller)
+	public static boolean culling = true;
+	//screen length in pixels of a segment of an arc drawn at a lower level of detail
+	public static double lodPixelsPerSegment = 6;
 	
 	public static double lense_h=150;
 	public static double lense_w=150;
@@ -1,11 +1,10 @@
 package it.graphitech.smeSpire.buffers;
 
 
-import it.graphitech.smeSpire.Main_STANDALONE_CAIDA;
+import it.graphitech.smeSpire.SharedVariables;
 
 
 
-import java.awt.Component;
 import java.io.File;
 
 import gov.nasa.worldwind.Configuration;
@@ -41,6 +40,9 @@ public class FBOManager {
 	public static int pointDetectionTextureObject;
 	public static int depthTextureObject;
 	
+	//textures of the FBO, reallocated when the canvas is resized
+	protected RenderTargetPool renderTargets = new RenderTargetPool();
+	
 	public TransformFeedbackObject transformFeedback;
 	
 	public void setup(DrawContext dc){
@@ -57,52 +59,58 @@ public class FBOManager {
 			VersionNumber vers_number = dc.getGL().getGL2().getContext().getGLSLVersionNumber();
 			String vers_str = dc.getGL().getGL2().getContext().getGLSLVersionString();
 			
-		
-			
 			System.out.println("openGL_version: "+openGL_version);
 			System.out.println("GLSL_version: "+GLSL_version);
 			System.out.println("getGLSLVersionNumber: "+vers_number);
 			System.out.println("getGLSLVersionString: "+vers_str);
 			
-			
-            h_window_in_pixels =((Component)Main_STANDALONE_CAIDA.wwd).getSize().height;
-            w_window_in_pixels =((Component)Main_STANDALONE_CAIDA.wwd).getSize().width;
-         
-			System.out.println("h_window_in_pixels: "+h_window_in_pixels);
-            System.out.println("w_window_in_pixels: "+w_window_in_pixels);
 		//createFBO
             createFramebufferObjects(dc);
 		
+		firstTime=true;
+		}
 		
-	  
-        int pointDetection = this.createTexture((int)w_window_in_pixels, (int)h_window_in_pixels,GL2.GL_RGBA);
-      		pointDetectionTextureObject = pointDetection;
-          //    dc.getTextureCache().put(textureCacheKey_OnScreen, texture_on_Screen);
-        
-        //createDepthTexture
-       
-      		//Texture depth_texture = this.createDepthTexture((int)w_window_in_pixels, (int)h_window_in_pixels);
-        //dc.getTextureCache().put(textureCacheKey_DepthMap, depth_texture);
-		int depth_texture = this.createTexture((int)w_window_in_pixels, (int)h_window_in_pixels,GL2.GL_DEPTH_COMPONENT);
-      		depthTextureObject = depth_texture;
-      //createDepthTexture
-       // Texture gradient_texture = this.createTexture((int)w_window_in_pixels, (int)h_window_in_pixels);
-       // int gradient_texture = this.createTexture((int)w_window_in_pixels, (int)h_window_in_pixels,GL2.GL_RGBA);
-        //attachTexturetoColorFramebuffer	
-       
-      
+		java.awt.Rectangle viewport = dc.getView().getViewport();
+		ensureSize(dc, (int)viewport.getWidth(), (int)viewport.getHeight());
+	}
+	
+	/**
+	 * The offscreen pass only feeds the point detection of the lens.
+	 */
+	public static boolean isOffscreenPassNeeded(){
+		return SharedVariables.lensIsActive;
+	}
+	
+	/**
+	 * Attaches to the FBO textures of the given size, taking them from the pool
+	 * and giving the previous ones back. Nothing is done if the size is unchanged.
+	 */
+	public void ensureSize(DrawContext dc, int width, int height){
+		if(width <= 0 || height <= 0){
+			return;
+		}
+		if(width == w_window_in_pixels && height == h_window_in_pixels){
+			return;
+		}
+		GL2 gl = dc.getGL().getGL2();
 		
-		 bindFramebufferObject_PointDetection(dc);
-			
-			attachTexturetoColorFramebuffer(dc, pointDetectionTextureObject);
-			attachTexturetoToDepth(dc, depth_texture);
-			//dc.getGL().getGL2().glDrawBuffer(GL2.GL_NONE); 
-			
-			unbindFramebufferObject(dc);
+		renderTargets.release(gl, pointDetectionTextureObject, w_window_in_pixels, h_window_in_pixels, GL2.GL_RGBA);
+		renderTargets.release(gl, depthTextureObject, w_window_in_pixels, h_window_in_pixels, GL2.GL_DEPTH_COMPONENT);
 		
+		h_window_in_pixels = height;
+		w_window_in_pixels = width;
+		System.out.println("h_window_in_pixels: "+h_window_in_pixels);
+		System.out.println("w_window_in_pixels: "+w_window_in_pixels);
 		
-		firstTime=true;
-		}
+		pointDetectionTextureObject = renderTargets.acquire(gl, width, height, GL2.GL_RGBA);
+		depthTextureObject = renderTargets.acquire(gl, width, height, GL2.GL_DEPTH_COMPONENT);
+		
+		bindFramebufferObject_PointDetection(dc);
+		
+		attachTexturetoColorFramebuffer(dc, pointDetectionTextureObject);
+		attachTexturetoToDepth(dc, depthTextureObject);
+		
+		unbindFramebufferObject(dc);
 	}
 	
 	 protected void attachTexturetoColorFramebuffer(DrawContext dc, int textureObject)
@@ -224,47 +232,6 @@ public class FBOManager {
         }
     }
 	
-	 protected int createTexture(int width, int height, int format)
-	    {	    	
-		 System.out.println("createTexture");
-		 
-	    	 GL2 gl = GLContext.getCurrent().getGL().getGL2();
-	 
-	    	//
-	   
-	        int[] tmp = new int[1];
-            gl.glGenTextures(1, tmp, 0);
-           int textureObject = tmp[0];
-   
-           System.out.println("creo texture: "+textureObject);
-            gl.glBindTexture(GL2.GL_TEXTURE_2D, textureObject);
-	   
-            
-            gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_LINEAR);
-	        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_LINEAR);
-	        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
-	        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
-
-	        if(format==GL2.GL_R32F){
-	        	System.out.println("in formato R float");
-	        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, format,width, height, 0,GL2.GL_RED,  GL2.GL_FLOAT, null);
-	        }else
-	        	if(format==GL2.GL_RG32F){
-	        		System.out.println("in formato R,G float");
-	        	//gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, format,width, height, 0,format,  GL2.GL_FLOAT, null);	
-	        	gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, format, width, height, 0, GL2.GL_RG, GL2.GL_FLOAT, null);
-	        }else{
-	        	System.out.println("in formato R,G,B");
-	        	gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, format,width, height, 0,format,  GL2.GL_UNSIGNED_BYTE, null);
-	        }
-	         return textureObject;
-	    }
-	 
-	 
-
-		  
-	 
-	 
 	 protected Texture createFloatingPointTexture(int width, int height)
 	    {	    	
 		 System.out.println("createTexture");
@@ -338,6 +305,21 @@ public class FBOManager {
 	        return t;
 	    }
 	   
+	 /**
+	  * Copies the depth of the frame buffer (only the globe is drawn at this point)
+	  * into the depth texture, for the occlusion test of the point detection shader.
+	  */
+	 public void copyTerrainDepth(DrawContext dc){
+		 GL2 gl = dc.getGL().getGL2();
+		 java.awt.Rectangle viewport = dc.getView().getViewport();
+		 int width = Math.min((int)viewport.getWidth(), w_window_in_pixels);
+		 int height = Math.min((int)viewport.getHeight(), h_window_in_pixels);
+		 
+		 gl.glBindTexture(GL2.GL_TEXTURE_2D, depthTextureObject);
+		 gl.glCopyTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, 0, 0, 0, width, height);
+		 gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+	 }
+	 
 	 public void bindFramebufferObject_PointDetection(DrawContext dc){
 	    	GL2 gl = dc.getGL().getGL2(); 
 	    	gl.glBindFramebuffer(GL2.GL_FRAMEBUFFER, framebufferObject_PointDetection);
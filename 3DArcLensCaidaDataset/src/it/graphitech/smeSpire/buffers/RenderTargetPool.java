@@ -0,0 +1,128 @@
+package it.graphitech.smeSpire.buffers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+/**
+ * Textures used as render targets, pooled by width, height and format. A
+ * texture released when the canvas is resized is kept and given back when a
+ * target of the same size and format is acquired again, so that resizing back
+ * and forth does not allocate a texture every time. Only MAX_FREE textures are
+ * kept, the oldest ones are deleted.
+ */
+public class RenderTargetPool {
+
+	static final int MAX_FREE = 4;
+
+	private final HashMap<Key, ArrayDeque<Integer>> free = new HashMap<Key, ArrayDeque<Integer>>();
+	//keys of the free textures, oldest first
+	private final ArrayList<Key> freeOrder = new ArrayList<Key>();
+
+	private static class Key {
+		final int width;
+		final int height;
+		final int format;
+
+		Key(int width, int height, int format) {
+			this.width = width;
+			this.height = height;
+			this.format = format;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return width == k.width && height == k.height && format == k.format;
+		}
+
+		@Override
+		public int hashCode() {
+			return (width * 31 + height) * 31 + format;
+		}
+	}
+
+	/**
+	 * Returns a texture of the given size and format, taken from the pool or
+	 * created.
+	 */
+	public int acquire(GL2 gl, int width, int height, int format) {
+		Key key = new Key(width, height, format);
+		ArrayDeque<Integer> textures = free.get(key);
+		if (textures != null && !textures.isEmpty()) {
+			freeOrder.remove(key);
+			return textures.pop();
+		}
+		return createTexture(gl, width, height, format);
+	}
+
+	/**
+	 * Gives a texture acquired with the given size and format back to the pool.
+	 */
+	public void release(GL2 gl, int textureObject, int width, int height, int format) {
+		if (textureObject <= 0) {
+			return;
+		}
+		Key key = new Key(width, height, format);
+		ArrayDeque<Integer> textures = free.get(key);
+		if (textures == null) {
+			textures = new ArrayDeque<Integer>();
+			free.put(key, textures);
+		}
+		textures.push(textureObject);
+		freeOrder.add(key);
+
+		while (freeOrder.size() > MAX_FREE) {
+			Key oldest = freeOrder.remove(0);
+			int texture = free.get(oldest).removeLast();
+			gl.glDeleteTextures(1, new int[] { texture }, 0);
+		}
+	}
+
+	/**
+	 * Deletes all the textures in the pool.
+	 */
+	public void clear(GL2 gl) {
+		for (ArrayDeque<Integer> textures : free.values()) {
+			for (int texture : textures) {
+				gl.glDeleteTextures(1, new int[] { texture }, 0);
+			}
+		}
+		free.clear();
+		freeOrder.clear();
+	}
+
+	public int getNumFree() {
+		return freeOrder.size();
+	}
+
+	protected int createTexture(GL2 gl, int width, int height, int format) {
+		int[] tmp = new int[1];
+		gl.glGenTextures(1, tmp, 0);
+		int textureObject = tmp[0];
+
+		System.out.println("creo texture: " + textureObject + " " + width + "x" + height);
+		gl.glBindTexture(GL2.GL_TEXTURE_2D, textureObject);
+
+		gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_LINEAR);
+		gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_LINEAR);
+		gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+		gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
+
+		if (format == GL2.GL_R32F) {
+			gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, format, width, height, 0, GL2.GL_RED, GL2.GL_FLOAT, null);
+		} else if (format == GL2.GL_RG32F) {
+			gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, format, width, height, 0, GL2.GL_RG, GL2.GL_FLOAT, null);
+		} else {
+			gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, format, width, height, 0, format, GL2.GL_UNSIGNED_BYTE, null);
+		}
+		gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+		return textureObject;
+	}
+}
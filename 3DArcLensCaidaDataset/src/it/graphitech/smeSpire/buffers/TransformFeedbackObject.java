@@ -10,17 +10,37 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
 import javax.media.opengl.GL2;
+import javax.media.opengl.GL3ES3;
 
 public class TransformFeedbackObject {
 
+	//buffers written in turn by the point detection pass, so that the read back
+	//of one frame never waits for the pass of the following one
+	static final int NUM_BUFFERS = 3;
+
 	GL2 gl;
+	//fences tell when a pass is completed, without them the read back waits for the GPU
+	boolean useFences;
+	
+	IntBuffer tfObjects;
+	IntBuffer queries;
+	long[] fences = new long[NUM_BUFFERS];
+	//size in floats of every buffer, they are reallocated when the capacity grows
+	int[] bufferElements = new int[NUM_BUFFERS];
+	boolean[] written = new boolean[NUM_BUFFERS];
+	int writeIndex = NUM_BUFFERS - 1;
+	int lastReadIndex = -1;
 	
-	IntBuffer tfObject;
 	//int usage = GL2.GL_DYNAMIC_READ;
-	int usage = GL2.GL_STATIC_READ;
+	int usage = GL2.GL_STREAM_READ;
 	int numTransformFeedbackBufferElements  = 500000;
 	
-	FloatBuffer emptyBuffer;
+	//each detected point is a vec4
+	static final int NUM_FLOATS_PER_POINT = 4;
+	
+	//reused by every read back, grows with the capacity
+	FloatBuffer feedback;
+	IntBuffer queryResult = IntBuffer.allocate(1);
 	
 	public TransformFeedbackObject(GL2 gl) {
 			/*
@@ -29,29 +49,44 @@ public class TransformFeedbackObject {
 		gl.glGenTransformFeedbacks(1, feedback);
 		*/
 		
-		// Create transform feedback buffer
+		// Create transform feedback buffers
 		this.gl = gl;
-		tfObject = IntBuffer.allocate(1);
-	    gl.glGenBuffers(1, tfObject);
+		tfObjects = IntBuffer.allocate(NUM_BUFFERS);
+	    gl.glGenBuffers(NUM_BUFFERS, tfObjects);
+	    queries = IntBuffer.allocate(NUM_BUFFERS);
+	    gl.glGenQueries(NUM_BUFFERS, queries);
+	    //the sync functions are on GL3ES3, reachable only from a context of version 3.1 or later
+	    useFences = gl.isExtensionAvailable("GL_ARB_sync") && gl.isGL3ES3();
 	    
-	    emptyBuffer = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);	
+	    feedback = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);
+	    feedback.limit(0);
 		
-	    initTransformFeedbackBuffer();
-	    System.out.println("TBO: "+tfObject.get(0));
+	    System.out.println("TBO: "+tfObjects.get(0)+" - "+tfObjects.get(NUM_BUFFERS-1));
 	}
 public int getNumTransformFeedbackBufferElements(){
 	return numTransformFeedbackBufferElements;
 }
 	
 	
+	//moves to the next buffer of the ring, to be called before every point detection pass
 	public void initTransformFeedbackBuffer(){
-		gl.glBindBuffer(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, tfObject.get(0));
-		//IntBuffer feedback = newIntBuffer(10000);
-		/*
-		FloatBuffer feedback = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);	
-		 gl.glBufferData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, numTransformFeedbackBufferElements, feedback, usage);
-		 */
-		 gl.glBufferData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, numTransformFeedbackBufferElements, emptyBuffer, usage);
+		writeIndex = (writeIndex + 1) % NUM_BUFFERS;
+		if(fences[writeIndex]!=0){
+			gl.getGL3ES3().glDeleteSync(fences[writeIndex]);
+			fences[writeIndex]=0;
+		}
+		written[writeIndex]=false;
+		if(writeIndex==lastReadIndex){
+			//the points already read stay in the feedback buffer
+			lastReadIndex=-1;
+		}
+		
+		gl.glBindBuffer(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, tfObjects.get(writeIndex));
+		if(bufferElements[writeIndex]!=numTransformFeedbackBufferElements){
+			//the content is never read past the number of written points, no need to clear it
+			 gl.glBufferData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, numTransformFeedbackBufferElements*SharedVariables.SIZEOF_FLOAT, null, usage);
+			 bufferElements[writeIndex]=numTransformFeedbackBufferElements;
+		}
 	}
 
 	
@@ -59,7 +94,7 @@ public int getNumTransformFeedbackBufferElements(){
 	{
 	   // gl.glBindTransformFeedbackNV(GL2.GL_TRANSFORM_FEEDBACK_NV, feedback.get(0));
 	
-		 gl.glBindBufferBase(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, tfObject.get(0));
+		 gl.glBindBufferBase(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, tfObjects.get(writeIndex));
 	}
 
 	public void unbind()
@@ -76,6 +111,8 @@ public int getNumTransformFeedbackBufferElements(){
 	
 	public void begin(int primitiveMode)
 	{
+		//counts also the points that do not fit in the buffer
+		gl.glBeginQuery(GL2.GL_PRIMITIVES_GENERATED, queries.get(writeIndex));
 		gl.glBeginTransformFeedback(primitiveMode);
 	}
 
@@ -92,6 +129,11 @@ public int getNumTransformFeedbackBufferElements(){
 	public void end()
 	{
 		gl.glEndTransformFeedback();
+		gl.glEndQuery(GL2.GL_PRIMITIVES_GENERATED);
+		if(useFences){
+			fences[writeIndex] = gl.getGL3ES3().glFenceSync(GL3ES3.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		}
+		written[writeIndex]=true;
 	}
 	
 	
@@ -117,44 +159,97 @@ public int getNumTransformFeedbackBufferElements(){
 	  public void readFloatBuffer(){
 	        
 	         // Fetch and print results
-	            FloatBuffer feedback = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);
-	          
-	            gl.glGetBufferSubData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, feedback.capacity(), feedback);
+	            FloatBuffer feedback = getFloatBuffer();
 
 	            System.out.println("read transform feedback buffer");
-	            for (int i = 0; i < 15; i++) {
+	            for (int i = 0; i < 15 && i < feedback.limit(); i++) {
 	                System.out.println("-: "+ feedback.get(i));
 	            }
 	  }
 	  
 	  
+	  /**
+	   * Returns the points of the most recent pass the GPU has already completed,
+	   * without waiting for the pass of the current frame. Until a newer pass is
+	   * completed the points of the last read are returned again.
+	   * Without GL_ARB_sync the points of the current pass are read, waiting for the GPU.
+	   * The buffer is reused: its content is valid until the next call.
+	   */
 	  public FloatBuffer getFloatBuffer(){
-	        
-	         // Fetch and print results
-	            FloatBuffer feedback = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);	          
-	            gl.glGetBufferSubData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, feedback.capacity(), feedback);
-	            return feedback;           
-	           
+		  for (int n = 0; n < NUM_BUFFERS; n++) {
+			  int index = (writeIndex - n + NUM_BUFFERS) % NUM_BUFFERS;
+			  if(!written[index]){
+				  continue;
+			  }
+			  if(index==lastReadIndex){
+				  //nothing newer is ready yet
+				  break;
+			  }
+			  if(isCompleted(index)){
+				  read(index);
+				  break;
+			  }
+		  }
+		  feedback.position(0);
+		  return feedback;
+	  }
+	  
+	  private boolean isCompleted(int index){
+		  if(!useFences){
+			  //glGetBufferSubData blocks until the pass is completed
+			  return true;
+		  }
+		  int status = gl.getGL3ES3().glClientWaitSync(fences[index], 0, 0);
+		  return (status==GL3ES3.GL_ALREADY_SIGNALED)||(status==GL3ES3.GL_CONDITION_SATISFIED);
+	  }
+	  
+	  private void read(int index){
+		  gl.glGetQueryObjectuiv(queries.get(index), GL2.GL_QUERY_RESULT, queryResult);
+		  int numPoints = queryResult.get(0);
+		  int numElements = Math.min(numPoints*NUM_FLOATS_PER_POINT, bufferElements[index]);
+		  
+		  if(numPoints*NUM_FLOATS_PER_POINT>bufferElements[index]){
+			  //some points were lost, the next passes use bigger buffers
+			  numTransformFeedbackBufferElements = Math.max(numTransformFeedbackBufferElements, Integer.highestOneBit(numPoints*NUM_FLOATS_PER_POINT)*2);
+			  System.out.println("transformFeedback PIENO, new size: "+numTransformFeedbackBufferElements);
+		  }
+		  
+		  if(feedback.capacity()<numElements){
+			  feedback = SharedVariables.newFloatBuffer(numTransformFeedbackBufferElements);
+		  }
+		  feedback.clear();
+		  feedback.limit(numElements);
+		  
+		  gl.glBindBuffer(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, tfObjects.get(index));
+		  gl.glGetBufferSubData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, numElements*SharedVariables.SIZEOF_FLOAT, feedback);
+		  gl.glBindBuffer(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0);
+		  
+		  if(fences[index]!=0){
+			  gl.getGL3ES3().glDeleteSync(fences[index]);
+			  fences[index]=0;
+		  }
+		  lastReadIndex = index;
 	  }
 	  
 	  
 	  public IntBuffer getIntBuffer(){
 	        
 	         // Fetch and print results
-	            IntBuffer feedback = SharedVariables.newIntBuffer(numTransformFeedbackBufferElements);	          
-	            gl.glGetBufferSubData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, feedback.capacity(), feedback);
+	            FloatBuffer points = getFloatBuffer();
+	            IntBuffer feedback = SharedVariables.newIntBuffer(points.limit());
+	            for (int i = 0; i < points.limit(); i++) {
+	            	feedback.put(i, Float.floatToRawIntBits(points.get(i)));
+	            }
 	            return feedback;           
 	           
 	  }
-	
+
 	  public void readIntBuffer(){
 	        
 	         // Fetch and print results
-	            IntBuffer feedback = SharedVariables.newIntBuffer(numTransformFeedbackBufferElements);
-	          
-	            gl.glGetBufferSubData(GL2.GL_TRANSFORM_FEEDBACK_BUFFER, 0, feedback.capacity(), feedback);
+	            IntBuffer feedback = getIntBuffer();
 
-	            for (int i = 0; i < 15; i++) {
+	            for (int i = 0; i < 15 && i < feedback.limit(); i++) {
 	            	int value = feedback.get(i);
 	            	
 	                System.out.println("-: "+ value);
@@ -162,5 +257,5 @@ public int getNumTransformFeedbackBufferElements(){
 	            }
 	  }
 	 
-	
+
 }
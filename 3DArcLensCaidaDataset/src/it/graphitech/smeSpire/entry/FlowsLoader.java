@@ -0,0 +1,287 @@
+package it.graphitech.smeSpire.entry;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Loads the CAIDA flows file (one "from;to" AS link per line) into the
+ * Entry/Position model used by GeneratorOfRenderableObjects.
+ *
+ * The CSV is read in a single streaming pass and duplicated "from-to" keys are
+ * discarded through a hash set. The result is stored next to the CSV in a
+ * binary snapshot (<code>dataPath + ".snapshot"</code>) which is reused as
+ * long as the CSV length and modification time are unchanged.
+ */
+public class FlowsLoader {
+
+	private static final int SNAPSHOT_MAGIC = 0x43414944; // "CAID"
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	private static final int NUM_FIELDS = 11;
+	private static final String NOT_AVAILABLE = "#N/A";
+
+	//only links where both nodes have at least this traffic degree are kept
+	public static final int MIN_TRAFFIC_DEGREE = 100;
+
+	private final ArrayList<String> entries = new ArrayList<String>();
+	private final HashMap<String, Entry> city_to_city = new HashMap<String, Entry>();
+	private final HashMap<String, Position> nodes = new HashMap<String, Position>();
+
+	private int maxDegree = 0;
+	private int minDegree = Integer.MAX_VALUE;
+
+	public FlowsLoader() {
+
+	}
+
+	public ArrayList<String> getEntries() {
+		return entries;
+	}
+
+	public HashMap<String, Entry> getCity_to_city() {
+		return city_to_city;
+	}
+
+	public HashMap<String, Position> getNodes() {
+		return nodes;
+	}
+
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	public int getMinDegree() {
+		return minDegree;
+	}
+
+	/**
+	 * Fills the model from the snapshot of <code>dataPath</code> if it is still
+	 * valid, otherwise parses the CSV and rewrites the snapshot.
+	 */
+	public void load(String dataPath) {
+		File csv = new File(dataPath);
+		File snapshot = new File(dataPath + SNAPSHOT_SUFFIX);
+
+		if (snapshot.isFile()) {
+			try {
+				if (readSnapshot(snapshot, csv)) {
+					System.out.println("loaded flows snapshot: " + snapshot.getPath());
+					return;
+				}
+			} catch (IOException e) {
+				System.err.println("Error reading snapshot: " + e.getMessage());
+			}
+			clear();
+		}
+
+		try {
+			readCSV(csv);
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			return;
+		}
+
+		try {
+			writeSnapshot(snapshot, csv);
+		} catch (IOException e) {
+			System.err.println("Error writing snapshot: " + e.getMessage());
+			snapshot.delete();
+		}
+	}
+
+	private void clear() {
+		entries.clear();
+		city_to_city.clear();
+		nodes.clear();
+		maxDegree = 0;
+		minDegree = Integer.MAX_VALUE;
+	}
+
+	private void readCSV(File csv) throws IOException {
+		HashSet<String> keys = new HashSet<String>();
+		String[] data = new String[NUM_FIELDS];
+		int lineNumber = 0;
+
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(csv)), 1 << 16);
+		try {
+			String strLine;
+			while ((strLine = br.readLine()) != null) {
+				lineNumber++;
+
+				if (!split(strLine, data)) {
+					continue;
+				}
+
+				Entry entry;
+				try {
+					entry = parseEntry(data);
+				} catch (NumberFormatException e) {
+					System.err.println("Error: " + e.getMessage() + " " + lineNumber);
+					continue;
+				}
+
+				if ((entry.getFrom_trafficDegree() <= MIN_TRAFFIC_DEGREE)
+						|| (entry.getTo_trafficDegree() <= MIN_TRAFFIC_DEGREE)) {
+					continue;
+				}
+
+				String key = entry.getFrom_id() + "-" + entry.getTo_id();
+				if (keys.add(key)) {
+					addEntry(key, entry);
+				}
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Splits a ';' separated line into <code>data</code> without allocating the
+	 * intermediate array of String.split. Returns false when the line has too
+	 * few fields or one of them is "#N/A".
+	 */
+	private static boolean split(String line, String[] data) {
+		int start = 0;
+		for (int f = 0; f < NUM_FIELDS; f++) {
+			int end = line.indexOf(';', start);
+			if (end < 0) {
+				if (f != NUM_FIELDS - 1) {
+					return false;
+				}
+				end = line.length();
+			}
+			String field = line.substring(start, end).trim();
+			if (field.equals(NOT_AVAILABLE)) {
+				return false;
+			}
+			data[f] = field;
+			start = end + 1;
+		}
+		return true;
+	}
+
+	private static Entry parseEntry(String[] data) {
+		Entry entry = new Entry();
+
+		entry.setFrom_org(data[0]);
+		entry.setFrom_id(data[1]);
+		entry.setFrom_trafficDegree(parseDegree(data[2]));
+		entry.setFrom_lat(Double.parseDouble(data[3]));
+		entry.setFrom_lon(Double.parseDouble(data[4]));
+
+		entry.setTo_org(data[5]);
+		entry.setTo_id(data[6]);
+		entry.setTo_trafficDegree(parseDegree(data[7]));
+		entry.setTo_lat(Double.parseDouble(data[8]));
+		entry.setTo_lon(Double.parseDouble(data[9]));
+
+		entry.setTrafficDegree(parseDegree(data[10]));
+
+		return entry;
+	}
+
+	private static int parseDegree(String value) {
+		return (int) Double.parseDouble(value.replace(',', '.'));
+	}
+
+	private void addEntry(String key, Entry entry) {
+		entries.add(key);
+		city_to_city.put(key, entry);
+
+		if (!nodes.containsKey(entry.getFrom_id())) {
+			nodes.put(entry.getFrom_id(), Position.fromDegrees(entry.getFrom_lat(), entry.getFrom_lon()));
+		}
+		if (!nodes.containsKey(entry.getTo_id())) {
+			nodes.put(entry.getTo_id(), Position.fromDegrees(entry.getTo_lat(), entry.getTo_lon()));
+		}
+
+		maxDegree = Math.max(maxDegree, Math.max(entry.getFrom_trafficDegree(), entry.getTo_trafficDegree()));
+		minDegree = Math.min(minDegree, Math.min(entry.getFrom_trafficDegree(), entry.getTo_trafficDegree()));
+	}
+
+	private boolean readSnapshot(File snapshot, File csv) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot), 1 << 16));
+		try {
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+				return false;
+			}
+			if (in.readLong() != csv.length() || in.readLong() != csv.lastModified()) {
+				return false;
+			}
+			if (in.readInt() != MIN_TRAFFIC_DEGREE) {
+				return false;
+			}
+
+			int size = in.readInt();
+			entries.ensureCapacity(size);
+			for (int i = 0; i < size; i++) {
+				Entry entry = new Entry();
+
+				entry.setFrom_id(in.readUTF());
+				entry.setFrom_org(in.readUTF());
+				entry.setFrom_lat(in.readDouble());
+				entry.setFrom_lon(in.readDouble());
+				entry.setFrom_trafficDegree(in.readInt());
+
+				entry.setTo_id(in.readUTF());
+				entry.setTo_org(in.readUTF());
+				entry.setTo_lat(in.readDouble());
+				entry.setTo_lon(in.readDouble());
+				entry.setTo_trafficDegree(in.readInt());
+
+				entry.setTrafficDegree(in.readInt());
+
+				addEntry(entry.getFrom_id() + "-" + entry.getTo_id(), entry);
+			}
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void writeSnapshot(File snapshot, File csv) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshot), 1 << 16));
+		try {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(csv.length());
+			out.writeLong(csv.lastModified());
+			out.writeInt(MIN_TRAFFIC_DEGREE);
+
+			out.writeInt(entries.size());
+			for (String key : entries) {
+				Entry entry = city_to_city.get(key);
+
+				out.writeUTF(entry.getFrom_id());
+				out.writeUTF(entry.getFrom_org());
+				out.writeDouble(entry.getFrom_lat());
+				out.writeDouble(entry.getFrom_lon());
+				out.writeInt(entry.getFrom_trafficDegree());
+
+				out.writeUTF(entry.getTo_id());
+				out.writeUTF(entry.getTo_org());
+				out.writeDouble(entry.getTo_lat());
+				out.writeDouble(entry.getTo_lon());
+				out.writeInt(entry.getTo_trafficDegree());
+
+				out.writeInt(entry.getTrafficDegree());
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
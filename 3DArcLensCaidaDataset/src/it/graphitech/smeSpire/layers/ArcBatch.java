@@ -0,0 +1,298 @@
+package it.graphitech.smeSpire.layers;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Renderable;
+import it.graphitech.colorGradient.ColorGradient;
+import it.graphitech.smeSpire.SharedVariables;
+import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+/**
+ * Collects the arcs of a MyRenderableLayer by state class during a render
+ * pass and draws each class with a single glMultiDrawArrays call.
+ * <p/>
+ * Arcs that are not deformed are drawn straight from the layer's shared
+ * vertex buffer; their colour comes from a per-vertex colour buffer built
+ * once from the transit degree of every arc. Deformed arcs are drawn from the
+ * layer's ArcVertexPool, with a colour buffer laid out like its slots.
+ * Context arcs drawn at a lower level of detail are drawn with one
+ * glDrawElements over the shared buffers, their strips separated by the
+ * primitive restart index.
+ */
+public class ArcBatch {
+
+	//arcs not touched by the lens
+	public static final int CONTEXT = 0;
+	//arcs pushed outside the lens
+	public static final int DEFORMED = 1;
+	//arcs with one node inside the lens
+	public static final int FILTERED = 2;
+	//arcs with both nodes inside the lens
+	public static final int INSIDE_LENS = 3;
+
+	private static final int NUM_CLASSES = 4;
+
+	//alpha used by the context and deformed arcs (see CubicSplinePolyline.setColorWithTransparencyBasedOnTransitDegree)
+	private static final int CONTEXT_ALPHA = 70;
+
+	private static final int RESTART_INDEX = 0xFFFFFFFF;
+
+	private int[][] firsts = new int[NUM_CLASSES][64];
+	private int[][] counts = new int[NUM_CLASSES][64];
+	private int[] sizes = new int[NUM_CLASSES];
+
+	private List<Renderable> renderables;
+	//slot capacity of the pool the deformed colours were built for
+	private int deformedColorsSlotCapacity = 0;
+
+	//indices of the context arcs drawn with a stride, uploaded at every flush
+	private IntBuffer lodIndices = newByteBuffer(64 * 1024 * 4).asIntBuffer();
+
+	//0: colours of the shared vertex buffer, 1: colours of the vertex pool, 2: lodIndices
+	private IntBuffer vbos;
+
+	public ArcBatch() {
+
+	}
+
+	public void clear() {
+		for (int c = 0; c < NUM_CLASSES; c++) {
+			sizes[c] = 0;
+		}
+		lodIndices.clear();
+	}
+
+	/**
+	 * Adds a range of the layer's shared vertex buffer to the given class.
+	 */
+	public void add(int stateClass, int first, int count) {
+		int size = sizes[stateClass];
+		if (size == firsts[stateClass].length) {
+			firsts[stateClass] = java.util.Arrays.copyOf(firsts[stateClass], size * 2);
+			counts[stateClass] = java.util.Arrays.copyOf(counts[stateClass], size * 2);
+		}
+		firsts[stateClass][size] = first;
+		counts[stateClass][size] = count;
+		sizes[stateClass] = size + 1;
+	}
+
+	/**
+	 * Adds a context arc drawing only every stride-th of its count vertices,
+	 * the last one included.
+	 */
+	public void addContext(int first, int count, int stride) {
+		if (stride <= 1) {
+			add(CONTEXT, first, count);
+			return;
+		}
+
+		int needed = (count - 1) / stride + 3;
+		if (lodIndices.remaining() < needed) {
+			IntBuffer larger = newByteBuffer(Math.max(lodIndices.capacity() * 2, lodIndices.position() + needed) * 4)
+					.asIntBuffer();
+			lodIndices.flip();
+			larger.put(lodIndices);
+			lodIndices = larger;
+		}
+		int last = first + count - 1;
+		for (int i = first; i < last; i += stride) {
+			lodIndices.put(i);
+		}
+		lodIndices.put(last);
+		lodIndices.put(RESTART_INDEX);
+	}
+
+	/**
+	 * Adds a deformed arc, whose vertices are in its slot of the layer's
+	 * ArcVertexPool. The slot is resolved when the batch is drawn, since the
+	 * pool may enlarge its slots in the meantime.
+	 */
+	public void addDeformed(int lineIndex, int numVertices) {
+		add(DEFORMED, lineIndex, numVertices);
+	}
+
+	/**
+	 * Uploads the colour of every vertex of the layer's shared vertex buffer.
+	 * Must be called once the line index of every arc is set.
+	 */
+	public void createSharedColors(DrawContext dc, List<Renderable> renderables, int numVerticesPerLine) {
+		GL gl = dc.getGL();
+		if (vbos == null) {
+			vbos = IntBuffer.allocate(3);
+			gl.glGenBuffers(3, vbos);
+		}
+		this.renderables = renderables;
+
+		ByteBuffer colors = newByteBuffer(renderables.size() * numVerticesPerLine * 4);
+		for (Renderable renderable : renderables) {
+			CubicSplinePolyline arc = (CubicSplinePolyline) renderable;
+			Color color = ColorGradient.returnInterpolatedColor(arc.getTransitDegree(),
+					SharedVariables.minTransitDegree, SharedVariables.maxTransitDegree);
+
+			colors.position(arc.getLineIndex() * numVerticesPerLine * 4);
+			for (int i = 0; i < numVerticesPerLine; i++) {
+				colors.put((byte) color.getRed());
+				colors.put((byte) color.getGreen());
+				colors.put((byte) color.getBlue());
+				colors.put((byte) 255);
+			}
+		}
+		colors.position(0);
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbos.get(0));
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, colors.capacity(), colors, GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Uploads the colour of every slot of the vertex pool, with the alpha of the
+	 * context arcs. Rebuilt only when the pool enlarges its slots.
+	 */
+	private void createDeformedColors(GL gl, ArcVertexPool pool) {
+		int slotCapacity = pool.getSlotCapacity();
+		ByteBuffer colors = newByteBuffer(pool.getNumSlots() * slotCapacity * 4);
+		for (Renderable renderable : renderables) {
+			CubicSplinePolyline arc = (CubicSplinePolyline) renderable;
+			Color color = ColorGradient.returnInterpolatedColor(arc.getTransitDegree(),
+					SharedVariables.minTransitDegree, SharedVariables.maxTransitDegree);
+
+			colors.position(pool.getFirstVertex(arc.getLineIndex()) * 4);
+			for (int i = 0; i < slotCapacity; i++) {
+				colors.put((byte) color.getRed());
+				colors.put((byte) color.getGreen());
+				colors.put((byte) color.getBlue());
+				colors.put((byte) CONTEXT_ALPHA);
+			}
+		}
+		colors.position(0);
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbos.get(1));
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, colors.capacity(), colors, GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		deformedColorsSlotCapacity = slotCapacity;
+	}
+
+	/**
+	 * Draws the classes belonging to the current pass of the layer: context
+	 * and deformed arcs while rendering the undesired arcs, filtered and
+	 * inside-lens arcs otherwise.
+	 */
+	public void flush(GL2 gl, MyRenderableLayer layer, boolean renderUndesiredArcs) {
+		if (vbos == null) {
+			return;
+		}
+
+		gl.glPushAttrib(GL2.GL_HINT_BIT | GL2.GL_CURRENT_BIT | GL2.GL_LINE_BIT
+				| GL.GL_COLOR_BUFFER_BIT | GL2.GL_ENABLE_BIT | GL.GL_DEPTH_BUFFER_BIT);
+		gl.glPushClientAttrib(GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+		try {
+			gl.glEnable(GL.GL_DEPTH_TEST);
+			gl.glDepthFunc(GL.GL_LEQUAL);
+			gl.glEnable(GL.GL_BLEND);
+
+			if (renderUndesiredArcs) {
+				if (sizes[CONTEXT] > 0 || lodIndices.position() > 0) {
+					//the shared colours are opaque, the context alpha comes from the blend colour
+					gl.glBlendColor(0f, 0f, 0f, CONTEXT_ALPHA / 255f);
+					gl.glBlendFunc(GL2.GL_CONSTANT_ALPHA, GL2.GL_ONE_MINUS_CONSTANT_ALPHA);
+					gl.glLineWidth((float) SharedVariables.lineWidth);
+					if (sizes[CONTEXT] > 0) {
+						drawClass(gl, CONTEXT, layer.getBufferAllPointsIndex(), vbos.get(0));
+					}
+					if (lodIndices.position() > 0) {
+						drawLevelOfDetail(gl, layer.getBufferAllPointsIndex(), vbos.get(0));
+					}
+				}
+
+				if (sizes[DEFORMED] > 0) {
+					ArcVertexPool pool = layer.getArcVertexPool();
+					if (deformedColorsSlotCapacity != pool.getSlotCapacity()) {
+						createDeformedColors(gl, pool);
+					}
+					//line index -> first vertex of the slot
+					int[] first = firsts[DEFORMED];
+					for (int i = 0; i < sizes[DEFORMED]; i++) {
+						first[i] = pool.getFirstVertex(first[i]);
+					}
+					gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+					gl.glLineWidth((float) SharedVariables.lineWidth);
+					drawClass(gl, DEFORMED, pool.getBufferIndex(), vbos.get(1));
+				}
+			} else {
+				gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+
+				if (sizes[FILTERED] > 0) {
+					gl.glLineWidth((float) SharedVariables.lineOfInterestWidth);
+					layer.useShader(gl);
+					drawClass(gl, FILTERED, layer.getBufferAllPointsIndex(), vbos.get(0));
+					layer.dontUseShader();
+				}
+
+				if (sizes[INSIDE_LENS] > 0) {
+					gl.glDisable(GL.GL_DEPTH_TEST);
+					gl.glLineWidth((float) SharedVariables.lineWidth);
+					drawClass(gl, INSIDE_LENS, layer.getBufferAllPointsIndex(), vbos.get(0));
+				}
+			}
+		} finally {
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+			gl.glPopClientAttrib();
+			gl.glPopAttrib();
+		}
+	}
+
+	private void drawClass(GL2 gl, int stateClass, int pointsBuffer, int colorsBuffer) {
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, pointsBuffer);
+		gl.glEnableVertexAttribArray(0);
+		gl.glVertexAttribPointer(0, 3, GL.GL_FLOAT, false, 0, 0);
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorsBuffer);
+		gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+		gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, 0, 0);
+
+		gl.glMultiDrawArrays(GL.GL_LINE_STRIP, firsts[stateClass], 0,
+				counts[stateClass], 0, sizes[stateClass]);
+
+		gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		gl.glDisableVertexAttribArray(0);
+	}
+
+	private void drawLevelOfDetail(GL2 gl, int pointsBuffer, int colorsBuffer) {
+		int numIndices = lodIndices.position();
+		lodIndices.position(0);
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, pointsBuffer);
+		gl.glEnableVertexAttribArray(0);
+		gl.glVertexAttribPointer(0, 3, GL.GL_FLOAT, false, 0, 0);
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorsBuffer);
+		gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+		gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, 0, 0);
+
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, vbos.get(2));
+		gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, (long) numIndices * 4, lodIndices, GL2.GL_STREAM_DRAW);
+		gl.glEnable(GL2.GL_PRIMITIVE_RESTART);
+		gl.glPrimitiveRestartIndex(RESTART_INDEX);
+		gl.glDrawElements(GL.GL_LINE_STRIP, numIndices, GL.GL_UNSIGNED_INT, 0);
+		gl.glDisable(GL2.GL_PRIMITIVE_RESTART);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		gl.glDisableVertexAttribArray(0);
+		lodIndices.position(numIndices);
+	}
+
+	private static ByteBuffer newByteBuffer(int numElements) {
+		ByteBuffer bb = ByteBuffer.allocateDirect(numElements);
+		bb.order(ByteOrder.nativeOrder());
+		return bb;
+	}
+}
@@ -0,0 +1,221 @@
+package it.graphitech.smeSpire.layers;
+
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.Plane;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.FlatGlobe;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.DrawContext;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Bounding sphere of every arc of a MyRenderableLayer, built once from the
+ * layer's shared vertex buffer, and the arcs that may be visible in the
+ * current frame: those intersecting the view frustum and, on the round globe,
+ * not entirely behind the horizon.
+ * <p/>
+ * The visible arcs are also merged into ranges of the shared vertex buffer for
+ * the transform feedback pass. Every range is widened by one vertex before
+ * and two after, so that each vertex of the visible arcs is still the second
+ * vertex of a GL_LINE_STRIP_ADJACENCY primitive, as when all the arcs are
+ * drawn.
+ */
+public class ArcCuller {
+
+	private int numLines = 0;
+	private int numVerticesPerLine;
+	//x, y, z of the centres
+	private double[] centers;
+	private double[] radii;
+
+	private boolean[] visible;
+	private int numVisible;
+	private long timeStamp = -1;
+
+	private int[] firsts = new int[64];
+	private int[] counts = new int[64];
+	private int numRanges;
+
+	public ArcCuller() {
+
+	}
+
+	/**
+	 * Computes the bounding spheres of the numLines arcs of points, each made
+	 * of numVerticesPerLine vertices.
+	 */
+	public void build(FloatBuffer points, int numLines, int numVerticesPerLine) {
+		this.numLines = numLines;
+		this.numVerticesPerLine = numVerticesPerLine;
+		centers = new double[numLines * 3];
+		radii = new double[numLines];
+		visible = new boolean[numLines];
+		Arrays.fill(visible, true);
+		numVisible = numLines;
+		timeStamp = -1;
+
+		for (int l = 0; l < numLines; l++) {
+			int v0 = l * numVerticesPerLine * 3;
+			double cx = 0, cy = 0, cz = 0;
+			for (int i = 0; i < numVerticesPerLine; i++) {
+				cx += points.get(v0 + i * 3);
+				cy += points.get(v0 + i * 3 + 1);
+				cz += points.get(v0 + i * 3 + 2);
+			}
+			cx /= numVerticesPerLine;
+			cy /= numVerticesPerLine;
+			cz /= numVerticesPerLine;
+
+			double r2 = 0;
+			for (int i = 0; i < numVerticesPerLine; i++) {
+				double dx = points.get(v0 + i * 3) - cx;
+				double dy = points.get(v0 + i * 3 + 1) - cy;
+				double dz = points.get(v0 + i * 3 + 2) - cz;
+				r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+			}
+			centers[l * 3] = cx;
+			centers[l * 3 + 1] = cy;
+			centers[l * 3 + 2] = cz;
+			//the vertices are floats
+			radii[l] = Math.sqrt(r2) * 1.0001 + 1;
+		}
+	}
+
+	public boolean isBuilt() {
+		return centers != null;
+	}
+
+	/**
+	 * Culls the arcs for the frame of dc; does nothing if already done for
+	 * this frame.
+	 */
+	public void cull(DrawContext dc) {
+		if (!isBuilt() || timeStamp == dc.getFrameTimeStamp()) {
+			return;
+		}
+		timeStamp = dc.getFrameTimeStamp();
+
+		if (!SharedVariables.culling) {
+			Arrays.fill(visible, true);
+			numVisible = numLines;
+			makeRanges();
+			return;
+		}
+
+		Frustum frustum = dc.getView().getFrustumInModelCoordinates();
+		Plane[] planes = frustum.getAllPlanes();
+		double[] p = new double[planes.length * 4];
+		for (int i = 0; i < planes.length; i++) {
+			Vec4 v = planes[i].getVector();
+			p[i * 4] = v.x;
+			p[i * 4 + 1] = v.y;
+			p[i * 4 + 2] = v.z;
+			p[i * 4 + 3] = v.w;
+		}
+
+		Globe globe = dc.getGlobe();
+		boolean horizon = !(globe instanceof FlatGlobe);
+		Vec4 eye = dc.getView().getEyePoint();
+		Vec4 o = globe.getCenter();
+		double ex = eye.x - o.x, ey = eye.y - o.y, ez = eye.z - o.z;
+		//the smallest radius, so that the test stays conservative
+		double R = Math.min(globe.getPolarRadius(), globe.getEquatorialRadius());
+		double eyeRadius2 = ex * ex + ey * ey + ez * ez;
+		if (eyeRadius2 <= R * R) {
+			horizon = false;
+		}
+		double eyeHorizon = horizon ? Math.sqrt(eyeRadius2 - R * R) : 0;
+
+		numVisible = 0;
+		for (int l = 0; l < numLines; l++) {
+			double cx = centers[l * 3] - o.x;
+			double cy = centers[l * 3 + 1] - o.y;
+			double cz = centers[l * 3 + 2] - o.z;
+			double r = radii[l];
+
+			boolean in = true;
+			for (int i = 0; i < p.length; i += 4) {
+				if (p[i] * centers[l * 3] + p[i + 1] * centers[l * 3 + 1] + p[i + 2] * centers[l * 3 + 2] + p[i + 3] <= -r) {
+					in = false;
+					break;
+				}
+			}
+
+			if (in && horizon) {
+				//beyond the horizon of the eye and of the top of the sphere
+				double top = Math.sqrt(cx * cx + cy * cy + cz * cz) + r;
+				double arcHorizon = top > R ? Math.sqrt(top * top - R * R) : 0;
+				double dx = cx - ex, dy = cy - ey, dz = cz - ez;
+				double distance = Math.sqrt(dx * dx + dy * dy + dz * dz) - r;
+				if (distance > eyeHorizon + arcHorizon) {
+					in = false;
+				}
+			}
+
+			visible[l] = in;
+			if (in) {
+				numVisible++;
+			}
+		}
+		makeRanges();
+	}
+
+	private void makeRanges() {
+		numRanges = 0;
+		int numVertices = numLines * numVerticesPerLine;
+		int l = 0;
+		while (l < numLines) {
+			if (!visible[l]) {
+				l++;
+				continue;
+			}
+			int first = l;
+			while (l < numLines && visible[l]) {
+				l++;
+			}
+			int start = Math.max(0, first * numVerticesPerLine - 1);
+			int end = Math.min(numVertices, l * numVerticesPerLine + 2);
+
+			if (numRanges == firsts.length) {
+				firsts = Arrays.copyOf(firsts, numRanges * 2);
+				counts = Arrays.copyOf(counts, numRanges * 2);
+			}
+			firsts[numRanges] = start;
+			counts[numRanges] = end - start;
+			numRanges++;
+		}
+	}
+
+	/**
+	 * True if the arc may be visible, or if the arcs are not culled yet.
+	 */
+	public boolean isVisible(int lineIndex) {
+		return visible == null || lineIndex >= numLines || visible[lineIndex];
+	}
+
+	public int getNumVisible() {
+		return numVisible;
+	}
+
+	public int getNumCulled() {
+		return numLines - numVisible;
+	}
+
+	/**
+	 * First vertices of the ranges of visible arcs, see getNumRanges.
+	 */
+	public int[] getFirsts() {
+		return firsts;
+	}
+
+	public int[] getCounts() {
+		return counts;
+	}
+
+	public int getNumRanges() {
+		return numRanges;
+	}
+}
@@ -0,0 +1,106 @@
+package it.graphitech.smeSpire.layers;
+
+import gov.nasa.worldwind.render.DrawContext;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+/**
+ * Single vertex buffer holding the updated vertices of the deformed arcs of a
+ * MyRenderableLayer. Every arc owns a slot of slotCapacity vertices starting
+ * at lineIndex * slotCapacity; an update only rewrites the arc's range with
+ * glBufferSubData, so the buffer is allocated once instead of once per arc and
+ * per frame.
+ * <p/>
+ * If an arc needs more vertices than a slot holds, the slots are enlarged and
+ * the last vertices of every arc are uploaded again.
+ */
+public class ArcVertexPool {
+
+	private IntBuffer vbo;
+	private int numSlots;
+	private int slotCapacity;
+
+	//last vertices written in every slot, used when the slots are enlarged
+	private FloatBuffer[] slotPoints;
+	private int[] slotSizes;
+
+	public ArcVertexPool() {
+
+	}
+
+	public void init(DrawContext dc, int numSlots, int slotCapacity) {
+		GL gl = dc.getGL();
+		if (vbo == null) {
+			vbo = IntBuffer.allocate(1);
+			gl.glGenBuffers(1, vbo);
+		}
+		this.numSlots = numSlots;
+		this.slotPoints = new FloatBuffer[numSlots];
+		this.slotSizes = new int[numSlots];
+		allocate(gl, slotCapacity);
+	}
+
+	public boolean isInitialized() {
+		return vbo != null;
+	}
+
+	private void allocate(GL gl, int slotCapacity) {
+		this.slotCapacity = slotCapacity;
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo.get(0));
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) numSlots * slotCapacity * 3
+				* SharedVariables.SIZEOF_FLOAT, null, GL2.GL_DYNAMIC_DRAW);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Writes the first numVertices vertices of points into the slot of the arc.
+	 */
+	public void update(DrawContext dc, int slot, FloatBuffer points, int numVertices) {
+		GL gl = dc.getGL();
+		slotPoints[slot] = points;
+		slotSizes[slot] = numVertices;
+
+		if (numVertices > slotCapacity) {
+			allocate(gl, numVertices + numVertices / 2);
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo.get(0));
+			for (int s = 0; s < numSlots; s++) {
+				if (slotPoints[s] != null) {
+					subData(gl, s, slotPoints[s], slotSizes[s]);
+				}
+			}
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+			return;
+		}
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo.get(0));
+		subData(gl, slot, points, numVertices);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	private void subData(GL gl, int slot, FloatBuffer points, int numVertices) {
+		points.position(0);
+		gl.glBufferSubData(GL.GL_ARRAY_BUFFER, (long) getFirstVertex(slot) * 3 * SharedVariables.SIZEOF_FLOAT,
+				(long) numVertices * 3 * SharedVariables.SIZEOF_FLOAT, points);
+	}
+
+	public int getBufferIndex() {
+		return vbo.get(0);
+	}
+
+	public int getFirstVertex(int slot) {
+		return slot * slotCapacity;
+	}
+
+	public int getSlotCapacity() {
+		return slotCapacity;
+	}
+
+	public int getNumSlots() {
+		return numSlots;
+	}
+}
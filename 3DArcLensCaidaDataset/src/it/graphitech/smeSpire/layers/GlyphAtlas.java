@@ -0,0 +1,184 @@
+package it.graphitech.smeSpire.layers;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GLContext;
+
+/**
+ * The printable ASCII glyphs of a font rasterised once into a single alpha
+ * texture, so that any number of labels can be drawn as textured quads with one
+ * texture bind. Characters outside the atlas are drawn as '?'.
+ */
+public class GlyphAtlas {
+
+	static final char FIRST = 32;
+	static final char LAST = 126;
+	static final int COLUMNS = 16;
+	static final int PADDING = 1;
+
+	private final Font font;
+	private final int cellWidth;
+	private final int cellHeight;
+	private final int ascent;
+	private final int width;
+	private final int height;
+	private final int[] advances = new int[LAST - FIRST + 1];
+
+	private int textureObject = 0;
+	private GLContext context;
+
+	public GlyphAtlas(Font font) {
+		this.font = font;
+
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = scratch.createGraphics();
+		FontMetrics fm = g.getFontMetrics(font);
+		int maxAdvance = 0;
+		for (char c = FIRST; c <= LAST; c++) {
+			advances[c - FIRST] = fm.charWidth(c);
+			maxAdvance = Math.max(maxAdvance, advances[c - FIRST]);
+		}
+		ascent = fm.getAscent();
+		cellWidth = maxAdvance + 2 * PADDING;
+		cellHeight = fm.getAscent() + fm.getDescent() + 2 * PADDING;
+		g.dispose();
+
+		int rows = (LAST - FIRST + COLUMNS) / COLUMNS;
+		width = powerOfTwo(cellWidth * COLUMNS);
+		height = powerOfTwo(cellHeight * rows);
+	}
+
+	public Font getFont() {
+		return font;
+	}
+
+	/**
+	 * Draws the glyphs, white on black, in cells of COLUMNS columns.
+	 */
+	public BufferedImage createImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setFont(font);
+		g.setColor(Color.WHITE);
+		for (char c = FIRST; c <= LAST; c++) {
+			int i = c - FIRST;
+			int x = (i % COLUMNS) * cellWidth + PADDING;
+			int y = (i / COLUMNS) * cellHeight + PADDING + ascent;
+			g.drawString(String.valueOf(c), x, y);
+		}
+		g.dispose();
+		return image;
+	}
+
+	private static int powerOfTwo(int n) {
+		int p = 1;
+		while (p < n) {
+			p <<= 1;
+		}
+		return p;
+	}
+
+	/**
+	 * The atlas texture, created on first use and again if the GL context
+	 * changes.
+	 */
+	public int getTexture(GL2 gl) {
+		if (textureObject != 0 && context == gl.getContext()) {
+			return textureObject;
+		}
+		BufferedImage image = createImage();
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+		int[] tmp = new int[1];
+		gl.glGenTextures(1, tmp, 0);
+		textureObject = tmp[0];
+		context = gl.getContext();
+		gl.glBindTexture(GL.GL_TEXTURE_2D, textureObject);
+		gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+		gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+		gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+		gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+		gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, 1);
+		gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_ALPHA, width, height, 0, GL.GL_ALPHA, GL.GL_UNSIGNED_BYTE,
+				ByteBuffer.wrap(pixels));
+		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+		return textureObject;
+	}
+
+	private int index(char c) {
+		return (c < FIRST || c > LAST) ? '?' - FIRST : c - FIRST;
+	}
+
+	public int getAdvance(char c) {
+		return advances[index(c)];
+	}
+
+	/**
+	 * Width in pixels of text drawn with this atlas.
+	 */
+	public int getWidth(String text) {
+		int w = 0;
+		for (int i = 0; i < text.length(); i++) {
+			w += getAdvance(text.charAt(i));
+		}
+		return w;
+	}
+
+	/**
+	 * Height in pixels of a line of text, the same for every glyph.
+	 */
+	public int getLineHeight() {
+		return cellHeight - 2 * PADDING;
+	}
+
+	/**
+	 * Appends to quads the four vertices (x, y, s, t) of every glyph of text,
+	 * with the bottom left corner of the line at x, y, and returns the number
+	 * of glyphs.
+	 */
+	public int appendQuads(String text, float x, float y, float[] quads, int offset) {
+		float h = getLineHeight();
+		for (int i = 0; i < text.length(); i++) {
+			int g = index(text.charAt(i));
+			float w = advances[g];
+			float s0 = ((g % COLUMNS) * cellWidth + PADDING) / (float) width;
+			float s1 = s0 + w / width;
+			//the rows of the image are uploaded top first
+			float t0 = ((g / COLUMNS) * cellHeight + PADDING) / (float) height;
+			float t1 = t0 + h / height;
+
+			int j = offset + i * 16;
+			vertex(quads, j, x, y, s0, t1);
+			vertex(quads, j + 4, x + w, y, s1, t1);
+			vertex(quads, j + 8, x + w, y + h, s1, t0);
+			vertex(quads, j + 12, x, y + h, s0, t0);
+			x += w;
+		}
+		return text.length();
+	}
+
+	private static void vertex(float[] quads, int j, float x, float y, float s, float t) {
+		quads[j] = x;
+		quads[j + 1] = y;
+		quads[j + 2] = s;
+		quads[j + 3] = t;
+	}
+
+	public void dispose(GL2 gl) {
+		if (textureObject != 0 && context == gl.getContext()) {
+			gl.glDeleteTextures(1, new int[] { textureObject }, 0);
+		}
+		textureObject = 0;
+		context = null;
+	}
+}
@@ -17,9 +17,14 @@ import it.graphitech.ColorsList;
 import it.graphitech.core.MyAbstractSceneController;
 import it.graphitech.core.MyBasicSceneController;
 import it.graphitech.shader.GLSL;
+import it.graphitech.shader.ShadingDecorator;
 import it.graphitech.smeSpire.SectorManager;
 import it.graphitech.smeSpire.SharedVariables;
 import it.graphitech.smeSpire.lines.cubicCurve.CubicSplinePolyline;
+import it.graphitech.smeSpire.lines.cubicCurve.ArcLevelOfDetail;
+import it.graphitech.smeSpire.lines.cubicCurve.ArcStore;
+import it.graphitech.smeSpire.lines.cubicCurve.SplineBatch;
+import it.graphitech.smeSpire.statistics.FrameMetrics;
 
 import java.awt.Color;
 import java.nio.ByteBuffer;
@@ -60,9 +65,16 @@ public class MyRenderableLayer extends AbstractLayer {
 	//IntBuffer indexArray;
 	boolean isFirstTimeForVBO = true;
 	boolean isFirstTimeForBindBuffer = true;
-	IntBuffer vertexArray;
-	IntBuffer updVertexArray;
-	IntBuffer verticesIndexArray;
+	
+	ArcBatch arcBatch = new ArcBatch();
+	ArcVertexPool arcVertexPool = new ArcVertexPool();
+	SplineBatch splineBatch = new SplineBatch();
+	boolean deformationPrecomputed = false;
+	//null draws every arc at full resolution
+	ArcLevelOfDetail levelOfDetail;
+	ArcCuller arcCuller = new ArcCuller();
+	//control points and vertices of the arcs, in the order of renderables
+	ArcStore arcStore = new ArcStore();
 	
 protected ArrayList<Renderable> renderables = new ArrayList<Renderable>();
 	protected Iterable<Renderable> renderablesOverride;
@@ -105,6 +117,57 @@ public void dontUseShader(){
 	public boolean isRenderUndesiredArcs() {
 	return renderUndesiredArcs;
 }
+	
+	public boolean isBatchedRendering() {
+		return SharedVariables.batchedRendering;
+	}
+	
+	public ArcBatch getArcBatch() {
+		return arcBatch;
+	}
+	
+	public ArcCuller getArcCuller() {
+		return arcCuller;
+	}
+	
+	public ArcStore getArcStore() {
+		return arcStore;
+	}
+	
+	public ArcLevelOfDetail getLevelOfDetail() {
+		return levelOfDetail;
+	}
+	
+	public void setLevelOfDetail(ArcLevelOfDetail levelOfDetail) {
+		this.levelOfDetail = levelOfDetail;
+	}
+	
+	public ArcVertexPool getArcVertexPool() {
+		return arcVertexPool;
+	}
+	
+	public SplineBatch getSplineBatch() {
+		return splineBatch;
+	}
+	
+	public boolean isDeformationPrecomputed() {
+		return deformationPrecomputed;
+	}
+	
+	/**
+	 * Moves the control points of every arc for the current lens, then
+	 * evaluates the splines of all the deformed arcs at once, so that the two
+	 * render passes only draw them.
+	 */
+	private void deformArcs(DrawContext dc) {
+		splineBatch.begin();
+		for (Renderable renderable : renderables) {
+			if (renderable != null) {
+				((CubicSplinePolyline) renderable).updateDeformation(dc);
+			}
+		}
+		splineBatch.end(dc);
+	}
 
 	/**
 	 * Adds the specified <code>renderable</code> to this layer's internal
@@ -484,30 +547,11 @@ public void dontUseShader(){
 		gl.glGenBuffers(size, vertexArray_forBufferAllIndexVectices);
 	}
 	
-	private void createVBO(DrawContext dc, int size) {
-		GL gl = dc.getGL();
-		vertexArray = IntBuffer.allocate(size);
-		gl.glGenBuffers(size, vertexArray);
-	}
-	
-	private void createVBOUpdVertices(DrawContext dc, int size) {
-		GL gl = dc.getGL();
-		updVertexArray = IntBuffer.allocate(size);
-		gl.glGenBuffers(size, updVertexArray);
-		
-		System.out.println("createVBOUpdVertices: "+size);
-		
-	}
-
 	/*
 	public int getBufferElement(int ind) {
 		return vertexArray.get(ind);
 	}
 */
-	public int getUpdBufferElement(int ind) {
-		return updVertexArray.get(ind);
-	}
-	
 	/*
 	public int getVectivesIndexElement(int ind) {
 		return verticesIndexArray.get(ind);
@@ -523,13 +567,15 @@ public void dontUseShader(){
 			for (Renderable renderable : renderables) {
 			((CubicSplinePolyline) renderable).setLineIndex(ind);
 				((CubicSplinePolyline) renderable).setRendLayer(this);
+				if (((CubicSplinePolyline) renderable).getArcIndex() != ind) {
+					throw new IllegalStateException("arc " + ind + " is not in the layer's ArcStore at the same index");
+				}
 				ind++;
 
 			}
-			createVBO(dc, this.getNumRenderables());
-			createVBOUpdVertices(dc, this.getNumRenderables());
-			//createIndexBuffer(dc,this.getNumRenderables());
-			createVBOIndices(dc,  this.getNumRenderables());
+			//a deformed arc has at most one control point more than the original one
+			arcVertexPool.init(dc, this.getNumRenderables(),
+					SharedVariables.computeNumVerticesPerLine() + SharedVariables.numSubsegments);
 			
 			
 			createVBO_ForAllPoints(dc, 1);
@@ -540,8 +586,13 @@ public void dontUseShader(){
 				// numVerticesPerLine = ((SharedVariables.numSubsegments+1)*(SharedVariables.numControlPoints-1))-(SharedVariables.numControlPoints-2);
 				 numVerticesPerLine = SharedVariables.computeNumVerticesPerLine();
 				System.out.println("numVerticesPerLine: "+numVerticesPerLine);
-				bufferAllPoints        = initFloatBuffer(numVerticesPerLine*renderables.size()*3);
+				//the vertices are uploaded straight from the store
+				arcStore.tessellate(SharedVariables.numSubsegments);
+				bufferAllPoints        = arcStore.getVertices();
 				bufferAllIndexVectices = initIntBuffer(numVerticesPerLine*renderables.size());
+				for (int i = 0; i < numVerticesPerLine*renderables.size(); i++) {
+					bufferAllIndexVectices.put(i, i);
+				}
 			}
 			
 			
@@ -550,14 +601,6 @@ public void dontUseShader(){
 		}
 	}
 
-	private void createVBOIndices(DrawContext dc, int size) {
-		GL gl = dc.getGL();
-		verticesIndexArray = IntBuffer.allocate(size);
-		gl.glGenBuffers(size, verticesIndexArray);
-		
-		System.out.println("verticesIndexArray: "+size);
-		
-	}
 	
 	
 	/*
@@ -615,6 +658,7 @@ public void dontUseShader(){
 
 	private void orderArcsInSectors(DrawContext dc) {
 		//System.out.println("genero settori");
+		SectorManager.initLensAnglesMap(SectorManager.numSectors);
 		
 		for (Renderable renderable : renderables) {
 			CubicSplinePolyline arc = ((CubicSplinePolyline) renderable);
@@ -638,8 +682,8 @@ public void dontUseShader(){
 				int indexPoint2 = (int)infoPoint2.z;
 				
 					
-				Vec4 v1 = SharedVariables.computeScreenCoordinates(arc.getVertices().get(indexPoint1));
-				Vec4 v2 = SharedVariables.computeScreenCoordinates(arc.getVertices().get(indexPoint2));
+				Vec4 v1 = SharedVariables.computeScreenCoordinates(arc.getVertex(indexPoint1));
+				Vec4 v2 = SharedVariables.computeScreenCoordinates(arc.getVertex(indexPoint2));
 				
 				
 				
@@ -676,34 +720,11 @@ public void dontUseShader(){
 			
 			double distance=Math.sqrt((mp.x*mp.x)+(mp.y*mp.y));
 			//System.out.println("insert arco con indice "+arcIndex+" con distance: "+distance);
-			SectorManager.mapArcDistance.put(arcIndex+"-"+1, distance);
-			//ArrayList<Integer> listIdArcsInSector = SharedVariables.lensSectorsMap.get(sector);
-			ArrayList<String> listIdArcsInSector = SectorManager.lensSectorsMap.get(sector);
-			if(listIdArcsInSector.size()!=0){
-			
-				//System.out.println("la list del settore "+sector+" non  vuota");
-				boolean inserted = false;
-				for(int i=0;i<listIdArcsInSector.size();i++){
-				if(distance<SectorManager.mapArcDistance.get(listIdArcsInSector.get(i))){
-					//System.out.println("inserisco "+arcIndex+" in index: "+i);
-					listIdArcsInSector.add(i, arcIndex+"-"+1);
-					inserted=true;
-					break;
-				}
-			}		
-				if(inserted==false){
-					//System.out.println("inserisco "+arcIndex+" in fondo");
-					listIdArcsInSector.add(arcIndex+"-"+1);
-				}
-			}
-			
-			else{
-				//System.out.println("la list del settore "+sector+"  vuota");
-				listIdArcsInSector.add(arcIndex+"-"+1);
-			}
+			SectorManager.add(arcIndex, 1, sector, distance);
 			}
 
 		}
+		SectorManager.sort();
 	}
 
 	private ArrayList<Vec4> checkInfoPointsOnLens(ArrayList<Vec4> pointOnLens){
@@ -771,7 +792,7 @@ public void dontUseShader(){
 			//System.out.println("inizio renderTextureForPointsDetection");
 			  GL2 gl = dc.getGL().getGL2();
 				
-			
+			  SharedVariables.frameMetrics.begin(gl, FrameMetrics.TRANSFORM_FEEDBACK);
 	            MyBasicSceneController.fboManager.transformFeedback.initTransformFeedbackBuffer();
 	           
 	           // System.out.println("...................");
@@ -779,8 +800,6 @@ public void dontUseShader(){
 	            MyBasicSceneController.fboManager.transformFeedback.bind();
 	            MyBasicSceneController.fboManager.transformFeedback.begin(GL2.GL_POINTS);
 	            
-	            SectorManager.initLensAnglesMap(SectorManager.numSectors);
-				SectorManager.mapArcDistance= new HashMap<String, Double>();
 				
 				
 				
@@ -794,18 +813,6 @@ public void dontUseShader(){
 						
 						CubicSplinePolyline line = (CubicSplinePolyline)renderable;
 						line.initPreProcessingStuff();
-						
-					if(line.getVertices()==null){
-						line.makeOriginalVertices(dc);
-						line.createBuffers(dc);
-						
-						bufferAllPoints.put(line.getBufferPoints());
-						line.getBufferPoints().position(0);
-						bufferAllIndexVectices.put(line.getBufferIndexVectices());
-						line.getBufferIndexVectices().position(0);
-						
-						
-					}
 			         
 					
 				
@@ -854,6 +861,9 @@ public void dontUseShader(){
 				
 				
 				bindIntData(dc, numTotVertices, bufferAllIndexVectices,vertexArray_forBufferAllIndexVectices.get(0));
+				
+				arcBatch.createSharedColors(dc, renderables, numVerticesPerLine);
+				arcCuller.build(bufferAllPoints, renderables.size(), numVerticesPerLine);
 			
 			
 			isFirstTimeForBindBuffer=false;
@@ -862,11 +872,14 @@ public void dontUseShader(){
 			
 			
 			 int geometryType =  GL2.GL_LINE_STRIP_ADJACENCY_ARB; 
-			drawAllLines(gl, geometryType, numVerticesPerLine*renderables.size());
+			//only the arcs that may be visible enter the geometry shader
+			arcCuller.cull(dc);
+			drawLines(gl, geometryType, arcCuller.getFirsts(), arcCuller.getCounts(), arcCuller.getNumRanges());
 			
 			 MyBasicSceneController.fboManager.transformFeedback.end();
 	            gl.glFlush();
 	            gl.glDisable(GL2.GL_RASTERIZER_DISCARD);        
+	            SharedVariables.frameMetrics.end(gl, FrameMetrics.TRANSFORM_FEEDBACK);
 	    
 			
 	         //   MyBasicSceneController.fboManager.transformFeedback.readFloatBuffer();
@@ -875,6 +888,7 @@ public void dontUseShader(){
 		else{
 		//	System.out.println("inizio normal");
 			//usare il external feedback buffer
+			//(the points of the last detection pass already completed by the GPU, usually the previous frame)
 			
 		/*
 			IntBuffer fBuffer = MyBasicSceneController.fboManager.transformFeedback.getIntBuffer();			
@@ -890,7 +904,13 @@ public void dontUseShader(){
 	            	
 		
 			
+			GL2 gl = dc.getGL().getGL2();
+			SharedVariables.frameMetrics.begin(gl, FrameMetrics.READBACK);
 			FloatBuffer fBuffer = MyBasicSceneController.fboManager.transformFeedback.getFloatBuffer();			
+			//the hidden points are already discarded by the detection shader
+			boolean occlusionTestDone = ShadingDecorator.isGPUOcclusionTest();
+			int numIntersectionPoints = 0;
+			int numEndPointsInsideLens = 0;
 				
 			for (int i = 0; i <fBuffer.limit(); i++) {
 	            	
@@ -913,8 +933,8 @@ public void dontUseShader(){
 	            		                
 	            		                Vec4 v = new Vec4(isValid, lineIndex, pointIndex, type);
 	            		                
-	            		                Vec4 currVertex = line.getVertices().get((int)v.z);
-	            		                if(SharedVariables.isPositionVisible(dc,currVertex)){
+	            		                Vec4 currVertex = line.getVertex((int)v.z);
+	            		                if(occlusionTestDone || SharedVariables.isPositionVisible(dc,currVertex)){
 	            		                
 /*
 		            		                System.out.println("(x) isValid: "+ isValid);
@@ -924,59 +944,85 @@ public void dontUseShader(){
 	*/            		                
 	            		                if((type==1.0)||(type==0.0)){
 	            		                	line.infoPointsOnLens.add(v);
+	            		                	numIntersectionPoints++;
 	            		                }else if(type==3.0){
 	            		                 }else if(type==4.0){
 	            		                	line.setFirstNodeInsideLense(true);
 	            		                	line.setFirstNodeWorldPosition(currVertex);
+	            		                	numEndPointsInsideLens++;
 	            		                }else if(type==5.0){
 	            		                	line.setLastNodeInsideLense(true);
 	            		                	line.setLastNodeWorldPosition(currVertex);
+	            		                	numEndPointsInsideLens++;
 	            		                }
 	            		                }
 	            		               
-	            		               
-	            		                
-if(i>MyBasicSceneController.fboManager.transformFeedback.getNumTransformFeedbackBufferElements()-8){
-	System.out.println("transformFeedback QUESIPIENO!!!!!!!!!!!!!!!!!!!!!!!!!!");
-}
 	            }
+			SharedVariables.frameMetrics.end(gl, FrameMetrics.READBACK);
+			SharedVariables.counterOfIntersectionPoints = numIntersectionPoints;
+			SharedVariables.counterOfEndPointsInsideLens = numEndPointsInsideLens;
 			
 		
 		SharedVariables.counterOfDistortedLines=0;
 		SharedVariables.counterOfFilteredLines=0;
 		SharedVariables.counterOfSimpleLines=0;
 		SharedVariables.counterOfLinesInsideLens=0;
+		SharedVariables.counterOfContextVertices=0;
+		arcCuller.cull(dc);
+		SharedVariables.counterOfCulledLines=arcCuller.getNumCulled();
 			
 	       
+			SharedVariables.frameMetrics.begin(gl, FrameMetrics.SECTOR_ORDERING);
 			orderArcsInSectors(dc);
+			SharedVariables.frameMetrics.end(gl, FrameMetrics.SECTOR_ORDERING);
     
+			SharedVariables.frameMetrics.begin(gl, FrameMetrics.DEFORMATION);
+			deformArcs(dc);
+			deformationPrecomputed = true;
+			SharedVariables.frameMetrics.end(gl, FrameMetrics.DEFORMATION);
+			
 			
 	//		ColorsList.resetIndex();
 			
 			//FIRST RENDER THE DEFORMED ARCS
 		
 			
+			SharedVariables.frameMetrics.begin(gl, FrameMetrics.RENDER_DEFORMED);
 			renderUndesiredArcs = true;
+			arcBatch.clear();
 		for (Renderable renderable : renderables) {
-				if (renderable != null) {
+				if (renderable != null && arcCuller.isVisible(((CubicSplinePolyline) renderable).getLineIndex())) {
 					renderable.render(dc);
 			}			 
 		}
+		if(isBatchedRendering()){
+			arcBatch.flush(dc.getGL().getGL2(), this, renderUndesiredArcs);
+		}
+		SharedVariables.frameMetrics.end(gl, FrameMetrics.RENDER_DEFORMED);
 
+		SharedVariables.frameMetrics.begin(gl, FrameMetrics.EARTH_DEPTH);
 		dc.getGL().glClear(GL2.GL_DEPTH_BUFFER_BIT);
 		dc.getGL().glColorMask(false, false, false, false);
 		dc.getLayers().getLayerByName(MyAbstractSceneController.layerEarthName).render(dc); 
 		dc.getGL().glColorMask(true, true, true, true);
+		SharedVariables.frameMetrics.end(gl, FrameMetrics.EARTH_DEPTH);
 		
 		
 		
+		SharedVariables.frameMetrics.begin(gl, FrameMetrics.RENDER_COLORED);
 	renderUndesiredArcs = false;
+		arcBatch.clear();
 		//THEN RENDER THE COLORED ARCS
 		for (Renderable renderable : renderables) {
-				if (renderable != null) {
+				if (renderable != null && arcCuller.isVisible(((CubicSplinePolyline) renderable).getLineIndex())) {
 					renderable.render(dc);
 			}			 
 		}
+		if(isBatchedRendering()){
+			arcBatch.flush(dc.getGL().getGL2(), this, renderUndesiredArcs);
+		}
+		SharedVariables.frameMetrics.end(gl, FrameMetrics.RENDER_COLORED);
+		deformationPrecomputed = false;
 
 	
 		 
@@ -984,18 +1030,18 @@ if(i>MyBasicSceneController.fboManager.transformFeedback.getNumTransformFeedback
 		//SharedVariables.sr.drawFrameBuffer(dc);
 			SharedVariables.sr.drawFrameBufferOnTheScreen(dc);
 		}
-		
-				
-		System.out.println("counterOfDistortedLines: "+SharedVariables.counterOfDistortedLines);
-		System.out.println("counterOfFilteredLines: "+SharedVariables.counterOfFilteredLines);
-		System.out.println("counterOfSimpleLines: "+SharedVariables.counterOfSimpleLines);
+		//the counters are shown by the StatisticsPanel
 		
 		}
 	}
 
 	
 	
-	  public void drawAllLines(GL2 gl,int geometryType, int numVertices){
+	  /**
+	   * Draws the given ranges of the shared vertex buffer, with the line index
+	   * of every vertex as attribute 1.
+	   */
+	  public void drawLines(GL2 gl,int geometryType, int[] firsts, int[] counts, int numRanges){
 	    
 		 gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vertexArray_forBufferAllPoints.get(0));
 	    	
@@ -1020,7 +1066,7 @@ if(i>MyBasicSceneController.fboManager.transformFeedback.getNumTransformFeedback
 		       
 		        
 		        
-		       gl.glDrawArrays(geometryType, 0, numVertices); 
+		       gl.glMultiDrawArrays(geometryType, firsts, 0, counts, 0, numRanges); 
 		       
 		        gl.glDisableVertexAttribArray(0);
 		        gl.glDisableVertexAttribArray(1);
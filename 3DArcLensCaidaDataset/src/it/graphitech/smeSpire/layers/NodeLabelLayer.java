@@ -0,0 +1,302 @@
+package it.graphitech.smeSpire.layers;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.FlatGlobe;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.AnnotationAttributes;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.OGLStackHandler;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+/**
+ * Text labels of the nodes, drawn by the layer itself instead of one
+ * GlobeAnnotation per node. All the labels share one AnnotationAttributes
+ * (font, text color and opacity), their glyphs come from one GlyphAtlas and
+ * are drawn with a single glDrawArrays.
+ * <p/>
+ * Every frame the labels behind the horizon or outside the viewport are
+ * skipped, and so are the labels overlapping on the screen a label already
+ * accepted, in the order the labels were added.
+ */
+public class NodeLabelLayer extends AbstractLayer {
+
+	//side in pixels of the cells of the overlap grid
+	static final int CELL_SIZE = 64;
+
+	private final AnnotationAttributes attributes;
+	private GlyphAtlas atlas;
+
+	private String[] texts = new String[64];
+	//latitude, longitude in degrees and elevation of the labels
+	private double[] positions = new double[64 * 3];
+	private int[] textWidths = new int[64];
+	private int numLabels = 0;
+
+	//x, y, z of the labels for the globe of pointsKey
+	private double[] points;
+	private Object pointsKey;
+	private Globe pointsGlobe;
+
+	//accepted label rectangles, x0, y0, x1, y1
+	private float[] rects = new float[64 * 4];
+	private int numRects;
+	//lists of the rectangles in every cell of the grid
+	private int gridColumns;
+	private int gridRows;
+	private int gridX;
+	private int gridY;
+	private int[] cellHeads = new int[0];
+	private int[] entryNext = new int[64];
+	private int[] entryRect = new int[64];
+	private int numEntries;
+
+	private float[] quads = new float[64 * 16];
+	private FloatBuffer quadBuffer;
+	private int numDrawn = 0;
+
+	public NodeLabelLayer() {
+		this.attributes = new AnnotationAttributes();
+		this.attributes.setFont(Font.decode("Arial-PLAIN-12"));
+		this.attributes.setTextColor(Color.WHITE);
+		this.attributes.setOpacity(1);
+	}
+
+	/**
+	 * The attributes shared by all the labels. Only the font, the text color
+	 * and the opacity are used.
+	 */
+	public AnnotationAttributes getAttributes() {
+		return attributes;
+	}
+
+	public void addLabel(String text, Position position) {
+		if (numLabels == texts.length) {
+			texts = Arrays.copyOf(texts, numLabels * 2);
+			positions = Arrays.copyOf(positions, numLabels * 2 * 3);
+			textWidths = Arrays.copyOf(textWidths, numLabels * 2);
+		}
+		texts[numLabels] = text;
+		positions[numLabels * 3] = position.getLatitude().degrees;
+		positions[numLabels * 3 + 1] = position.getLongitude().degrees;
+		positions[numLabels * 3 + 2] = position.getElevation();
+		textWidths[numLabels] = -1;
+		numLabels++;
+		pointsKey = null;
+	}
+
+	public int getNumLabels() {
+		return numLabels;
+	}
+
+	/**
+	 * Labels drawn in the last frame.
+	 */
+	public int getNumDrawn() {
+		return numDrawn;
+	}
+
+	private GlyphAtlas getAtlas() {
+		if (atlas == null || !atlas.getFont().equals(attributes.getFont())) {
+			atlas = new GlyphAtlas(attributes.getFont());
+			Arrays.fill(textWidths, -1);
+		}
+		return atlas;
+	}
+
+	private void computePoints(DrawContext dc) {
+		Globe globe = dc.getGlobe();
+		Object key = globe.getStateKey(dc);
+		if (points != null && pointsGlobe == globe && key.equals(pointsKey)) {
+			return;
+		}
+		if (points == null || points.length < numLabels * 3) {
+			points = new double[numLabels * 3];
+		}
+		for (int i = 0; i < numLabels; i++) {
+			Vec4 p = globe.computePointFromPosition(Position.fromDegrees(positions[i * 3], positions[i * 3 + 1],
+					positions[i * 3 + 2]));
+			points[i * 3] = p.x;
+			points[i * 3 + 1] = p.y;
+			points[i * 3 + 2] = p.z;
+		}
+		pointsGlobe = globe;
+		pointsKey = key;
+	}
+
+	@Override
+	protected void doRender(DrawContext dc) {
+		if (numLabels == 0) {
+			return;
+		}
+		computePoints(dc);
+		GlyphAtlas atlas = getAtlas();
+		View view = dc.getView();
+		Rectangle viewport = view.getViewport();
+
+		Globe globe = dc.getGlobe();
+		boolean horizon = !(globe instanceof FlatGlobe);
+		Vec4 eye = view.getEyePoint();
+		Vec4 o = globe.getCenter();
+
+		beginOverlapGrid(viewport);
+		int lineHeight = atlas.getLineHeight();
+		int numGlyphs = 0;
+		numDrawn = 0;
+		for (int i = 0; i < numLabels; i++) {
+			double px = points[i * 3], py = points[i * 3 + 1], pz = points[i * 3 + 2];
+			if (horizon) {
+				//the label faces away from the eye
+				double nx = px - o.x, ny = py - o.y, nz = pz - o.z;
+				if ((eye.x - px) * nx + (eye.y - py) * ny + (eye.z - pz) * nz < 0) {
+					continue;
+				}
+			}
+			Vec4 s = view.project(new Vec4(px, py, pz));
+			if (s == null || s.z < 0 || s.z > 1) {
+				continue;
+			}
+			if (textWidths[i] < 0) {
+				textWidths[i] = atlas.getWidth(texts[i]);
+			}
+			float x0 = (float) Math.floor(s.x - textWidths[i] / 2.0);
+			float y0 = (float) Math.floor(s.y);
+			float x1 = x0 + textWidths[i];
+			float y1 = y0 + lineHeight;
+			if (x1 < viewport.x || y1 < viewport.y || x0 > viewport.x + viewport.width
+					|| y0 > viewport.y + viewport.height) {
+				continue;
+			}
+			if (overlaps(x0, y0, x1, y1)) {
+				continue;
+			}
+			accept(x0, y0, x1, y1);
+
+			int needed = (numGlyphs + texts[i].length()) * 16;
+			if (needed > quads.length) {
+				quads = Arrays.copyOf(quads, Math.max(needed, quads.length * 2));
+			}
+			numGlyphs += atlas.appendQuads(texts[i], x0, y0, quads, numGlyphs * 16);
+			numDrawn++;
+		}
+		SharedVariables.counterOfLabels = numDrawn;
+
+		if (numGlyphs > 0) {
+			draw(dc, atlas, viewport, numGlyphs);
+		}
+	}
+
+	private void draw(DrawContext dc, GlyphAtlas atlas, Rectangle viewport, int numGlyphs) {
+		GL2 gl = dc.getGL().getGL2();
+		if (quadBuffer == null || quadBuffer.capacity() < numGlyphs * 16) {
+			quadBuffer = SharedVariables.newFloatBuffer(Math.max(numGlyphs * 16, quads.length));
+		}
+		quadBuffer.clear();
+		quadBuffer.put(quads, 0, numGlyphs * 16);
+		quadBuffer.position(0);
+
+		OGLStackHandler ogsh = new OGLStackHandler();
+		ogsh.pushAttrib(gl, GL2.GL_ENABLE_BIT | GL2.GL_CURRENT_BIT | GL2.GL_COLOR_BUFFER_BIT
+				| GL2.GL_DEPTH_BUFFER_BIT | GL2.GL_TEXTURE_BIT);
+		ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+		try {
+			ogsh.pushProjectionIdentity(gl);
+			gl.glOrtho(viewport.x, viewport.x + viewport.width, viewport.y, viewport.y + viewport.height, -1, 1);
+			ogsh.pushModelviewIdentity(gl);
+
+			gl.glDisable(GL.GL_DEPTH_TEST);
+			gl.glEnable(GL.GL_BLEND);
+			gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+			gl.glEnable(GL.GL_TEXTURE_2D);
+			gl.glBindTexture(GL.GL_TEXTURE_2D, atlas.getTexture(gl));
+			gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_MODULATE);
+
+			Color color = attributes.getTextColor();
+			double opacity = attributes.getOpacity() * this.getOpacity();
+			gl.glColor4ub((byte) color.getRed(), (byte) color.getGreen(), (byte) color.getBlue(),
+					(byte) (color.getAlpha() * opacity));
+
+			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+			gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+			quadBuffer.position(0);
+			gl.glVertexPointer(2, GL.GL_FLOAT, 4 * SharedVariables.SIZEOF_FLOAT, quadBuffer);
+			quadBuffer.position(2);
+			gl.glTexCoordPointer(2, GL.GL_FLOAT, 4 * SharedVariables.SIZEOF_FLOAT, quadBuffer);
+			gl.glDrawArrays(GL2.GL_QUADS, 0, numGlyphs * 4);
+			quadBuffer.position(0);
+			gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+		} finally {
+			ogsh.pop(gl);
+		}
+	}
+
+	private void beginOverlapGrid(Rectangle viewport) {
+		gridX = viewport.x;
+		gridY = viewport.y;
+		gridColumns = viewport.width / CELL_SIZE + 1;
+		gridRows = viewport.height / CELL_SIZE + 1;
+		if (cellHeads.length < gridColumns * gridRows) {
+			cellHeads = new int[gridColumns * gridRows];
+		}
+		Arrays.fill(cellHeads, 0, gridColumns * gridRows, -1);
+		numEntries = 0;
+		numRects = 0;
+	}
+
+	private int column(float x) {
+		return Math.max(0, Math.min(gridColumns - 1, (int) ((x - gridX) / CELL_SIZE)));
+	}
+
+	private int row(float y) {
+		return Math.max(0, Math.min(gridRows - 1, (int) ((y - gridY) / CELL_SIZE)));
+	}
+
+	private boolean overlaps(float x0, float y0, float x1, float y1) {
+		for (int r = row(y0); r <= row(y1); r++) {
+			for (int c = column(x0); c <= column(x1); c++) {
+				for (int e = cellHeads[r * gridColumns + c]; e != -1; e = entryNext[e]) {
+					int j = entryRect[e] * 4;
+					if (x0 < rects[j + 2] && x1 > rects[j] && y0 < rects[j + 3] && y1 > rects[j + 1]) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private void accept(float x0, float y0, float x1, float y1) {
+		if ((numRects + 1) * 4 > rects.length) {
+			rects = Arrays.copyOf(rects, rects.length * 2);
+		}
+		int rect = numRects++;
+		rects[rect * 4] = x0;
+		rects[rect * 4 + 1] = y0;
+		rects[rect * 4 + 2] = x1;
+		rects[rect * 4 + 3] = y1;
+		for (int r = row(y0); r <= row(y1); r++) {
+			for (int c = column(x0); c <= column(x1); c++) {
+				if (numEntries == entryNext.length) {
+					entryNext = Arrays.copyOf(entryNext, numEntries * 2);
+					entryRect = Arrays.copyOf(entryRect, numEntries * 2);
+				}
+				int cell = r * gridColumns + c;
+				entryRect[numEntries] = rect;
+				entryNext[numEntries] = cellHeads[cell];
+				cellHeads[cell] = numEntries;
+				numEntries++;
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package it.graphitech.smeSpire.lines.cubicCurve;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.render.DrawContext;
+import it.graphitech.smeSpire.SharedVariables;
+
+/**
+ * Chooses how many of the numSubsegments vertices of every span of an arc are
+ * drawn, from the length of the arc on the screen. The vertices drawn are every
+ * stride-th vertex of the arc in the layer's shared vertex buffer, with the
+ * stride a divisor of numSubsegments, so the control points are always kept
+ * and no vertex has to be computed again.
+ * <p/>
+ * Arcs near the lens are drawn at full resolution, since they may enter it.
+ * The deformed arcs are not affected.
+ */
+public class ArcLevelOfDetail {
+
+	//the lens area, in lens radii, where the arcs keep all their vertices
+	static final double LENS_MARGIN = 2;
+
+	private final int numSubsegments;
+	private final int numSpans;
+	//divisors of numSubsegments, decreasing
+	private final int[] strides;
+
+	public ArcLevelOfDetail(int numSubsegments, int numControlPoints) {
+		this.numSubsegments = numSubsegments;
+		this.numSpans = Math.max(1, numControlPoints - 1);
+
+		int n = 0;
+		int[] divisors = new int[numSubsegments];
+		for (int d = numSubsegments; d >= 1; d--) {
+			if (numSubsegments % d == 0) {
+				divisors[n++] = d;
+			}
+		}
+		strides = java.util.Arrays.copyOf(divisors, n);
+	}
+
+	/**
+	 * Stride between the drawn vertices of the arc of index arc in store: 1
+	 * draws every vertex.
+	 */
+	public int getStride(DrawContext dc, ArcStore store, int arc) {
+		int n = store.getNumControlPoints(arc);
+		if (!SharedVariables.levelOfDetail || n < 2) {
+			return 1;
+		}
+
+		View view = dc.getView();
+		Vec4 a = view.project(store.getControlPoint(arc, 0));
+		Vec4 m = view.project(store.getControlPoint(arc, n / 2));
+		Vec4 b = view.project(store.getControlPoint(arc, n - 1));
+		if (a == null || m == null || b == null) {
+			return 1;
+		}
+
+		if (SharedVariables.lensIsActive && SharedVariables.screenPoint != null) {
+			Vec4 lens = SharedVariables.screenPoint;
+			double margin = SharedVariables.lense_h / 2 * LENS_MARGIN;
+			double minX = Math.min(a.x, Math.min(m.x, b.x)) - margin;
+			double maxX = Math.max(a.x, Math.max(m.x, b.x)) + margin;
+			double minY = Math.min(a.y, Math.min(m.y, b.y)) - margin;
+			double maxY = Math.max(a.y, Math.max(m.y, b.y)) + margin;
+			if (lens.x >= minX && lens.x <= maxX && lens.y >= minY && lens.y <= maxY) {
+				return 1;
+			}
+		}
+
+		double length = Math.hypot(m.x - a.x, m.y - a.y) + Math.hypot(b.x - m.x, b.y - m.y);
+		int segmentsPerSpan = (int) Math.ceil(length / SharedVariables.lodPixelsPerSegment / numSpans);
+		return getStride(segmentsPerSpan);
+	}
+
+	/**
+	 * Largest stride drawing at least segmentsPerSpan segments per span.
+	 */
+	public int getStride(int segmentsPerSpan) {
+		for (int stride : strides) {
+			if (numSubsegments / stride >= segmentsPerSpan) {
+				return stride;
+			}
+		}
+		return 1;
+	}
+}
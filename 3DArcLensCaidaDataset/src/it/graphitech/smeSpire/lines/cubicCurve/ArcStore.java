@@ -0,0 +1,195 @@
+package it.graphitech.smeSpire.lines.cubicCurve;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The original arcs of a MyRenderableLayer, packed in flat arrays instead of
+ * one list of Vec4 and Position per arc: the control points (x, y, z and
+ * latitude, longitude, elevation) of every arc one after the other, and the
+ * tessellated vertices of all the arcs in the direct buffer that is uploaded
+ * as is to the layer's shared VBO.
+ * <p/>
+ * Arcs must be added in the order they are added to the layer, so that the
+ * index of an arc is its line index.
+ */
+public class ArcStore {
+
+	private int numArcs = 0;
+	//first control point of every arc, and the total at numArcs
+	private int[] firstControlPoint = new int[65];
+	private int numControlPoints = 0;
+
+	//x, y, z of the control points
+	private double[] points = new double[64 * 3];
+	//latitude, longitude in degrees and elevation of the control points
+	private double[] positions = new double[64 * 3];
+
+	private FloatBuffer vertices;
+	private int numVerticesPerLine;
+
+	public ArcStore() {
+
+	}
+
+	/**
+	 * Adds an arc with the positions and world points of cp, and returns its
+	 * index.
+	 */
+	public int add(RenderableControlPoints cp) {
+		List<Position> pos = cp.getPositions();
+		List<Vec4> pts = cp.points;
+		int n = pts.size();
+
+		if (numArcs + 1 == firstControlPoint.length) {
+			firstControlPoint = Arrays.copyOf(firstControlPoint, firstControlPoint.length * 2);
+		}
+		if ((numControlPoints + n) * 3 > points.length) {
+			int size = Math.max(points.length * 2, (numControlPoints + n) * 3);
+			points = Arrays.copyOf(points, size);
+			positions = Arrays.copyOf(positions, size);
+		}
+
+		for (int i = 0; i < n; i++) {
+			int j = (numControlPoints + i) * 3;
+			Vec4 p = pts.get(i);
+			points[j] = p.x;
+			points[j + 1] = p.y;
+			points[j + 2] = p.z;
+			Position q = pos.get(i);
+			positions[j] = q.getLatitude().degrees;
+			positions[j + 1] = q.getLongitude().degrees;
+			positions[j + 2] = q.getElevation();
+		}
+		firstControlPoint[numArcs] = numControlPoints;
+		numControlPoints += n;
+		numArcs++;
+		firstControlPoint[numArcs] = numControlPoints;
+		return numArcs - 1;
+	}
+
+	public int getNumArcs() {
+		return numArcs;
+	}
+
+	public int getNumControlPoints(int arc) {
+		return firstControlPoint[arc + 1] - firstControlPoint[arc];
+	}
+
+	public Vec4 getControlPoint(int arc, int i) {
+		int j = (firstControlPoint[arc] + i) * 3;
+		return new Vec4(points[j], points[j + 1], points[j + 2]);
+	}
+
+	public Position getPosition(int arc, int i) {
+		int j = (firstControlPoint[arc] + i) * 3;
+		return Position.fromDegrees(positions[j], positions[j + 1], positions[j + 2]);
+	}
+
+	public void setPosition(int arc, int i, Position position) {
+		int j = (firstControlPoint[arc] + i) * 3;
+		positions[j] = position.getLatitude().degrees;
+		positions[j + 1] = position.getLongitude().degrees;
+		positions[j + 2] = position.getElevation();
+	}
+
+	/**
+	 * Copies the control points of the arc into cp, which can then be moved
+	 * without touching the store.
+	 */
+	public void copyTo(int arc, RenderableControlPoints cp) {
+		int n = getNumControlPoints(arc);
+		ArrayList<Position> pos = new ArrayList<Position>(n);
+		ArrayList<Vec4> pts = new ArrayList<Vec4>(n);
+		for (int i = 0; i < n; i++) {
+			pos.add(getPosition(arc, i));
+			pts.add(getControlPoint(arc, i));
+		}
+		cp.setControlPointPosition(pos);
+		cp.setControlPoint(pts);
+	}
+
+	public Sector getBoundingSector(int arc) {
+		int first = firstControlPoint[arc];
+		int last = firstControlPoint[arc + 1];
+		if (first == last) {
+			return null;
+		}
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (int i = first; i < last; i++) {
+			minLat = Math.min(minLat, positions[i * 3]);
+			maxLat = Math.max(maxLat, positions[i * 3]);
+			minLon = Math.min(minLon, positions[i * 3 + 1]);
+			maxLon = Math.max(maxLon, positions[i * 3 + 1]);
+		}
+		return Sector.fromDegrees(minLat, maxLat, minLon, maxLon);
+	}
+
+	/**
+	 * Smallest and largest elevation of the control points of the arc.
+	 */
+	public double[] getMinAndMaxElevations(int arc) {
+		double[] extremes = new double[] { Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = firstControlPoint[arc]; i < firstControlPoint[arc + 1]; i++) {
+			extremes[0] = Math.min(extremes[0], positions[i * 3 + 2]);
+			extremes[1] = Math.max(extremes[1], positions[i * 3 + 2]);
+		}
+		return extremes;
+	}
+
+	/**
+	 * Samples the spline of every arc with numSubsegments vertices per span
+	 * into the vertex buffer, arc after arc. All the arcs must have the same
+	 * number of control points.
+	 */
+	public void tessellate(int numSubsegments) {
+		points = Arrays.copyOf(points, numControlPoints * 3);
+		positions = Arrays.copyOf(positions, numControlPoints * 3);
+
+		int n = numArcs > 0 ? getNumControlPoints(0) : 0;
+		numVerticesPerLine = SplineBatch.numVertices(n, numSubsegments);
+		vertices = SharedVariables.newFloatBuffer(numArcs * numVerticesPerLine * 3);
+
+		double[] cp = new double[n * 3];
+		double[] scratch = new double[n * 3];
+		float[] out = new float[numVerticesPerLine * 3];
+		for (int arc = 0; arc < numArcs; arc++) {
+			if (getNumControlPoints(arc) != n) {
+				throw new IllegalStateException("arc " + arc + " has " + getNumControlPoints(arc)
+						+ " control points instead of " + n);
+			}
+			System.arraycopy(points, firstControlPoint[arc] * 3, cp, 0, n * 3);
+			SplineBatch.evaluate(cp, n, numSubsegments, out, scratch);
+			vertices.put(out);
+		}
+		vertices.position(0);
+	}
+
+	public boolean isTessellated() {
+		return vertices != null;
+	}
+
+	/**
+	 * x, y, z of the vertices of all the arcs, numVerticesPerLine per arc.
+	 */
+	public FloatBuffer getVertices() {
+		return vertices;
+	}
+
+	public int getNumVerticesPerLine() {
+		return numVerticesPerLine;
+	}
+
+	public Vec4 getVertex(int arc, int i) {
+		int j = (arc * numVerticesPerLine + i) * 3;
+		return new Vec4(vertices.get(j), vertices.get(j + 1), vertices.get(j + 2));
+	}
+}
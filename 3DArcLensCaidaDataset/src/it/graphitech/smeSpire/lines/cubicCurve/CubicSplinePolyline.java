@@ -26,6 +26,8 @@ import it.graphitech.core.MyAbstractSceneController;
 import it.graphitech.smeSpire.RenderTextureOnScreen;
 import it.graphitech.smeSpire.SectorManager;
 import it.graphitech.smeSpire.SharedVariables;
+import it.graphitech.smeSpire.layers.ArcBatch;
+import it.graphitech.smeSpire.layers.ArcVertexPool;
 import it.graphitech.smeSpire.layers.MyRenderableLayer;
 
 import javax.media.opengl.GL;
@@ -95,7 +97,10 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 	protected Color colorArcInsideLens = Color.WHITE;
 	protected Color[] colorsFormodifiedArc = null;
 	public Color pickColor = new Color(0);
-	private RenderableControlPoints renderableControlPoints;
+	//the original control points and vertices are kept by the layer's store
+	private ArcStore arcStore;
+	private int arcIndex;
+	//null while the arc is not deformed
 	private RenderableControlPoints updRenderableControlPoints;
 	// protected ArrayList<Position> positions;
 	// protected Vec4 referenceCenterPoint;
@@ -127,25 +132,15 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 	protected MyRenderableLayer myRendLayer;
 
 	// protected List<List<Vec4>> currentSpans;
-	protected List<Vec4> currentListOfVertices;
 
-	protected Cubic[] cubicCurveFunctionsX;
-	protected Cubic[] cubicCurveFunctionsY;
-	protected Cubic[] cubicCurveFunctionsZ;
 	// protected DoubleBuffer bufferPoints;
 
 	protected int numVerticesPerLine;
 
 	// protected List<List<Vec4>> currentUpdatedSpans;
-	protected List<Vec4> currentListOfUpdatedVertices;
-	protected Cubic[] updCubicCurveFunctionsX;
-	protected Cubic[] updCubicCurveFunctionsY;
-	protected Cubic[] updCubicCurveFunctionsZ;
 
 	// protected DoubleBuffer bufferUpdatedPoints;
-	protected FloatBuffer bufferPoints;
 	protected FloatBuffer bufferUpdatedPoints;
-	protected IntBuffer bufferIndexVectices;
 	protected int bufferUpdPointSize;
 
 	protected static class ExtentInfo {
@@ -181,6 +176,11 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 	public void drawNewOrderedRenderable(DrawContext dc) {
 		GL2 gl = dc.getGL().getGL2();
 
+		if (myRendLayer.isBatchedRendering()) {
+			addToBatch(dc, gl, myRendLayer.getArcBatch());
+			return;
+		}
+
 		int attrBits = GL2.GL_HINT_BIT | GL2.GL_CURRENT_BIT | GL2.GL_LINE_BIT;
 		// if (!MyAbstractSceneController.isPreRenderingPhase)
 		{
@@ -225,7 +225,7 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 			} else
 //undesired arc -> deform arc
 			if (isAffectedByLense() & SharedVariables.lensIsActive) {
-				if (this.currentListOfUpdatedVertices == null)
+				if (this.bufferUpdatedPoints == null)
 					return;
 
 				if (isRenderUndesiredArcs) {			
@@ -247,6 +247,66 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 			gl.glPopAttrib();
 		}
 	}
+	/**
+	 * Same state selection as drawNewOrderedRenderable, but the arc is only
+	 * queued in the layer's ArcBatch. Nodes inside the lens are still drawn
+	 * here since they are few. Context arcs are drawn at the level of detail
+	 * chosen by the layer's ArcLevelOfDetail.
+	 */
+	private void addToBatch(DrawContext dc, GL2 gl, ArcBatch batch) {
+		boolean isRenderUndesiredArcs = myRendLayer.isRenderUndesiredArcs();
+
+		if (isFirstNodeInsideLense() && !isLastNodeInsideLense()) {
+			if (!isRenderUndesiredArcs) {
+				SharedVariables.counterOfFilteredLines++;
+				drawBatchedNode(gl, getFrom(), firstNodeWorldPosition, transitDegreeNodeFrom, true);
+				batch.add(ArcBatch.FILTERED, lineIndex * numVerticesPerLine, numVerticesPerLine);
+			}
+		} else if (isLastNodeInsideLense() && !isFirstNodeInsideLense()) {
+			if (!isRenderUndesiredArcs) {
+				SharedVariables.counterOfFilteredLines++;
+				drawBatchedNode(gl, getTo(), lastNodeWorldPosition, transitDegreeNodeTo, true);
+				batch.add(ArcBatch.FILTERED, lineIndex * numVerticesPerLine, numVerticesPerLine);
+			}
+		} else if (isLastNodeInsideLense() && isFirstNodeInsideLense()) {
+			if (!isRenderUndesiredArcs) {
+				SharedVariables.counterOfLinesInsideLens++;
+				drawBatchedNode(gl, getTo(), lastNodeWorldPosition, transitDegreeNodeTo, false);
+				drawBatchedNode(gl, getFrom(), firstNodeWorldPosition, transitDegreeNodeFrom, false);
+				batch.add(ArcBatch.INSIDE_LENS, lineIndex * numVerticesPerLine, numVerticesPerLine);
+			}
+		} else if (isAffectedByLense() & SharedVariables.lensIsActive) {
+			if (this.bufferUpdatedPoints == null)
+				return;
+
+			if (isRenderUndesiredArcs) {
+				SharedVariables.counterOfDistortedLines++;
+				batch.addDeformed(lineIndex, bufferUpdPointSize);
+			}
+		} else if (isRenderUndesiredArcs) {
+			SharedVariables.counterOfSimpleLines++;
+			ArcLevelOfDetail lod = myRendLayer.getLevelOfDetail();
+			int stride = lod == null ? 1 : lod.getStride(dc, arcStore, arcIndex);
+			SharedVariables.counterOfContextVertices += (numVerticesPerLine - 1) / stride + 1;
+			batch.addContext(lineIndex * numVerticesPerLine, numVerticesPerLine, stride);
+		}
+	}
+
+	private void drawBatchedNode(GL2 gl, String node, Vec4 nodePos, int degreeNode, boolean depthTest) {
+		gl.glPushAttrib(GL2.GL_CURRENT_BIT | GL.GL_COLOR_BUFFER_BIT | GL2.GL_ENABLE_BIT);
+		try {
+			if (depthTest) {
+				gl.glEnable(GL.GL_DEPTH_TEST);
+				gl.glDepthFunc(GL.GL_LEQUAL);
+			} else {
+				gl.glDisable(GL.GL_DEPTH_TEST);
+			}
+			drawNode(gl, node, nodePos, degreeNode);
+		} finally {
+			gl.glPopAttrib();
+		}
+	}
+
 	private void deformArc(GL2 gl){
 		SharedVariables.counterOfDistortedLines++;
 		
@@ -254,8 +314,9 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable,
 		//setColorBasedOnTransitDegree(gl);
 		setColorWithTransparencyBasedOnTransitDegree(gl);
 		gl.glLineWidth((float) SharedVariables.lineWidth);
-		drawLines(gl, myRendLayer.getUpdBufferElement(lineIndex),
-				bufferUpdPointSize, 0);
+		ArcVertexPool pool = myRendLayer.getArcVertexPool();
+		drawLines(gl, pool.getBufferIndex(),
+				bufferUpdPointSize, pool.getFirstVertex(lineIndex));
 
 	}
 	
@@ -626,169 +687,40 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	}
 
-	// funzione da modificare
-	public void makeOriginalVertices(DrawContext dc) {
-
-		if (this.currentListOfVertices == null) {
-
-			this.currentListOfVertices = new ArrayList<Vec4>();
-		} else {
-
-			this.currentListOfVertices.clear();
-		}
-
-		if (renderableControlPoints.getPositions().size() < 1)
-			return;
-
-		double[] xpoints = createXPoints(renderableControlPoints.points);
-		double[] ypoints = createYPoints(renderableControlPoints.points);
-		double[] zpoints = createZPoints(renderableControlPoints.points);
-
-		cubicCurveFunctionsX = createCubicCurveFunctions(
-				renderableControlPoints.getPositions().size() - 1, xpoints);
-		cubicCurveFunctionsY = createCubicCurveFunctions(
-				renderableControlPoints.getPositions().size() - 1, ypoints);
-		cubicCurveFunctionsZ = createCubicCurveFunctions(
-				renderableControlPoints.getPositions().size() - 1, zpoints);
-
-		// numVerticesPerLine =
-		// ((SharedVariables.numSubsegments+1)*(SharedVariables.numControlPoints-1))-(SharedVariables.numControlPoints-2);
-		numVerticesPerLine = SharedVariables.computeNumVerticesPerLine();
-
-		// System.out.println("bufferSize: "+bufferPointSize);
-		for (int i = 1; i <= renderableControlPoints.getPositions().size(); i++) {
-
-			if (i < renderableControlPoints.getPositions().size()) {
-			} else
-				break;
-
-			Vec4 ptB = renderableControlPoints.points.get(i);
-
-			ArrayList<Vec4> span = null;
-			// se  il primo segmento inserisco anche il primo punto
-			// altrimenti non lo inserisco perch  uguale all'ultimo del
-			// segmento precedente
-			if (i == 1) {
-
-				Vec4 ptA = renderableControlPoints.points.get(0);
-				// System.out.println("inserisco punto A: "+ptA);
-				// span = this.clipAndAdd(dc, ptA, span);
-				currentListOfVertices.add(ptA);
-
-			}
-
-			span = this.makeSegment(dc,
-					// ptA,
-					ptB, cubicCurveFunctionsX[i - 1],
-					cubicCurveFunctionsY[i - 1], cubicCurveFunctionsZ[i - 1]);
-
-			// printSpan(span);
-
-			if (span != null) {
-				// aggiungere condizione: se non  gi stata renderizzata
-				this.addSpan(span);
-
-			}
-			// ptA = ptB;
-		}
-
-	}
-
-	public void createBuffers(DrawContext dc) {
-
-		bufferPoints = createPointsBuffer(numVerticesPerLine,
-				currentListOfVertices);
-		bufferIndexVectices = createVerticesIntIndexBuffer(numVerticesPerLine);
-
-		/*
-		 * setArrayBuffer(dc,numVerticesPerLine*3,bufferPoints,myRendLayer.
-		 * getBufferElement(lineIndex));
-		 * setArrayBuffer(dc,numVerticesPerLine,bufferIndexVectices
-		 * ,myRendLayer.getVectivesIndexElement(lineIndex));
-		 */
-	}
-
 	private void makeUpdatedVertices(DrawContext dc) {
 
-		if (this.currentListOfUpdatedVertices == null)
-			this.currentListOfUpdatedVertices = new ArrayList<Vec4>();
-		else
-			this.currentListOfUpdatedVertices.clear();
-
-		if (updRenderableControlPoints.getPositions().size() < 1)
+		if (updRenderableControlPoints == null
+				|| updRenderableControlPoints.getPositions().size() < 1)
 			return;
 
-		double[] xpoints = createXPoints(updRenderableControlPoints.points);
-		double[] ypoints = createYPoints(updRenderableControlPoints.points);
-		double[] zpoints = createZPoints(updRenderableControlPoints.points);
-
-		updCubicCurveFunctionsX = createCubicCurveFunctions(
-				updRenderableControlPoints.getSize() - 1, xpoints);
-		updCubicCurveFunctionsY = createCubicCurveFunctions(
-				updRenderableControlPoints.getSize() - 1, ypoints);
-		updCubicCurveFunctionsZ = createCubicCurveFunctions(
-				updRenderableControlPoints.getSize() - 1, zpoints);
-
-		int numSubsegments = SharedVariables.numSubsegments;
-		bufferUpdPointSize = ((numSubsegments + 1) * (updRenderableControlPoints
-				.getSize() - 1)) - (updRenderableControlPoints.getSize() - 2);
-
-		for (int i = 1; i <= updRenderableControlPoints.getSize(); i++) {
-			if (i < updRenderableControlPoints.getSize()) {
-			} else
-				break;
-
-			Vec4 ptB = updRenderableControlPoints.points.get(i);
-
-			// System.out.println("creo subcurva da: "+posA+" a "+posB);
-			ArrayList<Vec4> span = null;
-			// se  il primo segmento inserisco anche il primo punto
-			// altrimenti non lo inserisco perch  uguale all'ultimo del
-			// segmento precedente
-			if (i == 1) {
-				// System.out.println("inserisco punto A: "+ptA);
-				Vec4 ptA = updRenderableControlPoints.points.get(0);
-				// span = this.clipAndAdd(dc, ptA, span);
-				currentListOfUpdatedVertices.add(ptA);
-			}
-
-			span = this.makeSegment(
-					dc,
-					// ptA,
-					ptB, updCubicCurveFunctionsX[i - 1],
-					updCubicCurveFunctionsY[i - 1],
-					updCubicCurveFunctionsZ[i - 1]);
-
-			if (span != null) {
-				// aggiungere condizione: se non  gi stata renderizzata
-				this.addUpdatedSpan(span);
-			}
-
-			// ptA = ptB;
+		SplineBatch splines = myRendLayer.getSplineBatch();
+		if (splines.isCollecting()) {
+			// evaluated by the layer together with the other deformed arcs
+			splines.add(this, updRenderableControlPoints.points);
+			return;
 		}
 
-		bufferUpdatedPoints = createPointsBuffer(bufferUpdPointSize,
-				currentListOfUpdatedVertices);
-		setArrayBuffer(dc, bufferUpdPointSize * 3, bufferUpdatedPoints,
-				myRendLayer.getUpdBufferElement(lineIndex));
+		splines.begin();
+		splines.add(this, updRenderableControlPoints.points);
+		splines.end(dc);
 	}
 
-	private void setArrayBuffer(DrawContext dc, int numPoints,
-			FloatBuffer buffer, int indexBuffer) {
-		// Create Vertex Array.
-
-		buffer.position(0);
-		GL gl = dc.getGL();
-		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, indexBuffer); // gl.glBufferData(GL.GL_ARRAY_BUFFER,
-															// bufferSize*3*8,
-															// bufferPoints,
-															// GL.GL_STATIC_DRAW);
-
-		int numElements = numPoints;
-		gl.glBufferData(GL.GL_ARRAY_BUFFER, numElements
-				* SharedVariables.SIZEOF_FLOAT, buffer, GL.GL_STATIC_DRAW);
-		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	/**
+	 * Takes the vertices of the deformed arc evaluated by the SplineBatch.
+	 */
+	void setUpdatedVertices(DrawContext dc, float[] vertices, int numVertices) {
+		bufferUpdPointSize = numVertices;
+		if (bufferUpdatedPoints == null
+				|| bufferUpdatedPoints.capacity() < numVertices * 3) {
+			bufferUpdatedPoints = SharedVariables.newFloatBuffer(numVertices * 3);
+		}
+		bufferUpdatedPoints.clear();
+		bufferUpdatedPoints.put(vertices, 0, numVertices * 3);
+		bufferUpdatedPoints.position(0);
 
+		// only the slot of this arc is rewritten
+		myRendLayer.getArcVertexPool().update(dc, lineIndex,
+				bufferUpdatedPoints, bufferUpdPointSize);
 	}
 
 	private FloatBuffer createVerticesFloatIndexBuffer(int size) {
@@ -806,51 +738,6 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	}
 
-	private IntBuffer createVerticesIntIndexBuffer(int size) {
-
-		IntBuffer bufferIndexVectives = SharedVariables.newIntBuffer(size);
-		int[] indices = new int[size];
-		for (int i = 0; i < size; i++) {
-			int val = i + (lineIndex * size);
-			indices[(i)] = val;
-		}
-		bufferIndexVectives.put(indices); // this also uses the data from
-											// earlier
-		bufferIndexVectives.position(0);
-		return bufferIndexVectives;
-
-	}
-
-	private FloatBuffer createPointsBuffer(int size,
-			List<Vec4> currentUpdatedSpans) {
-
-		FloatBuffer pointsBuffer = SharedVariables.newFloatBuffer(size * 3);
-
-		float[] points = new float[size * 3];
-
-		int i = 0;
-		// for(List<Vec4> span: currentUpdatedSpans){
-		for (Vec4 p : currentUpdatedSpans) {
-			points[(i * 3)] = (float) p.x;
-			points[(i * 3) + 1] = (float) p.y;
-			points[(i * 3) + 2] = (float) p.z;
-			i++;
-		}
-		// }
-
-		pointsBuffer.put(points); // this also uses the data from earlier
-		pointsBuffer.position(0);
-		return pointsBuffer;
-	}
-
-	public FloatBuffer getBufferPoints() {
-		return bufferPoints;
-	}
-
-	public IntBuffer getBufferIndexVectices() {
-		return bufferIndexVectices;
-	}
-
 	/*
 	 * public Color getColor() { return color; }
 	 * 
@@ -868,6 +755,10 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 		return to;
 	}
 
+	public int getTransitDegree(){
+		return transitDegree;
+	}
+
 	public void setTransitDegree(int transitDegree){
 		this.transitDegree = transitDegree;
 	}
@@ -885,33 +776,23 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 		this.to = to;
 	}
 
-	public CubicSplinePolyline(RenderableControlPoints renderableControlPoints) {
+	/**
+	 * The arc of index arcIndex in arcStore, which must be the store of the
+	 * layer the arc is added to.
+	 */
+	public CubicSplinePolyline(ArcStore arcStore, int arcIndex) {
 
 		this.measurer.setFollowTerrain(this.followTerrain);
 		this.measurer.setPathType(this.pathType);
-		this.renderableControlPoints = renderableControlPoints;
-
-		this.updRenderableControlPoints = new RenderableControlPoints();
-		this.updRenderableControlPoints
-				.setControlPointPosition((ArrayList<Position>) renderableControlPoints
-						.getPositions().clone());
-		this.updRenderableControlPoints
-				.setControlPoint((ArrayList<Vec4>) renderableControlPoints.points
-						.clone());
+		this.arcStore = arcStore;
+		this.arcIndex = arcIndex;
+		this.numVerticesPerLine = SharedVariables.computeNumVerticesPerLine();
 
 	}
 
 	private void reset() {
 
-		if (this.currentListOfVertices != null)
-			this.currentListOfVertices.clear();
-
-		this.currentListOfVertices = null;
-
-		if (this.currentListOfUpdatedVertices != null)
-			this.currentListOfUpdatedVertices.clear();
-
-		this.currentListOfUpdatedVertices = null;
+		this.bufferUpdatedPoints = null;
 
 	}
 
@@ -1249,8 +1130,7 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	protected Extent computeExtent(Globe globe, double verticalExaggeration) {
 		// Sector sector = Sector.boundingSector(this.getPositions());
-		Sector sector = Sector.boundingSector(renderableControlPoints
-				.getPositions());
+		Sector sector = arcStore.getBoundingSector(arcIndex);
 
 		double[] minAndMaxElevations;
 		if (this.isFollowTerrain()) {
@@ -1258,8 +1138,7 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 		} else {
 			// minAndMaxElevations =
 			// computeElevationExtremes(this.getPositions());
-			minAndMaxElevations = computeElevationExtremes(renderableControlPoints
-					.getPositions());
+			minAndMaxElevations = arcStore.getMinAndMaxElevations(arcIndex);
 		}
 		minAndMaxElevations[0] += this.getOffset();
 		minAndMaxElevations[1] += this.getOffset();
@@ -1354,13 +1233,10 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 	}
 
 	private void initUpdateControlPoints() {
-		this.updRenderableControlPoints
-				.setControlPointPosition((ArrayList<Position>) renderableControlPoints
-						.getPositions().clone());
-		this.updRenderableControlPoints
-				.setControlPoint((ArrayList<Vec4>) renderableControlPoints.points
-						.clone());
-
+		if (this.updRenderableControlPoints == null) {
+			this.updRenderableControlPoints = new RenderableControlPoints();
+		}
+		arcStore.copyTo(arcIndex, this.updRenderableControlPoints);
 	}
 
 	protected void movePoints(DrawContext dc, ArrayList<Vec4> infoPoints) {
@@ -1380,10 +1256,8 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 					setCustomColor(2);
 
-					Vec4 worldPoint0 = getVertices().get(
-							(int) infoPoints.get(0).z);
-					Vec4 worldPoint1 = getVertices().get(
-							(int) infoPoints.get(1).z);
+					Vec4 worldPoint0 = getVertex((int) infoPoints.get(0).z);
+					Vec4 worldPoint1 = getVertex((int) infoPoints.get(1).z);
 
 					Vec4 point0 = SharedVariables
 							.computeScreenCoordinates(worldPoint0);
@@ -1407,17 +1281,17 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 							.computeWorldCoordinatesFromScreenPoint(movedScreenCoordinates);
 
 					double indexA = infoPoints.get(0).z
-							/ ((double) getVertices().size());
+							/ ((double) numVerticesPerLine);
 					double indexB = infoPoints.get(1).z
-							/ ((double) getVertices().size());
+							/ ((double) numVerticesPerLine);
 
 					double minInd = (indexA < indexB) ? indexA : indexB;
 					double maxInd = (minInd == indexA) ? indexB : indexA;
 
 					int minInd_int = (int) Math.floor(minInd
-							* (renderableControlPoints.points.size() - 1));
+							* (arcStore.getNumControlPoints(arcIndex) - 1));
 					int maxInd_int = (int) Math.ceil(maxInd
-							* (renderableControlPoints.points.size() - 1));
+							* (arcStore.getNumControlPoints(arcIndex) - 1));
 
 					// int minIndex = (ind1<ind2)? ind1 : ind2 ;
 					/*
@@ -1671,23 +1545,19 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 	private void resetOriginalControlPoint() {
 		// updRenderableControlPoints.positions.set(1, originalControlPosition);
 
-		this.updRenderableControlPoints
-				.setControlPointPosition((ArrayList<Position>) renderableControlPoints
-						.getPositions().clone());
-		this.updRenderableControlPoints
-				.setControlPoint((ArrayList<Vec4>) renderableControlPoints.points
-						.clone());
+		this.updRenderableControlPoints = null;
 	}
 
 	public Position getOrigin() {
 		// return renderableControlPoints.positions.get(0);
-		return renderableControlPoints.getOrigin();
+		return arcStore.getPosition(arcIndex, 0);
 	}
 
 	public Position getDestination() {
 		// return
 		// renderableControlPoints.positions.get(renderableControlPoints.positions.size()-1);
-		return renderableControlPoints.getDestination();
+		return arcStore.getPosition(arcIndex,
+				arcStore.getNumControlPoints(arcIndex) - 1);
 	}
 
 	private void drawControlPoint(DrawContext dc) {
@@ -1798,7 +1668,10 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 			 * if(isAffectedByLense()&SharedVariables.lensIsActive){
 			 * this.makeUpdatedVertices(dc); }
 			 */
-			movePoints(dc, pointsOnLens);
+			// the layer may have already moved the arcs for this frame
+			if (!myRendLayer.isDeformationPrecomputed()) {
+				movePoints(dc, pointsOnLens);
+			}
 			this.drawNewOrderedRenderable(dc);
 		}
 
@@ -1806,6 +1679,14 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	}
 
+	/**
+	 * Moves the control points of the arc for the current lens position. Used
+	 * by the layer to deform all the arcs before drawing them.
+	 */
+	public void updateDeformation(DrawContext dc) {
+		movePoints(dc, getInfoPointsOnLens());
+	}
+
 	public ArrayList<Vec4> getInfoPointsOnLens() {
 		return infoPointsOnLens;
 	}
@@ -1816,7 +1697,6 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	public void initPreProcessingStuff() {
 		initInfoPointsOnLens();
-		initUpdateControlPoints();
 		setFirstNodeInsideLense(false);
 		setLastNodeInsideLense(false);
 	}
@@ -1842,7 +1722,7 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 	}
 
 	// private Cubic[] createCubicCurveFunctions(int n, int[] x)
-	private Cubic[] createCubicCurveFunctions(int n, double[] x) {
+	static Cubic[] createCubicCurveFunctions(int n, double[] x) {
 		/*
 		 * calculates the natural cubic spline that interpolates y[0], y[1], ...
 		 * y[n] The first segment is returned as C[0].a + C[0].b*u + C[0].c*u^2
@@ -2084,74 +1964,15 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 	}
 
-	protected void addSpan(ArrayList<Vec4> span) {
-		/*
-		 * if (span != null && span.size() > 0) this.currentSpans.add(span);
-		 */
-		if (span != null && span.size() > 0)
-			this.currentListOfVertices.addAll(span);
-
-	}
-
-	protected void addUpdatedSpan(ArrayList<Vec4> span) {
-		if (span != null && span.size() > 0)
-			this.currentListOfUpdatedVertices.addAll(span);
-	}
-
-	public List<Vec4> getVertices() {
-		return this.currentListOfVertices;
-	}
-
-	protected ArrayList<Vec4> makeSegment(DrawContext dc,
-			// Vec4 ptA,
-			Vec4 ptB, Cubic cubicCurveFunctionX, Cubic cubicCurveFunctionY,
-			Cubic cubicCurveFunctionZ) {
-
-		int numSubsegments = SharedVariables.numSubsegments;
-
-		// System.out.println("Make Segment");
-		ArrayList<Vec4> span = null;
-		// s va da 0 a 1
-		for (int i = 1; i <= numSubsegments; i++) {
-			double s = (double) i / (double) numSubsegments;
-
-			if (s > 1) {
-				// span = this.clipAndAdd(dc, ptA, span);
-			} else {
-
-				double x = cubicCurveFunctionX.eval(s);
-				double y = cubicCurveFunctionY.eval(s);
-				double z = cubicCurveFunctionZ.eval(s);
-				ptB = new Vec4(x, y, z);
-
-			}
-
-			// System.out.println("inserisco punto b: "+ptB);
-			span = this.clipAndAdd(dc, ptB, span);
-
-		}
-
-		return span;
-	}
-
-	// funzione da modificare
-
-	@SuppressWarnings({ "UnusedDeclaration" })
-	protected ArrayList<Vec4> clipAndAdd(DrawContext dc, Vec4 ptB,
-			ArrayList<Vec4> span) {
-
-		return this.addPointToSpan(ptB, span);
+	/**
+	 * Vertex i of the original arc, read from the layer's store.
+	 */
+	public Vec4 getVertex(int i) {
+		return arcStore.getVertex(arcIndex, i);
 	}
 
-	protected ArrayList<Vec4> addPointToSpan(Vec4 p, ArrayList<Vec4> span) {
-
-		if (span == null)
-			span = new ArrayList<Vec4>();
-
-		// ///////////////////span.add(p.subtract3(this.referenceCenterPoint));
-		span.add(p);
-
-		return span;
+	public int getArcIndex() {
+		return arcIndex;
 	}
 
 	private static void printPosition(DrawContext dc, Vec4 p, String where) {
@@ -2162,13 +1983,13 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 	}
 
 	public Position getReferencePosition() {
-		if (this.renderableControlPoints.getPositions().size() < 1) {
+		int n = arcStore.getNumControlPoints(arcIndex);
+		if (n < 1) {
 			return null;
-		} else if (this.renderableControlPoints.getPositions().size() < 3) {
-			return this.renderableControlPoints.getPositions().get(0);
+		} else if (n < 3) {
+			return arcStore.getPosition(arcIndex, 0);
 		} else {
-			return this.renderableControlPoints.getPositions().get(
-					this.renderableControlPoints.getPositions().size() / 2);
+			return arcStore.getPosition(arcIndex, n / 2);
 		}
 	}
 
@@ -2214,8 +2035,8 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 
 		double elevDelta = position.getElevation() - oldRef.getElevation();
 
-		for (int i = 0; i < this.renderableControlPoints.getPositions().size(); i++) {
-			Position pos = this.renderableControlPoints.getPositions().get(i);
+		for (int i = 0; i < arcStore.getNumControlPoints(arcIndex); i++) {
+			Position pos = arcStore.getPosition(arcIndex, i);
 
 			Angle distance = LatLon.greatCircleDistance(oldRef, pos);
 			Angle azimuth = LatLon.greatCircleAzimuth(oldRef, pos);
@@ -2223,8 +2044,7 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 					azimuth, distance);
 			double newElev = pos.getElevation() + elevDelta;
 
-			this.renderableControlPoints.getPositions().set(i,
-					new Position(newLocation, newElev));
+			arcStore.setPosition(arcIndex, i, new Position(newLocation, newElev));
 		}
 	}
 
@@ -2245,7 +2065,7 @@ Color color = ColorGradient.returnInterpolatedColor(degree, SharedVariables.minT
 	}
 
 	public int getNumRendControlPoints() {
-		return renderableControlPoints.getSize();
+		return arcStore.getNumControlPoints(arcIndex);
 	}
 
 	public void setLastNodeWorldPosition(Vec4 pos) {
@@ -0,0 +1,213 @@
+package it.graphitech.smeSpire.lines.cubicCurve;
+
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.render.DrawContext;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates the natural cubic splines of all the arcs deformed by the lens in
+ * one go. While collecting, CubicSplinePolyline.makeUpdatedVertices only copies
+ * its control points into flat arrays; end() then solves and samples the
+ * splines of every arc on a fork/join pool, and hands the vertices back to the
+ * arcs on the render thread.
+ */
+public class SplineBatch {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	private static final ForkJoinPool POOL = THREADS > 1 ? new ForkJoinPool(THREADS) : null;
+	//arcs handled by each task
+	private static final int ARCS_PER_TASK = 32;
+
+	private boolean collecting = false;
+	private int numSubsegments;
+
+	private CubicSplinePolyline[] arcs = new CubicSplinePolyline[64];
+	//x, y, z of the control points of every arc
+	private double[][] controlPoints = new double[64][];
+	private int[] numControlPoints = new int[64];
+	//x, y, z of the vertices of every arc
+	private float[][] vertices = new float[64][];
+	private int size = 0;
+
+	public SplineBatch() {
+
+	}
+
+	public void begin() {
+		size = 0;
+		numSubsegments = SharedVariables.numSubsegments;
+		collecting = true;
+	}
+
+	public boolean isCollecting() {
+		return collecting;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void add(CubicSplinePolyline arc, List<Vec4> points) {
+		if (size == arcs.length) {
+			arcs = Arrays.copyOf(arcs, size * 2);
+			controlPoints = Arrays.copyOf(controlPoints, size * 2);
+			numControlPoints = Arrays.copyOf(numControlPoints, size * 2);
+			vertices = Arrays.copyOf(vertices, size * 2);
+		}
+
+		int n = points.size();
+		double[] cp = controlPoints[size];
+		if (cp == null || cp.length < n * 3) {
+			cp = new double[n * 3];
+			controlPoints[size] = cp;
+		}
+		for (int i = 0; i < n; i++) {
+			Vec4 p = points.get(i);
+			cp[i * 3] = p.x;
+			cp[i * 3 + 1] = p.y;
+			cp[i * 3 + 2] = p.z;
+		}
+		arcs[size] = arc;
+		numControlPoints[size] = n;
+		size++;
+	}
+
+	/**
+	 * Evaluates the collected splines and sets the vertices of their arcs.
+	 */
+	public void end(DrawContext dc) {
+		collecting = false;
+		if (POOL == null || size <= ARCS_PER_TASK) {
+			evaluate(0, size);
+		} else {
+			POOL.invoke(new EvaluateTask(0, size));
+		}
+
+		for (int i = 0; i < size; i++) {
+			arcs[i].setUpdatedVertices(dc, vertices[i],
+					numVertices(numControlPoints[i], numSubsegments));
+			arcs[i] = null;
+		}
+	}
+
+	private void evaluate(int i0, int i1) {
+		double[] scratch = null;
+		for (int i = i0; i < i1; i++) {
+			int n = numControlPoints[i];
+			int numVertices = numVertices(n, numSubsegments);
+			if (vertices[i] == null || vertices[i].length < numVertices * 3) {
+				vertices[i] = new float[numVertices * 3];
+			}
+			if (scratch == null || scratch.length < n * 3) {
+				scratch = new double[n * 3];
+			}
+			evaluate(controlPoints[i], n, numSubsegments, vertices[i], scratch);
+		}
+	}
+
+	private class EvaluateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int i0;
+		private final int i1;
+
+		EvaluateTask(int i0, int i1) {
+			this.i0 = i0;
+			this.i1 = i1;
+		}
+
+		@Override
+		protected void compute() {
+			if (i1 - i0 <= ARCS_PER_TASK) {
+				evaluate(i0, i1);
+				return;
+			}
+			int mid = (i0 + i1) >>> 1;
+			invokeAll(new EvaluateTask(i0, mid), new EvaluateTask(mid, i1));
+		}
+	}
+
+	/**
+	 * Number of vertices of a spline through numControlPoints points, with
+	 * numSubsegments vertices per span plus the first point.
+	 */
+	public static int numVertices(int numControlPoints, int numSubsegments) {
+		if (numControlPoints < 2) {
+			return numControlPoints;
+		}
+		return numSubsegments * (numControlPoints - 1) + 1;
+	}
+
+	/**
+	 * Samples the natural cubic spline through the control points cp (x, y, z
+	 * interleaved) into out, with the same solve and the same sampling of
+	 * createCubicCurveFunctions and makeSegment.
+	 *
+	 * @param scratch
+	 *            at least 3 * numControlPoints doubles
+	 */
+	public static void evaluate(double[] cp, int numControlPoints, int numSubsegments, float[] out, double[] scratch) {
+		if (numControlPoints < 2) {
+			for (int i = 0; i < numControlPoints * 3; i++) {
+				out[i] = (float) cp[i];
+			}
+			return;
+		}
+
+		int n = numControlPoints - 1;
+		//gamma only depends on n, delta and D are solved once per coordinate
+		int gamma = 0;
+		int delta = n + 1;
+		int D = 2 * (n + 1);
+
+		scratch[gamma] = 1.0 / 2.0;
+		for (int i = 1; i < n; i++) {
+			scratch[gamma + i] = 1 / (4 - scratch[gamma + i - 1]);
+		}
+		scratch[gamma + n] = 1 / (2 - scratch[gamma + n - 1]);
+
+		out[0] = (float) cp[0];
+		out[1] = (float) cp[1];
+		out[2] = (float) cp[2];
+
+		for (int axis = 0; axis < 3; axis++) {
+			scratch[delta] = 3 * (x(cp, 1, axis) - x(cp, 0, axis)) * scratch[gamma];
+			for (int i = 1; i < n; i++) {
+				scratch[delta + i] = (3 * (x(cp, i + 1, axis) - x(cp, i - 1, axis)) - scratch[delta + i - 1])
+						* scratch[gamma + i];
+			}
+			scratch[delta + n] = (3 * (x(cp, n, axis) - x(cp, n - 1, axis)) - scratch[delta + n - 1])
+					* scratch[gamma + n];
+
+			scratch[D + n] = scratch[delta + n];
+			for (int i = n - 1; i >= 0; i--) {
+				scratch[D + i] = scratch[delta + i] - scratch[gamma + i] * scratch[D + i + 1];
+			}
+
+			//coefficients of every span, sampled at s / numSubsegments
+			int v = 1;
+			for (int i = 0; i < n; i++) {
+				double x0 = x(cp, i, axis);
+				double x1 = x(cp, i + 1, axis);
+				double a = x0;
+				double b = scratch[D + i];
+				double c = 3 * (x1 - x0) - 2 * scratch[D + i] - scratch[D + i + 1];
+				double d = 2 * (x0 - x1) + scratch[D + i] + scratch[D + i + 1];
+				for (int s = 1; s <= numSubsegments; s++) {
+					double u = (double) s / (double) numSubsegments;
+					out[v * 3 + axis] = (float) ((((d * u) + c) * u + b) * u + a);
+					v++;
+				}
+			}
+		}
+	}
+
+	private static double x(double[] cp, int i, int axis) {
+		return cp[i * 3 + axis];
+	}
+}
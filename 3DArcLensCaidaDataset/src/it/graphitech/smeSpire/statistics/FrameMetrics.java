@@ -0,0 +1,220 @@
+package it.graphitech.smeSpire.statistics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.media.opengl.GL2;
+
+/**
+ * CPU and GPU time of the passes of MyRenderableLayer over the last WINDOW
+ * frames. The CPU time is measured around the calls of the pass, the GPU time
+ * with GL timer queries whose results are collected at the following frames,
+ * so that reading them never stalls the pipeline. A pass run by more than one
+ * layer in the same frame is summed.
+ */
+public class FrameMetrics {
+
+	public static final int TRANSFORM_FEEDBACK = 0;
+	public static final int READBACK = 1;
+	public static final int SECTOR_ORDERING = 2;
+	public static final int DEFORMATION = 3;
+	public static final int RENDER_DEFORMED = 4;
+	public static final int EARTH_DEPTH = 5;
+	public static final int RENDER_COLORED = 6;
+
+	public static final String[] PASS_NAMES = { "transform feedback", "readback", "sector ordering", "deformation",
+			"render deformed", "earth depth", "render colored" };
+
+	static final int NUM_PASSES = PASS_NAMES.length;
+	//frames kept
+	static final int WINDOW = 256;
+	//queries waiting for their result
+	static final int MAX_PENDING = 64;
+
+	private boolean enabled = true;
+
+	//time in ms of every pass, NaN if the pass did not run in the frame
+	private final double[][] cpu = new double[NUM_PASSES][WINDOW];
+	private final double[][] gpu = new double[NUM_PASSES][WINDOW];
+	private final long[] frames = new long[WINDOW];
+	private long frame = -1;
+	private int numFrames = 0;
+
+	private int activePass = -1;
+	private long activeStart;
+	private int activeQuery = 0;
+
+	//null until the extension is checked
+	private Boolean timerQuery = null;
+	private final int[] freeQueries = new int[MAX_PENDING];
+	private int numFreeQueries = 0;
+	private final int[] pendingQueries = new int[MAX_PENDING];
+	private final int[] pendingPasses = new int[MAX_PENDING];
+	private final long[] pendingFrames = new long[MAX_PENDING];
+	private int numPending = 0;
+	private final int[] tmp = new int[1];
+	private final long[] tmpLong = new long[1];
+
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Starts a new frame, collecting the GPU times of the previous ones that are
+	 * already available.
+	 */
+	public synchronized void beginFrame(GL2 gl) {
+		if (!enabled) {
+			return;
+		}
+		if (timerQuery == null) {
+			timerQuery = gl.isExtensionAvailable("GL_ARB_timer_query")
+					|| gl.isExtensionAvailable("GL_EXT_timer_query");
+			System.out.println("FrameMetrics: GPU timer queries " + (timerQuery ? "available" : "not available"));
+		}
+		if (activePass != -1) {
+			//a pass interrupted by an exception
+			end(gl, activePass);
+		}
+		collectQueries(gl);
+
+		frame++;
+		int slot = (int) (frame % WINDOW);
+		frames[slot] = frame;
+		for (int p = 0; p < NUM_PASSES; p++) {
+			cpu[p][slot] = Double.NaN;
+			gpu[p][slot] = Double.NaN;
+		}
+		numFrames = Math.min(numFrames + 1, WINDOW);
+	}
+
+	public synchronized void begin(GL2 gl, int pass) {
+		if (!enabled || frame < 0 || activePass != -1) {
+			return;
+		}
+		activePass = pass;
+		activeQuery = 0;
+		if (timerQuery && numPending < MAX_PENDING) {
+			if (numFreeQueries > 0) {
+				activeQuery = freeQueries[--numFreeQueries];
+			} else {
+				gl.glGenQueries(1, tmp, 0);
+				activeQuery = tmp[0];
+			}
+			gl.glBeginQuery(GL2.GL_TIME_ELAPSED_EXT, activeQuery);
+		}
+		activeStart = System.nanoTime();
+	}
+
+	public synchronized void end(GL2 gl, int pass) {
+		if (activePass != pass) {
+			return;
+		}
+		long elapsed = System.nanoTime() - activeStart;
+		int slot = (int) (frame % WINDOW);
+		cpu[pass][slot] = add(cpu[pass][slot], elapsed / 1e6);
+
+		if (activeQuery != 0) {
+			gl.glEndQuery(GL2.GL_TIME_ELAPSED_EXT);
+			pendingQueries[numPending] = activeQuery;
+			pendingPasses[numPending] = pass;
+			pendingFrames[numPending] = frame;
+			numPending++;
+		}
+		activePass = -1;
+	}
+
+	private void collectQueries(GL2 gl) {
+		int n = 0;
+		for (int i = 0; i < numPending; i++) {
+			int query = pendingQueries[i];
+			gl.glGetQueryObjectiv(query, GL2.GL_QUERY_RESULT_AVAILABLE, tmp, 0);
+			if (tmp[0] == 0) {
+				//keep it for the next frame
+				pendingQueries[n] = query;
+				pendingPasses[n] = pendingPasses[i];
+				pendingFrames[n] = pendingFrames[i];
+				n++;
+				continue;
+			}
+			gl.glGetQueryObjectui64vEXT(query, GL2.GL_QUERY_RESULT, tmpLong, 0);
+			int slot = (int) (pendingFrames[i] % WINDOW);
+			if (frames[slot] == pendingFrames[i]) {
+				gpu[pendingPasses[i]][slot] = add(gpu[pendingPasses[i]][slot], tmpLong[0] / 1e6);
+			}
+			freeQueries[numFreeQueries++] = query;
+		}
+		numPending = n;
+	}
+
+	private static double add(double total, double value) {
+		return Double.isNaN(total) ? value : total + value;
+	}
+
+	/**
+	 * Percentile p (0-100) of the CPU or GPU time in ms of a pass over the last
+	 * frames, NaN if the pass was never measured.
+	 */
+	public synchronized double getPercentile(int pass, boolean gpuTime, double p) {
+		double[] values = gpuTime ? gpu[pass] : cpu[pass];
+		double[] sorted = new double[numFrames];
+		int n = 0;
+		for (int i = 0; i < numFrames; i++) {
+			int slot = (int) ((frame - i) % WINDOW);
+			if (!Double.isNaN(values[slot])) {
+				sorted[n++] = values[slot];
+			}
+		}
+		if (n == 0) {
+			return Double.NaN;
+		}
+		Arrays.sort(sorted, 0, n);
+		int index = (int) Math.ceil(p / 100.0 * n) - 1;
+		return sorted[Math.max(0, Math.min(index, n - 1))];
+	}
+
+	public synchronized void clear() {
+		numFrames = 0;
+	}
+
+	/**
+	 * Writes the times of the frames kept, oldest first, one row per frame and
+	 * two columns (CPU and GPU ms) per pass. Empty cells are passes not run or
+	 * GPU times not available.
+	 */
+	public synchronized void exportCSV(File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("frame");
+			for (String name : PASS_NAMES) {
+				out.write("," + name + " cpu ms," + name + " gpu ms");
+			}
+			out.newLine();
+
+			for (int i = numFrames - 1; i >= 0; i--) {
+				int slot = (int) ((frame - i) % WINDOW);
+				out.write(String.valueOf(frames[slot]));
+				for (int p = 0; p < NUM_PASSES; p++) {
+					out.write(",");
+					if (!Double.isNaN(cpu[p][slot])) {
+						out.write(String.valueOf(cpu[p][slot]));
+					}
+					out.write(",");
+					if (!Double.isNaN(gpu[p][slot])) {
+						out.write(String.valueOf(gpu[p][slot]));
+					}
+				}
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -9,10 +9,15 @@ package it.graphitech.smeSpire.statistics;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.event.*;
 import gov.nasa.worldwind.util.PerformanceStatistic;
+import it.graphitech.smeSpire.SharedVariables;
 
 import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 public class StatisticsPanel extends JPanel
@@ -84,10 +89,69 @@ public class StatisticsPanel extends JPanel
         outerPanel.setToolTipText("Runtime Statistics");
         outerPanel.add(scrollPane);
         this.add(outerPanel, BorderLayout.CENTER);
+
+        JButton exportButton = new JButton("Export pass timings (CSV)");
+        exportButton.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                exportFrameMetrics();
+            }
+        });
+        this.add(exportButton, BorderLayout.SOUTH);
+    }
+
+    private void exportFrameMetrics()
+    {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("frameMetrics_" + System.currentTimeMillis() + ".csv"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        try
+        {
+            SharedVariables.frameMetrics.exportCSV(fc.getSelectedFile());
+        }
+        catch (IOException e)
+        {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Export failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void fillFrameMetrics()
+    {
+        // Rolling percentiles of the passes of the arc layers, CPU and GPU time in ms.
+        FrameMetrics metrics = SharedVariables.frameMetrics;
+        for (int p = 0; p < FrameMetrics.PASS_NAMES.length; p++)
+        {
+            double cpu50 = metrics.getPercentile(p, false, 50);
+            if (Double.isNaN(cpu50))
+                continue;
+            String s = String.format("<html>%s<br>cpu p50 %.2f p95 %.2f p99 %.2f<br>gpu p50 %s p95 %s p99 %s</html>",
+                FrameMetrics.PASS_NAMES[p], cpu50, metrics.getPercentile(p, false, 95),
+                metrics.getPercentile(p, false, 99), format(metrics.getPercentile(p, true, 50)),
+                format(metrics.getPercentile(p, true, 95)), format(metrics.getPercentile(p, true, 99)));
+            this.statsPanel.add(new JLabel(s));
+        }
+
+        this.statsPanel.add(new JLabel("<html>distorted lines " + SharedVariables.counterOfDistortedLines
+            + "<br>filtered lines " + SharedVariables.counterOfFilteredLines
+            + "<br>simple lines " + SharedVariables.counterOfSimpleLines
+            + "<br>culled lines " + SharedVariables.counterOfCulledLines
+            + "<br>intersection points " + SharedVariables.counterOfIntersectionPoints
+            + "<br>context vertices " + SharedVariables.counterOfContextVertices
+            + "<br>labels " + SharedVariables.counterOfLabels + "</html>"));
+    }
+
+    private static String format(double ms)
+    {
+        return Double.isNaN(ms) ? "-" : String.format("%.2f", ms);
     }
 
     private void fill(WorldWindow wwd)
     {
+        this.fillFrameMetrics();
+
         if (wwd.getSceneController().getPerFrameStatistics().size() < 1)
             return;
 
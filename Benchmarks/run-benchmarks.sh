@@ -0,0 +1,10 @@
+#!/bin/bash
+# Builds the benchmarks and runs them without a display.
+# The arguments are passed to JMH, e.g.:
+#   ./run-benchmarks.sh FluidBenchmark -p N=128
+#   ./run-benchmarks.sh -l
+cd "$(dirname "$0")" || exit 1
+
+mvn -q package || exit 1
+
+java -Djava.awt.headless=true -cp "target/classes:$(cat target/classpath.txt)" org.openjdk.jmh.Main "$@"
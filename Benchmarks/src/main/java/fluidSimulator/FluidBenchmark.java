@@ -0,0 +1,91 @@
+package fluidSimulator;
+
+import gov.nasa.worldwind.render.Renderable;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steps of the fluid simulator on a grid without buildings. In the package of
+ * fluid to reach dens_step and vel_step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class FluidBenchmark {
+
+	@Param({ "70", "128", "256" })
+	int N;
+
+	//threads of the solver, 0 for one per processor
+	@Param({ "1", "0" })
+	int solverThreads;
+
+	double[] u, v, u0, v0;
+	double[] dens, dens0;
+
+	@Setup
+	public void setup() {
+		Variables.N = N;
+		Variables.size = (N + 2) * (N + 2);
+		Variables.solverThreads = solverThreads > 0 ? solverThreads : Runtime.getRuntime().availableProcessors();
+		Variables.buildings = new ArrayList<Renderable>();
+		fluid.init();
+
+		u = new double[Variables.size];
+		v = new double[Variables.size];
+		u0 = new double[Variables.size];
+		v0 = new double[Variables.size];
+		dens = new double[Variables.size];
+		dens0 = new double[Variables.size];
+	}
+
+	/**
+	 * A dense blob in the middle of the grid pushed by a uniform wind; reset at
+	 * every iteration so that the fields do not fade or blow up.
+	 */
+	@Setup(Level.Iteration)
+	public void resetFields() {
+		for (int j = 0; j < N + 2; j++) {
+			for (int i = 0; i < N + 2; i++) {
+				int k = fluid.getIndex(i, j);
+				double dx = (i - N / 2.0) / N;
+				double dy = (j - N / 2.0) / N;
+				dens[k] = Math.exp(-(dx * dx + dy * dy) * 50);
+				dens0[k] = 0;
+				u[k] = 1;
+				v[k] = 0.5;
+				u0[k] = 0;
+				v0[k] = 0;
+			}
+		}
+	}
+
+	@Benchmark
+	public double dens_step() {
+		fluid.dens_step(N, dens, dens0, u, v, Variables.diff, Variables.dt);
+		return dens[fluid.getIndex(N / 2, N / 2)];
+	}
+
+	@Benchmark
+	public double vel_step() {
+		fluid.vel_step(N, u, v, u0, v0, Variables.visc, Variables.dt);
+		return u[fluid.getIndex(N / 2, N / 2)];
+	}
+}
@@ -0,0 +1,67 @@
+package it.graphitech;
+
+import gov.nasa.worldwind.geom.Position;
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Control points of the arcs over the globe, computed for every flow when the
+ * layers are created. In the package of GeneratorOfRenderableObjects to reach
+ * setControlPointsOverGlobe.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ControlPointsBenchmark {
+
+	//arcs per invocation
+	static final int NUM_ARCS = 1000;
+
+	@Param({ "7", "20" })
+	int numControlPoints;
+
+	Position[] sources = new Position[NUM_ARCS];
+	Position[] destinations = new Position[NUM_ARCS];
+	double[] distances = new double[NUM_ARCS];
+
+	@Setup
+	public void setup() {
+		SharedVariables.numControlPoints = numControlPoints;
+
+		Random random = new Random(42);
+		for (int i = 0; i < NUM_ARCS; i++) {
+			double fromLat = random.nextDouble() * 160 - 80;
+			double fromLon = random.nextDouble() * 360 - 180;
+			double toLat = random.nextDouble() * 160 - 80;
+			double toLon = random.nextDouble() * 360 - 180;
+			sources[i] = Position.fromDegrees(fromLat, fromLon);
+			destinations[i] = Position.fromDegrees(toLat, toLon);
+			distances[i] = GeneratorOfRenderableObjects.distance(fromLat, fromLon, toLat, toLon);
+		}
+	}
+
+	@Benchmark
+	public void setControlPointsOverGlobe(Blackhole bh) {
+		for (int i = 0; i < NUM_ARCS; i++) {
+			bh.consume(GeneratorOfRenderableObjects.setControlPointsOverGlobe(sources[i], destinations[i], distances[i]));
+		}
+	}
+}
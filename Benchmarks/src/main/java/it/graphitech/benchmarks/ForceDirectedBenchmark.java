@@ -0,0 +1,57 @@
+package it.graphitech.benchmarks;
+
+import it.graphitech.modules.ForceDirectedTechnique;
+import it.graphitech.modules.MainModule;
+import it.graphitech.modules.MiddleNodeGeneration;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One iteration of the force directed layout of the flow maps, on the trees
+ * generated from the bundled flow data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ForceDirectedBenchmark {
+
+	static final String FLOW_DATA = "../ForceDirectedFlowMapsInWorldWind_v3/FlowData3/";
+
+	@Param({ "CALIFORNIA.txt", "COLORADO - upd.txt", "Alberto_graphitech_projects_2.txt" })
+	String flowsFile;
+
+	@Setup
+	public void setup() {
+		Headless.initForceDirectedPanels();
+		Headless.silenceOutput();
+		MiddleNodeGeneration.initNodes();
+		MainModule.init(FLOW_DATA + flowsFile);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Headless.restoreOutput();
+	}
+
+	@Benchmark
+	public int executeAlgorithm() {
+		ForceDirectedTechnique.executeAlgorithm();
+		return MiddleNodeGeneration.getNumNodes();
+	}
+}
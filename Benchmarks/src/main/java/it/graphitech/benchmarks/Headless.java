@@ -0,0 +1,51 @@
+package it.graphitech.benchmarks;
+
+import it.graphitech.swing.RenderOptionPanel;
+import it.graphitech.swing.VariablesPanel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import javax.swing.JTextField;
+
+/**
+ * Setup shared by the benchmarks, which run without a display and without the
+ * Swing panels of the applications.
+ */
+class Headless {
+
+	private static final PrintStream stdout = System.out;
+
+	/**
+	 * The loaders and the force directed setup print on every line and node:
+	 * discard that output, the console would dominate the measure.
+	 */
+	static void silenceOutput() {
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+	static void restoreOutput() {
+		System.setOut(stdout);
+	}
+
+	/**
+	 * The text fields that Variables and Operations of the force directed
+	 * project update while loading the flows; they are created by the panels
+	 * of the application.
+	 */
+	static void initForceDirectedPanels() {
+		RenderOptionPanel.min_text = new JTextField();
+		RenderOptionPanel.max_text = new JTextField();
+		VariablesPanel.distanceRejectArea_text = new JTextField();
+		VariablesPanel.elect_Force_text = new JTextField();
+		VariablesPanel.spring_Force_text = new JTextField();
+	}
+}
@@ -0,0 +1,158 @@
+package it.graphitech.benchmarks;
+
+import it.graphitech.Operations;
+import it.graphitech.input.FlowSource;
+import it.graphitech.smeSpire.entry.FlowsLoader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loaders of the flow files: the force directed input files (FlowData3) and
+ * the CAIDA csv, parsed or read back from its snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LoadersBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class FlowData {
+
+		@Param({ "CALIFORNIA.txt", "COLORADO - upd.txt", "Alberto_graphitech_projects_2.txt" })
+		String flowsFile;
+
+		@Setup
+		public void setup() {
+			Headless.initForceDirectedPanels();
+			Headless.silenceOutput();
+		}
+
+		@TearDown
+		public void tearDown() {
+			Headless.restoreOutput();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class CaidaData {
+
+		//csv in the CAIDA format; when empty a synthetic one is generated
+		@Param({ "" })
+		String caidaCsv;
+
+		//rows of the synthetic csv
+		@Param({ "200000" })
+		int rows;
+
+		//false: parse the csv (and write the snapshot) at every load
+		@Param({ "false", "true" })
+		boolean useSnapshot;
+
+		File csv;
+		File snapshot;
+		boolean generated;
+
+		@Setup
+		public void setup() throws IOException {
+			if (caidaCsv.isEmpty()) {
+				csv = File.createTempFile("caida", ".csv");
+				generated = true;
+				writeSyntheticCsv(csv, rows);
+			} else {
+				csv = new File(caidaCsv);
+			}
+			snapshot = new File(csv.getPath() + ".snapshot");
+			snapshot.delete();
+			Headless.silenceOutput();
+			if (useSnapshot) {
+				new FlowsLoader().load(csv.getPath());
+			}
+		}
+
+		@Setup(Level.Invocation)
+		public void deleteSnapshot() {
+			if (!useSnapshot) {
+				snapshot.delete();
+			}
+		}
+
+		@TearDown
+		public void tearDown() {
+			Headless.restoreOutput();
+			snapshot.delete();
+			if (generated) {
+				csv.delete();
+			}
+		}
+	}
+
+	/**
+	 * Rows of ';' separated fields: organization, id, degree, latitude and
+	 * longitude of both ends, then the traffic degree. Ids are drawn from a pool
+	 * so that some rows are duplicates and some ends fall below the degree
+	 * threshold of the loader.
+	 */
+	static void writeSyntheticCsv(File file, int rows) throws IOException {
+		Random random = new Random(42);
+		int numNodes = Math.max(rows / 40, 2);
+		double[] lat = new double[numNodes];
+		double[] lon = new double[numNodes];
+		int[] degree = new int[numNodes];
+		for (int i = 0; i < numNodes; i++) {
+			lat[i] = random.nextDouble() * 160 - 80;
+			lon[i] = random.nextDouble() * 360 - 180;
+			degree[i] = random.nextInt(2000);
+		}
+
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			for (int r = 0; r < rows; r++) {
+				int from = random.nextInt(numNodes);
+				int to = random.nextInt(numNodes);
+				writer.write(String.format(Locale.ROOT, "ORG%d;AS%d;%d;%.6f;%.6f;ORG%d;AS%d;%d;%.6f;%.6f;%d",
+						from, from, degree[from], lat[from], lon[from],
+						to, to, degree[to], lat[to], lon[to],
+						random.nextInt(1000)));
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Benchmark
+	public ArrayList<FlowSource> forceDirectedFlows(FlowData data) {
+		Operations.clearVariables();
+		return Operations.loadInputData(ForceDirectedBenchmark.FLOW_DATA + data.flowsFile);
+	}
+
+	@Benchmark
+	public FlowsLoader caidaFlows(CaidaData data) {
+		FlowsLoader loader = new FlowsLoader();
+		loader.load(data.csv.getPath());
+		return loader;
+	}
+}
@@ -0,0 +1,74 @@
+package it.graphitech.lifeimagine.wps;
+
+import it.graphitech.lifeimagine.wps.otherClasses.SerialSimpleFeature;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Land cover change flow matrix of SoilConsumption3, on land use features with
+ * random classes and small square polygons. In the package of AreaMatrix to
+ * reach buildAreaMatrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class AreaMatrixBenchmark {
+
+	static final String CLASS_PREFIX = "http://inspire.ec.europa.eu/codelist/LandCoverClassValue/";
+
+	@Param({ "10000", "100000" })
+	int numFeatures;
+
+	@Param({ "10", "40" })
+	int numClasses;
+
+	SerialSimpleFeature[] features;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		GeometryFactory factory = new GeometryFactory();
+		features = new SerialSimpleFeature[numFeatures];
+		for (int i = 0; i < numFeatures; i++) {
+			//coordinates in meters, as in EPSG:3044
+			double x = random.nextDouble() * 1e5;
+			double y = random.nextDouble() * 1e5;
+			double size = 10 + random.nextDouble() * 500;
+			Coordinate[] ring = new Coordinate[] {
+					new Coordinate(x, y),
+					new Coordinate(x + size, y),
+					new Coordinate(x + size, y + size),
+					new Coordinate(x, y + size),
+					new Coordinate(x, y) };
+			features[i] = new SerialSimpleFeature(
+					CLASS_PREFIX + random.nextInt(numClasses),
+					CLASS_PREFIX + random.nextInt(numClasses),
+					factory.createPolygon(factory.createLinearRing(ring), null));
+		}
+	}
+
+	@Benchmark
+	public HashMap<String, HashMap<String, Number>> buildAreaMatrix() {
+		return AreaMatrix.buildAreaMatrix(features);
+	}
+}
@@ -0,0 +1,82 @@
+package it.graphitech.smeSpire.lines.cubicCurve;
+
+import it.graphitech.smeSpire.SharedVariables;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Natural cubic spline of an arc (CubicSplinePolyline.makeOriginalVertices):
+ * one spline per coordinate of the control points. The flat evaluation of
+ * SplineBatch also samples the spline into the vertices of the arc.
+ * In the package of CubicSplinePolyline to reach createCubicCurveFunctions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SplineBenchmark {
+
+	@Param({ "7", "20", "100" })
+	int numControlPoints;
+
+	double[] xpoints;
+	double[] ypoints;
+	double[] zpoints;
+
+	double[] controlPoints;
+	double[] scratch;
+	float[] vertices;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		xpoints = new double[numControlPoints];
+		ypoints = new double[numControlPoints];
+		zpoints = new double[numControlPoints];
+		//cartesian coordinates of the globe, in meters
+		for (int i = 0; i < numControlPoints; i++) {
+			xpoints[i] = (random.nextDouble() * 2 - 1) * 6.4e6;
+			ypoints[i] = (random.nextDouble() * 2 - 1) * 6.4e6;
+			zpoints[i] = (random.nextDouble() * 2 - 1) * 6.4e6;
+		}
+
+		controlPoints = new double[numControlPoints * 3];
+		for (int i = 0; i < numControlPoints; i++) {
+			controlPoints[i * 3] = xpoints[i];
+			controlPoints[i * 3 + 1] = ypoints[i];
+			controlPoints[i * 3 + 2] = zpoints[i];
+		}
+		scratch = new double[numControlPoints * 3];
+		vertices = new float[SplineBatch.numVertices(numControlPoints, SharedVariables.numSubsegments) * 3];
+	}
+
+	@Benchmark
+	public void createCubicCurveFunctions(Blackhole bh) {
+		int n = numControlPoints - 1;
+		bh.consume(CubicSplinePolyline.createCubicCurveFunctions(n, xpoints));
+		bh.consume(CubicSplinePolyline.createCubicCurveFunctions(n, ypoints));
+		bh.consume(CubicSplinePolyline.createCubicCurveFunctions(n, zpoints));
+	}
+
+	@Benchmark
+	public float[] splineBatchEvaluate() {
+		SplineBatch.evaluate(controlPoints, numControlPoints, SharedVariables.numSubsegments, vertices, scratch);
+		return vertices;
+	}
+}
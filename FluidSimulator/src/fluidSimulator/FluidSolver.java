@@ -0,0 +1,193 @@
+package fluidSimulator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solver kernels of fluid (diffuse, advect, project) on the (N+2)*(N+2) grid
+ * addressed by fluid.getIndex.
+ *
+ * Every kernel walks the grid row by row (j outer, i inner), so that the inner
+ * loop reads contiguous memory, and splits the rows among the threads of a
+ * fork/join pool. The Gauss-Seidel sweeps use red-black ordering: the cells of
+ * one colour only read cells of the other colour, so every half sweep can be
+ * split by rows without changing its result.
+ */
+public class FluidSolver {
+
+	private final int N;
+	private final int rowLength;
+	private final int threads;
+	private final ForkJoinPool pool;
+	//rows handled by each task
+	private final int rowsPerTask;
+
+	public FluidSolver(int N, int threads) {
+		this.N = N;
+		this.rowLength = N + 2;
+		this.threads = Math.max(1, threads);
+		this.pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+		this.rowsPerTask = Math.max(8, (N + this.threads - 1) / this.threads);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Work on the rows [j0, j1) of the grid.
+	 */
+	private static abstract class RowKernel {
+		abstract void rows(int j0, int j1);
+	}
+
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final RowKernel kernel;
+		private final int j0;
+		private final int j1;
+
+		RowTask(RowKernel kernel, int j0, int j1) {
+			this.kernel = kernel;
+			this.j0 = j0;
+			this.j1 = j1;
+		}
+
+		@Override
+		protected void compute() {
+			if (j1 - j0 <= rowsPerTask) {
+				kernel.rows(j0, j1);
+				return;
+			}
+			int mid = (j0 + j1) >>> 1;
+			invokeAll(new RowTask(kernel, j0, mid), new RowTask(kernel, mid, j1));
+		}
+	}
+
+	private void forRows(RowKernel kernel, int j0, int j1) {
+		if (pool == null || j1 - j0 <= rowsPerTask) {
+			kernel.rows(j0, j1);
+		} else {
+			pool.invoke(new RowTask(kernel, j0, j1));
+		}
+	}
+
+	/**
+	 * Half sweep of x = s*x0 + w*(x[left]+x[right]+x[down]+x[up]) over the
+	 * cells with (i+j)%2 == color.
+	 */
+	private void relax(final double[] x, final double[] x0, final double s, final double w, final int color) {
+		forRows(new RowKernel() {
+			@Override
+			void rows(int j0, int j1) {
+				for (int j = j0; j < j1; j++) {
+					int row = rowLength * j;
+					for (int i = 1 + ((1 + j + color) & 1); i <= N; i += 2) {
+						int k = row + i;
+						x[k] = s * x0[k] + w * (x[k - 1] + x[k + 1] + x[k - rowLength] + x[k + rowLength]);
+					}
+				}
+			}
+		}, 1, N + 1);
+	}
+
+	public void diffuse(int b, double[] x, double[] x0, float diff, float dt) {
+		float a = dt * diff * N * N;
+		double w = a / (1 + 4 * a);
+
+		for (int k = 0; k <= 20; k++) {
+			relax(x, x0, 1, w, 0);
+			relax(x, x0, 1, w, 1);
+			fluid.set_bnd(N, b, x);
+		}
+	}
+
+	public void advect(final int b, final double[] dest, final double[] src, final double[] xVelocity,
+			final double[] yVelocity, final double dt, final double[] buildings) {
+		forRows(new RowKernel() {
+			@Override
+			void rows(int j0, int j1) {
+				for (int y = j0; y < j1; y++) {
+					int row = rowLength * y;
+					for (int x = 1; x < N - 1; x++) {
+						int k = row + x;
+						if (buildings[k] != 0) {
+							continue;
+						}
+						//Reverse velocity, since we are interpolating backwards
+						double xSrc = x - dt * xVelocity[k];
+						double ySrc = y - dt * yVelocity[k];
+
+						if (xSrc < 0.5) {xSrc = 0.5;}
+						if (xSrc > N - 1.5) {xSrc = N - 1.5;}
+						int xi0 = (int) xSrc;
+
+						if (ySrc < 0.5) {ySrc = 0.5;}
+						if (ySrc > N - 1.5) {ySrc = N - 1.5;}
+						int yi0 = (int) ySrc;
+
+						double xProp1 = xSrc - xi0;
+						double xProp0 = 1.0 - xProp1;
+						double yProp1 = ySrc - yi0;
+						double yProp0 = 1.0 - yProp1;
+
+						int k00 = xi0 + rowLength * yi0;
+						int k01 = k00 + rowLength;
+						dest[k] = xProp0 * (yProp0 * src[k00] + yProp1 * src[k01])
+								+ xProp1 * (yProp0 * src[k00 + 1] + yProp1 * src[k01 + 1]);
+					}
+				}
+			}
+		}, 1, N - 1);
+		fluid.set_bnd(N, b, dest);
+	}
+
+	public void project(final double[] u, final double[] v, final double[] p, final double[] div) {
+		final float h = 1.0f / N;
+
+		forRows(new RowKernel() {
+			@Override
+			void rows(int j0, int j1) {
+				for (int j = j0; j < j1; j++) {
+					int row = rowLength * j;
+					for (int i = 1; i <= N; i++) {
+						int k = row + i;
+						div[k] = -0.5f * h * (u[k + 1] - u[k - 1] + v[k + rowLength] - v[k - rowLength]);
+						p[k] = 0;
+					}
+				}
+			}
+		}, 1, N + 1);
+		fluid.set_bnd(N, 0, div);
+		fluid.set_bnd(N, 0, p);
+
+		for (int k = 0; k < 20; k++) {
+			relax(p, div, 0.25, 0.25, 0);
+			relax(p, div, 0.25, 0.25, 1);
+			fluid.set_bnd(N, 0, p);
+		}
+
+		forRows(new RowKernel() {
+			@Override
+			void rows(int j0, int j1) {
+				for (int j = j0; j < j1; j++) {
+					int row = rowLength * j;
+					for (int i = 1; i <= N; i++) {
+						int k = row + i;
+						u[k] -= 0.5 * (p[k + 1] - p[k - 1]) / h;
+						v[k] -= 0.5 * (p[k + rowLength] - p[k - rowLength]) / h;
+					}
+				}
+			}
+		}, 1, N + 1);
+		fluid.set_bnd(N, 1, u);
+		fluid.set_bnd(N, 2, v);
+	}
+}
@@ -68,6 +68,9 @@ public class Variables {
 	
 	//static int size = (N+2)*(N+2);
 	static public int size = (Variables.N+2)*(Variables.N+2);
+	
+	//threads used by FluidSolver (1: no fork/join pool)
+	static public int solverThreads = Runtime.getRuntime().availableProcessors();
 
 	
 	///////////////////////////////////
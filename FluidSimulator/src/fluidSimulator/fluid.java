@@ -29,6 +29,9 @@ public class fluid {
 	
 	
 	static  double[] buildings;
+	
+	//diffuse, advect and project kernels
+	static FluidSolver solver;
 	//static  double[] v_buildings;
 	
 	//density evolves for 3 causes
@@ -97,24 +100,12 @@ private void diffuse_bad(int N, int b, float[] x, float[] x0, float diff,  float
 
 private static  void diffuse(int N, int b, double[] x, double[] x0, float diff,  float dt){
 	
-	int i,j,k;
-	float a = dt*diff*N*N;
-	
 	//System.out.println("a: "+a);
-	
-	for(k=0;k<=20;k++){
-	for(i=1;i<=N;i++){
-		for(j=1;j<=N;j++){
-			x[getIndex(i,j)]=(x0[getIndex(i,j)]+a*(x[getIndex(i-1,j)]+x[getIndex(i+1,j)]+x[getIndex(i,j-1)]+x[getIndex(i,j+1)])/(1+4*a));
-		}
-	}
-	
-	set_bnd(N,b,x);
+	solver.diffuse(b, x, x0, diff, dt);
 /*
 BuildingMngt.set_buildings(N,x,u_buildings);
 BuildingMngt.set_buildings(N,x,v_buildings);
 */
-	}
 }
 
 //from applet
@@ -122,57 +113,8 @@ private static void advect(int N, int b, double[] dest, double[] src, double[] x
 {	
 	
 	//System.out.println("DT: "+dt);
-	//for(int y = 1; y < N-1; y++)
-		for(int y=1;y<N-1;y++)
-	{
-		for (int x = 1; x < N-1; x++) 
-		{
-	       //Reverse velocity, since we are interpolating backwards
-            //xSrc and ySrc is the position of the source density.
-			double xSrc = x-dt*xVelocity[getIndex(x,y)]; 
-			double ySrc = y-dt*yVelocity[getIndex(x,y)];
-			
-			if(xSrc < 0.5) {xSrc = 0.5;} 
-			if(xSrc > N - 1.5) {xSrc = N - 1.5;}
-			int xi0 = (int)xSrc; 
-			int xi1 = xi0+1;
-			
-			if(ySrc < 0.5) {ySrc = 0.5;}
-			if(ySrc > N - 1.5) {ySrc = N - 1.5;} 
-			int yi0 = (int)ySrc; 
-			int yi1 = yi0+1;
-			
-			
-			
-			//Linear interpolation factors. Ex: 0.6 and 0.4
-			double xProp1 = xSrc-xi0;
-			double xProp0 = 1.0-xProp1; 
-			double yProp1 = ySrc-yi0; 
-			double yProp0 = 1.0-yProp1;
-			
-			//System.out.println("(xProp1 = xSrc-xi0) "+xProp1+" = "+xSrc +" - "+xi0);
-			//System.out.println("(yProp1 = ySrc-yi0) "+yProp1+" = "+ySrc +" - "+yi0);
-			
-		//	System.out.println(xProp1+" "+xProp0+" "+yProp1+" "+yProp0);
-			
-			if(buildings[getIndex(x,y)]!=0){
-				//System.out.println("c' qualcosa");
-			}else{
-			
-			dest[getIndex(x,y)] = 
-				xProp0*(yProp0*src[getIndex(xi0,yi0)] + yProp1*src[getIndex(xi0,yi1)]) +
-				xProp1*(yProp0*src[getIndex(xi1,yi0)] + yProp1*src[getIndex(xi1,yi1)]);
-			}
-		/*	
-			if(dest[getIndex(x,y)]>0){
-				System.out.println(dest[getIndex(x,y)]+" = "+
-					xProp0+"*"+"("+yProp0+"*"+src[getIndex(xi0,yi0)]+"+"+yProp1+"*"+src[getIndex(xi0,yi1)]+")"+"+"+
-					xProp1+"*"+"("+yProp0+"*"+src[getIndex(xi1,yi0)]+"+"+yProp1+"*"+src[getIndex(xi1,yi1)]+")");
-			}
-			*/
-		}
-	}
-	set_bnd(N,b, dest);
+	//the cells covered by buildings keep their value
+	solver.advect(b, dest, src, xVelocity, yVelocity, dt, buildings);
 	
 }
 	//third step
@@ -271,7 +213,7 @@ private static void new_advect(int N, int b, double[] dest, double[] src, double
 }
 */
 	//all steps
-static private void dens_step ( int N, double[] x, double[] x0, double[] u, double[] v, float diff,
+static void dens_step ( int N, double[] x, double[] x0, double[] u, double[] v, float diff,
 			float dt )
 			{
 	
@@ -332,7 +274,7 @@ private static  void printMinMaxDensity(int n){
 
 
 //v0,u0 are the force fields
-private static void vel_step ( int N, double[] u, double[] v, double[] u0, double[] v0,
+static void vel_step ( int N, double[] u, double[] v, double[] u0, double[] v0,
 		float visc, float dt )
 		{
 		add_source ( N, u, u0, dt ); add_source ( N, v, v0, dt );
@@ -397,36 +339,7 @@ private static void vel_step ( int N, double[] u, double[] v, double[] u0, doubl
 
 static private void project ( int N, double[] u, double[] v, double[] p, double[] div )
 {
-int i, j, k;
-float h;
-h = 1.0f/N;
-for ( i=1 ; i<=N ; i++ ) {
-for ( j=1 ; j<=N ; j++ ) {
-div[getIndex(i,j)] = -0.5f*h*(u[getIndex(i+1,j)]-u[getIndex(i-1,j)]+
-v[getIndex(i,j+1)]-v[getIndex(i,j-1)]);
-p[getIndex(i,j)] = 0;
-}
-}
-set_bnd ( N, 0, div ); set_bnd ( N, 0, p );
-
-for ( k=0 ; k<20 ; k++ ) {
-for ( i=1 ; i<=N ; i++ ) {
-for ( j=1 ; j<=N ; j++ ) {
-p[getIndex(i,j)] = (div[getIndex(i,j)]+p[getIndex(i-1,j)]+p[getIndex(i+1,j)]+
-p[getIndex(i,j-1)]+p[getIndex(i,j+1)])/4;
-}
-}
-set_bnd ( N, 0, p );
-
-
-}
-for ( i=1 ; i<=N ; i++ ) {
-for ( j=1 ; j<=N ; j++ ) {
-u[getIndex(i,j)] -= 0.5*(p[getIndex(i+1,j)]-p[getIndex(i-1,j)])/h;
-v[getIndex(i,j)] -= 0.5*(p[getIndex(i,j+1)]-p[getIndex(i,j-1)])/h;
-}
-}
-set_bnd ( N, 1, u ); set_bnd ( N, 2, v );
+solver.project(u, v, p, div);
 //BuildingMngt.set_buildings(N, u, buildings);BuildingMngt.set_buildings(N, v, buildings);
 }
 
@@ -552,6 +465,11 @@ public static void init(){
 	  //ArrayList<Building> bildings = BuildingMngt.createTrentoBuildings();
 	  //BuildingMngt.init_trentoBuildingGrids(bildings, buildings);
 	  BuildingMngt.init_trentoBuildingGrids( buildings);
+	  
+	  if(solver!=null){
+		  solver.shutdown();
+	  }
+	  solver = new FluidSolver(Variables.N, Variables.solverThreads);
 }
 
 public static void reset(){
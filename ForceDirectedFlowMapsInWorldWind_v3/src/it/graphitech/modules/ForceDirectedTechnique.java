@@ -5,10 +5,14 @@ package it.graphitech.modules;
 import it.graphitech.Variables;
 import it.graphitech.objects.Node;
 import it.graphitech.objects.Position;
+import it.graphitech.objects.SpatialGrid;
 import it.graphitech.objects.Vector2d;
 
 public class ForceDirectedTechnique {
 
+	//leaf nodes, for the reject force candidates
+	private static SpatialGrid leafGrid = new SpatialGrid();
+
 	public static void executeAlgorithm() {
 
 		
@@ -107,11 +111,20 @@ public class ForceDirectedTechnique {
 				updateNode(e);
 			}
 			
+			//a leaf node rejects e if distance-thickness(e)/2 <= rejectBuffer+thickness(leaf)
+			double maxLeafThickness = 0;
+			for (Node leaf : MiddleNodeGeneration.leafNodes) {
+				maxLeafThickness = Math.max(maxLeafThickness, Variables.returnNodeLeafThickness(leaf.getNodeMagnitude()));
+			}
+			leafGrid.build(MiddleNodeGeneration.leafNodes, Variables.rejectBufferInMeters+maxLeafThickness);
+			
 			for (Node e :MiddleNodeGeneration.getNodeValues()) {
 				if (((!e.isLeaf()) && (!e.isRoot() && (!e.isBlocked())))) {
 			
-			for (Node interactingNode : MiddleNodeGeneration.leafNodes) {
-			
+			double cutoffInMeters = Variables.rejectBufferInMeters+maxLeafThickness+Variables.returnThickness(e.getNodeMagnitude())/2;
+			int numCandidates = leafGrid.query(e.getPosition(), cutoffInMeters);
+			for (int c = 0; c < numCandidates; c++) {
+				Node interactingNode = leafGrid.getCandidate(c);
 			
 				double distance = getDistancenMapUnit(e, interactingNode);
 				
@@ -14,6 +14,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -242,55 +243,57 @@ for (Node n : nodesArray) {
 
 */
 	public void assignNeighbours() {
+		//the candidates of e are the non leaf nodes with the same origin and an index near e's one:
+		//they are grouped by origin (compared by reference, as before) and by index
+		IdentityHashMap<String, HashMap<Integer, ArrayList<Node>>> nodesByOrigin = new IdentityHashMap<>();
+		for (Node n : nodes.values()) {
+			if (!n.isLeaf()) {
+				HashMap<Integer, ArrayList<Node>> nodesByIndex = nodesByOrigin.get(n.getIdOrigin());
+				if (nodesByIndex == null) {
+					nodesByIndex = new HashMap<>();
+					nodesByOrigin.put(n.getIdOrigin(), nodesByIndex);
+				}
+				ArrayList<Node> sameIndex = nodesByIndex.get(n.getIndex());
+				if (sameIndex == null) {
+					sameIndex = new ArrayList<>();
+					nodesByIndex.put(n.getIndex(), sameIndex);
+				}
+				sameIndex.add(n);
+			}
+		}
+		
 		for (Node e : nodes.values()) {
 
 			if (((!e.isLeaf()) && (!e.isRoot()))) {
 
 				Set<String> neig = new HashSet<>();
 				
-				for (Node interacting_node : nodes.values()) {
+				HashMap<Integer, ArrayList<Node>> nodesByIndex = nodesByOrigin.get(e.getIdOrigin());
+				
+				for (int index = e.getIndex() - Variables.deltaNeighbourIndex + 1; index < e.getIndex() + Variables.deltaNeighbourIndex; index++) {
+					ArrayList<Node> sameIndex = nodesByIndex.get(index);
+					if (sameIndex == null) {
+						continue;
+					}
+					
+				for (Node interacting_node : sameIndex) {
 					// check if the node is not the same
 					if (interacting_node.getId().compareTo(e.getId()) != 0) {
 						
-						// check if the node is not a leaf node
-						if (!interacting_node.isLeaf()) {
-							
 							// if the origin is the same and the destination is
 							// different
-							if ((
-									(e.getIdOrigin() == interacting_node.getIdOrigin()) 
-									&
-									(interacting_node.getIdDestination().compareTo(e.getIdDestination()) != 0))
-									// OR is the origin is not the same
-									//|| ((e.getIdOrigin() != interacting_node
-										//	.getIdOrigin()))
-											) {
+							if (interacting_node.getIdDestination().compareTo(e.getIdDestination()) != 0) {
 								
 								
-								//System.out.println("add n?");
-								
-								if (Math.abs(e.getIndex()
-										- interacting_node.getIndex()) < Variables.deltaNeighbourIndex) {
-									
-									
 									if(UpdateTreeStructure.nodesHaveNearIndex(e,interacting_node)){
 									neig.add(interacting_node.getId());
 									//System.out.println("add n");
 									}
 									
-									
-								}
 							}
-
-						}
-						/*
-						else {
-							System.out.println("add lead node as interaction node");
-							neig.add(interacting_node.getId());
-						}
-						*/
 					} 
 				}
+				}
 
 				/*
 				if(neig.size()!=2){
@@ -0,0 +1,149 @@
+package it.graphitech.objects;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Uniform grid over the (lon, lat) positions of a set of nodes, used to find
+ * the nodes that may lie within a given distance in meters of a position.
+ * The grid keeps a snapshot of the positions: it must be rebuilt when the
+ * nodes move.
+ */
+public class SpatialGrid {
+
+	//same earth radius as Position.distFrom (3958.75 miles)
+	static final double METERS_PER_DEGREE = 3958.75 * 1609 * Math.PI / 180;
+	//the grid never has more cells than CELLS_PER_NODE * number of nodes
+	static final int CELLS_PER_NODE = 4;
+
+	private Node[] nodes = new Node[0];
+	private double[] xs = new double[0];
+	private double[] ys = new double[0];
+	private int numNodes;
+
+	private double minX, minY;
+	private double cellWidth, cellHeight;
+	private int cols, rows;
+	//the nodes span the antimeridian: a single column, queried by latitude only
+	private boolean wrapsLongitude;
+	//nodes of cell c are cellNodes[cellStart[c]] .. cellNodes[cellStart[c+1]-1]
+	private int[] cellStart = new int[1];
+	private int[] cellNodes = new int[0];
+
+	private int[] candidates = new int[16];
+
+	/**
+	 * Indexes the given nodes; cellSizeInMeters should be close to the usual
+	 * query radius.
+	 */
+	public void build(Collection<Node> collection, double cellSizeInMeters) {
+		numNodes = collection.size();
+		if (nodes.length < numNodes) {
+			nodes = new Node[numNodes];
+			xs = new double[numNodes];
+			ys = new double[numNodes];
+			cellNodes = new int[numNodes];
+		}
+
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		double maxAbsY = 0;
+		int i = 0;
+		for (Node n : collection) {
+			nodes[i] = n;
+			xs[i] = n.getPosition().getX();
+			ys[i] = n.getPosition().getY();
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+			maxAbsY = Math.max(maxAbsY, Math.abs(ys[i]));
+			i++;
+		}
+		if (numNodes == 0) {
+			cols = rows = 0;
+			return;
+		}
+
+		cellHeight = Math.max(cellSizeInMeters / METERS_PER_DEGREE, 1e-9);
+		cellWidth = cellHeight / Math.max(Math.cos(Math.toRadians(Math.min(maxAbsY, 89))), 0.01);
+		wrapsLongitude = maxX - minX > 180;
+		if (wrapsLongitude) {
+			cellWidth = maxX - minX + 1;
+		}
+		cols = (int) ((maxX - minX) / cellWidth) + 1;
+		rows = (int) ((maxY - minY) / cellHeight) + 1;
+		while ((long) cols * rows > (long) CELLS_PER_NODE * numNodes) {
+			cellWidth *= 2;
+			cellHeight *= 2;
+			cols = (int) ((maxX - minX) / cellWidth) + 1;
+			rows = (int) ((maxY - minY) / cellHeight) + 1;
+		}
+
+		int numCells = cols * rows;
+		if (cellStart.length < numCells + 1) {
+			cellStart = new int[numCells + 1];
+		} else {
+			Arrays.fill(cellStart, 0, numCells + 1, 0);
+		}
+		for (i = 0; i < numNodes; i++) {
+			cellStart[cellOf(xs[i], ys[i]) + 1]++;
+		}
+		for (int c = 0; c < numCells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] next = Arrays.copyOf(cellStart, numCells);
+		for (i = 0; i < numNodes; i++) {
+			cellNodes[next[cellOf(xs[i], ys[i])]++] = i;
+		}
+	}
+
+	private int cellOf(double x, double y) {
+		int col = Math.min((int) ((x - minX) / cellWidth), cols - 1);
+		int row = Math.min((int) ((y - minY) / cellHeight), rows - 1);
+		return row * cols + col;
+	}
+
+	/**
+	 * Collects the nodes of the cells within radiusInMeters of p. Returns their
+	 * number; the candidates are in the order of the indexed collection.
+	 */
+	public int query(Position p, double radiusInMeters) {
+		if (numNodes == 0) {
+			return 0;
+		}
+		double dy = radiusInMeters / METERS_PER_DEGREE;
+		double maxLat = Math.min(Math.abs(p.getY()) + dy, 89);
+		double dx = dy / Math.max(Math.cos(Math.toRadians(maxLat)), 0.01);
+
+		int col0 = Math.max((int) Math.floor((p.getX() - dx - minX) / cellWidth), 0);
+		int col1 = Math.min((int) Math.floor((p.getX() + dx - minX) / cellWidth), cols - 1);
+		if (wrapsLongitude) {
+			col0 = 0;
+			col1 = cols - 1;
+		}
+		int row0 = Math.max((int) Math.floor((p.getY() - dy - minY) / cellHeight), 0);
+		int row1 = Math.min((int) Math.floor((p.getY() + dy - minY) / cellHeight), rows - 1);
+
+		int count = 0;
+		for (int row = row0; row <= row1; row++) {
+			for (int col = col0; col <= col1; col++) {
+				int c = row * cols + col;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					if (count == candidates.length) {
+						candidates = Arrays.copyOf(candidates, count * 2);
+					}
+					candidates[count++] = cellNodes[k];
+				}
+			}
+		}
+		Arrays.sort(candidates, 0, count);
+		return count;
+	}
+
+	public Node getCandidate(int i) {
+		return nodes[candidates[i]];
+	}
+}
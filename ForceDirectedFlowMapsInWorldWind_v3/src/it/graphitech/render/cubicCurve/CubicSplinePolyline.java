@@ -27,7 +27,7 @@ import javax.media.opengl.GL2;
 
 import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureIO;
-import com.sun.prism.impl.BufferUtil;
+import com.jogamp.common.nio.Buffers;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -762,7 +762,7 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable, Order
         int size = 2 * (texCoordCount + (closeIt ? 1 : 0));
         if (this.textureCoordsBuffer == null || this.textureCoordsBuffer.capacity() < size)
         {
-            this.textureCoordsBuffer = BufferUtil.newFloatBuffer(size);
+            this.textureCoordsBuffer = Buffers.newDirectFloatBuffer(size);
         }
         else
         {
@@ -948,7 +948,7 @@ public class CubicSplinePolyline extends AVListImpl implements Renderable, Order
     protected void drawOrderedRenderable(DrawContext dc)
     {
         GL2 gl = dc.getGL().getGL2();
-IntBuffer range  = BufferUtil.newIntBuffer(2);
+IntBuffer range  = Buffers.newDirectIntBuffer(2);
         //GLint range[2];
         gl.glGetIntegerv(GL.GL_ALIASED_LINE_WIDTH_RANGE, range);
         gl.glGetIntegerv(GL.GL_SMOOTH_LINE_WIDTH_RANGE, range);
@@ -0,0 +1,68 @@
+package it.graphitech.lifeimagine.wps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+import it.graphitech.lifeimagine.wps.otherClasses.SerialSimpleFeature;
+
+/**
+ * Land cover change flow matrix of SoilConsumption3. It only needs JTS, so the
+ * benchmarks can build it without GeoTools.
+ */
+class AreaMatrix {
+
+	/**
+	 * Builds the land cover change flow matrix: for every class of the start year
+	 * and every class of the end year, the total area of the features that changed
+	 * from the first to the second.
+	 */
+	static HashMap<String, HashMap<String, Number>> buildAreaMatrix(SerialSimpleFeature[] landFeature) {
+		//create a list with the classes from both years
+		Set<String> classSet = new HashSet<String>();
+		for(SerialSimpleFeature feature : landFeature){
+			String cl1 = feature.getClass1();
+			classSet.add(cl1.substring(cl1.lastIndexOf("/") + 1));
+			String cl2 = feature.getClass2();
+			classSet.add(cl2.substring(cl2.lastIndexOf("/") + 1));
+		}
+		
+		List<String> classList = new ArrayList<String>(classSet);
+		Collections.sort(classList);
+		
+		//initialize matrix containing the land cover flow data, all values set to 0
+		HashMap<String, HashMap<String, Number>> lccfMatrix = new HashMap<String, HashMap<String, Number>>();
+		for (String c : classList) {
+			HashMap<String, Number> map = new HashMap<String, Number>();
+			for (String cc : classList) {
+				map.put(cc, 0);
+			}
+			lccfMatrix.put(c, map);
+		}
+		
+		//fill the matrix with values from land use data
+		//SimpleFeatureIterator iterator = landFeature.features();
+		for(SerialSimpleFeature feature : landFeature){
+				//SerialSimpleFeature feature = iterator.next();
+				String sYear = feature.getClass1().substring(feature.getClass1().lastIndexOf("/") + 1);
+				String eYear = feature.getClass2().substring(feature.getClass2().lastIndexOf("/") + 1);
+				if (!sYear.isEmpty() && !eYear.isEmpty()) {
+					HashMap<String, Number> map = lccfMatrix.get(sYear);
+					//take the saved value in the matrix and add the new one
+					Number savedValue = (Number) map.get(eYear);
+					Geometry geom = (Geometry) feature.getGeom();
+					Number newValue = geom.getArea();
+					float areaValue = savedValue.floatValue() + newValue.floatValue();
+					map.put(eYear, areaValue);
+					lccfMatrix.put(sYear, map);
+				}
+			}
+		
+		return lccfMatrix;
+	}
+}
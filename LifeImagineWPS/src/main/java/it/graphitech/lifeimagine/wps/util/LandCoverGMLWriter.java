@@ -0,0 +1,163 @@
+package it.graphitech.lifeimagine.wps.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Writes an INSPIRE land cover dataset in GML one unit at a time, so that the
+ * memory used does not depend on the number of features.
+ */
+public class LandCoverGMLWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer write;
+
+	public LandCoverGMLWriter(OutputStream out) throws IOException {
+		this.write = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), BUFFER_SIZE);
+	}
+
+	private void println(String s) throws IOException {
+		write.write(s);
+		write.write(System.getProperty("line.separator"));
+	}
+
+	/**
+	 * Opens the feature collection and writes the dataset description.
+	 */
+	public void writeHeader(
+			String insert_GML_ID,String insert_LCD_ID, String insert_dataset_name,
+			String insertLocalID, String insertNameSpaceValue, String insert_codelist_URL,
+			String insert_DC_ID, String insert_document_name, String insertDateTime,
+			String insert_document_date_type, String insert_document_link) throws IOException {
+		println("<?xml version=\"1.0\"?>");
+		println("<gml:FeatureCollection gml:id=\""+insert_GML_ID+"\"" );
+		println("xmlns:base=\"http://inspire.ec.europa.eu/schemas/base/3.3\"");
+		println("xmlns:base2=\"http://inspire.ec.europa.eu/schemas/base2/2.0\"");
+		println("xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+		println("xmlns:lcv=\"http://inspire.ec.europa.eu/schemas/lcv/4.0\"");
+		println("xmlns:gmd=\"http://www.isotc211.org/2005/gmd\" xmlns:gco=\"http://www.isotc211.org/2005/gco\"");
+		println("xmlns:gml=\"http://www.opengis.net/gml/3.2\"");
+		println("xmlns:lcn=\"http://inspire.ec.europa.eu/schemas/lcn/4.0\"");
+		println("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+		println("xsi:schemaLocation=\"http://inspire.ec.europa.eu/schemas/lcv/4.0 http://inspire.ec.europa.eu/schemas/lcv/4.0/LandCoverVector.xsd\">");
+		println("<gml:featureMember>");
+		println("<lcv:LandCoverDataset gml:id=\""+insert_LCD_ID+"\">");
+		println("<lcv:inspireId>");
+		println("<base:Identifier>");
+		println("<base:localId>\""+insert_LCD_ID+"\"</base:localId>");
+		println("<base:namespace/>");
+		println("</base:Identifier>");
+		println("</lcv:inspireId>");
+		println("<lcv:beginLifespanVersion xsi:nil=\"true\" nilReason=\"unknown\"/>");
+		println("<lcv:extent/>");
+		println("<lcv:name>\""+insert_dataset_name+"\"</lcv:name>");
+		println("<lcv:nomenclatureDocumentation>");
+		println("<lcn:LandCoverNomenclature>");
+		println("<lcn:inspireId>");
+		println("<base:Identifier>");
+		println("<base:localId>\""+insertLocalID+"\"</base:localId>");
+		println("<base:namespace>\""+insertNameSpaceValue+"\"</base:namespace>");
+		println("</base:Identifier>");
+		println("</lcn:inspireId>");
+		println("<lcn:nomenclatureCodeList>"+insert_codelist_URL+"</lcn:nomenclatureCodeList>");
+		println("<lcn:externalDescription>");
+		println(	"<base2:DocumentCitation gml:id=\""+insert_DC_ID+"\">");
+		println(	"<base2:name>\""+insert_document_name+"\"</base2:name>");
+		println(	"<base2:date>");
+		println(	"<gmd:CI_Date>");
+		println(	"<gmd:date>");
+		println(	"<gco:DateTime>"+insertDateTime+"</gco:DateTime>");
+		println(	"</gmd:date>");
+		println(	"<gmd:dateType>");
+		println(	"<gmd:CI_DateTypeCode");
+		println(	"codeListValue=\""+insert_document_date_type+"\"");
+		println(	"codeList=\"http://www.isotc211.org/2005/resources/Codelist/gmxCodelists.xml\"");
+		println(	"/>");
+		println(	"</gmd:dateType>");
+		println(	"</gmd:CI_Date>");
+		println(	"</base2:date>");
+		println(	"<base2:link>"+insert_document_link+"</base2:link>");
+		println(	"</base2:DocumentCitation>");
+		println("</lcn:externalDescription>");
+		println("<lcn:responsibleParty>");
+		println(	"<base2:RelatedParty/>");
+		println("</lcn:responsibleParty>");
+		println("</lcn:LandCoverNomenclature>");
+		println("</lcv:nomenclatureDocumentation>");
+		println("<lcv:validFrom xsi:nil=\"true\" nilReason=\"unknown\"/>");
+		println("<lcv:validTo xsi:nil=\"true\" nilReason=\"unknown\"/>");
+	}
+
+	/**
+	 * Writes a land cover unit, one line per unit. The coordinates of the
+	 * polygon are written directly, without building the whole position list.
+	 */
+	public void writeUnit(String id, Geometry g, int projCode, Integer className) throws IOException {
+		write.write("<lcv:member>");
+		write.write("<lcv:LandCoverUnit gml:id=\"lcuID_");
+		write.write(id);
+		write.write("\">");
+		write.write("<lcv:inspireId>");
+		write.write("<base:Identifier>");
+		write.write("<base:localId>");
+		write.write(id);
+		write.write("</base:localId>");
+		write.write("<base:namespace/>");
+		write.write("</base:Identifier>");
+		write.write("</lcv:inspireId>");
+		write.write("<lcv:beginLifespanVersion xsi:nil=\"true\" nilReason=\"unknown\"/>");
+		write.write("<lcv:geometry>");
+		write.write("<gml:Polygon gml:id=\"");
+		write.write(id);
+		write.write("\" srsDimension=\"2\" srsName=\"urn:ogc:def:crs:EPSG::");
+		write.write(String.valueOf(projCode));
+		write.write("\">");
+		write.write("<gml:exterior>");
+		write.write("<gml:LinearRing>");
+		write.write("<gml:posList>");
+		for (Coordinate c : g.getCoordinates()) {
+			write.write(String.valueOf(c.x));
+			write.write(' ');
+			write.write(String.valueOf(c.y));
+			write.write(' ');
+		}
+		write.write("</gml:posList>");
+		write.write("</gml:LinearRing>");
+		write.write("</gml:exterior>");
+		write.write("</gml:Polygon>");
+		write.write("</lcv:geometry>");
+		write.write("<lcv:landCoverObservation>");
+		write.write("<lcv:LandCoverObservation>");
+		write.write("<lcv:class xlink:href=\"http://inspire.ec.europa.eu/codelist/LandCoverClassValue/lcf");
+		write.write(String.valueOf(className));
+		write.write("\" xlink:title=\"");
+		write.write(String.valueOf(className));
+		write.write("\"/>");
+		write.write("<lcv:mosaic xsi:nil=\"true\" nilReason=\"unknown\"/>");
+		write.write("<lcv:observationDate  xsi:nil=\"true\" nilReason=\"unknown\"/>");
+		write.write("</lcv:LandCoverObservation>");
+		write.write("</lcv:landCoverObservation>");
+		write.write("</lcv:LandCoverUnit>");
+		println("</lcv:member>");
+	}
+
+	/**
+	 * Closes the dataset and the feature collection.
+	 */
+	public void writeFooter() throws IOException {
+		println("</lcv:LandCoverDataset>"+
+				"</gml:featureMember>"+
+				"</gml:FeatureCollection>");
+	}
+
+	public void close() throws IOException {
+		write.close();
+	}
+}
@@ -0,0 +1,76 @@
+package it.graphitech.lifeimagine.wps.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+public class LegendCache {
+
+	private static class Entry {
+		long lastModified;
+		long length;
+		HashMap<String, HashMap<String, Number>> matrix;
+	}
+
+	private static final HashMap<String, Entry> cache = new HashMap<String, Entry>();
+
+	/**
+	 * Legend matrix of a csv file separated by ';': the first line holds the
+	 * classes of the end year, every other line a class of the start year
+	 * followed by the values of the legend. The matrix is read once per process
+	 * and read again only when the file is modified; callers must not change it.
+	 *
+	 * @param path			Path of the legend file.
+	 *
+	 * @return Legend matrix, start class -> end class -> value.
+	 *
+	 */
+	public static synchronized HashMap<String, HashMap<String, Number>> get(String path) throws IOException {
+		File file = new File(path);
+		long lastModified = file.lastModified();
+		long length = file.length();
+
+		Entry entry = cache.get(path);
+		if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+			return entry.matrix;
+		}
+
+		entry = new Entry();
+		entry.lastModified = lastModified;
+		entry.length = length;
+		entry.matrix = read(file);
+		cache.put(path, entry);
+		return entry.matrix;
+	}
+
+	public static synchronized void invalidate(String path) {
+		cache.remove(path);
+	}
+
+	private static HashMap<String, HashMap<String, Number>> read(File file) throws IOException {
+		HashMap<String, HashMap<String, Number>> legendMatrix = new HashMap<String, HashMap<String, Number>>();
+		CSVReader reader = new CSVReader(new FileReader(file), ';');
+		try {
+			//get header, then one row at a time
+			String[] header = reader.readNext();
+			if (header == null) {
+				return legendMatrix;
+			}
+			String[] s;
+			while ((s = reader.readNext()) != null) {
+				HashMap<String, Number> row = new HashMap<String, Number>();
+				for (int i = 1; i < header.length; i++) {
+					row.put(header[i], Integer.valueOf(s[i]));
+				}
+				legendMatrix.put(s[0], row);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return legendMatrix;
+	}
+}
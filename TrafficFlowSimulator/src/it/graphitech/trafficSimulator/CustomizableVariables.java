@@ -25,10 +25,13 @@ public class CustomizableVariables {
 	public static int carFrequency = 10;//in millisec.
 	public static int carSpeed = 400;
 public static int numMaxCars=300;
+	public static long randomSeed = 1; // Seed of the random choices, the same seed gives the same run
+	public static double simulationSpeed = 1; // Simulated time per wall-clock time, 0 for as fast as possible
 	/**
 	 * variables related to the roads
 	 */
 	public static int PER_CAR_PENALTY = 80; // Penalty for each car in a segment
+	public static double REPLAN_THRESHOLD = 0.25; // Growth of the weight of a route that makes the cars plan it again
 	public static int max_cars_per_path = 10;
 
 	/**
@@ -92,7 +95,7 @@ public static int numMaxCars=300;
 				"PASSABLECARS","carFrequency","carSpeed",
 				"PER_CAR_PENALTY","max_cars_per_path",
 				"numCarsPerParkingLot","minHue","maxHue","wfsServer",
-				"typeName","fileBuilding","fileRoads","fileOutputSimulation","KML_TRENTO_DATA","RENDERALTITUDE","maxcar"};
+				"typeName","fileBuilding","fileRoads","fileOutputSimulation","KML_TRENTO_DATA","RENDERALTITUDE","maxcar","REPLAN_THRESHOLD","randomSeed","simulationSpeed"};
 		int i =0;
 		for(String var : variables){
 			startTag="<"+var+">";
@@ -174,6 +177,12 @@ public static int numMaxCars=300;
 																							RENDERALTITUDE=Integer.valueOf(val);
 																						}else if(i==21){
 																							numMaxCars=Integer.valueOf(val);
+																						}else if(i==22){
+																							REPLAN_THRESHOLD=Double.valueOf(val);
+																						}else if(i==23){
+																							randomSeed=Long.valueOf(val);
+																						}else if(i==24){
+																							simulationSpeed=Double.valueOf(val);
 																						}
 	
 }
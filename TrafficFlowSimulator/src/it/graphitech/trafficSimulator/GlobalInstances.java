@@ -4,6 +4,9 @@ import it.graphitech.trafficSimulator.renderableManager.Renderizer;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
 import gov.nasa.worldwindx.examples.ApplicationTemplate;
 import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+
+import java.util.Random;
 
 /**
  * 
@@ -17,6 +20,8 @@ public class GlobalInstances {
 	private static WorldWindowGLCanvas wwd = null; // World Wind Canvas
 	private static ApplicationTemplate appTemp = null; // Application reference
 	private static Renderizer renderizer = null; // Renderizer
+	private static Random random = null; // Random numbers of the simulation
+	private static final Object simulationLock = new Object();
 
 	public static void setGlobe(Globe g) {
 		globe = g;
@@ -49,4 +54,46 @@ public class GlobalInstances {
 	public static Renderizer getRenderizer() {
 		return renderizer;
 	}
+
+	/**
+	 * Adds a layer to the World Wind model. Nothing is done when the
+	 * simulation runs without a World Wind canvas
+	 * 
+	 * @param layer
+	 */
+	public static void addLayer(Layer layer) {
+		if (wwd != null) {
+			wwd.getModel().getLayers().add(layer);
+		}
+	}
+
+	/**
+	 * The generator of all the random choices of the simulation, seeded with
+	 * CustomizableVariables.randomSeed so that runs can be repeated
+	 * 
+	 * @return the random generator
+	 */
+	public static Random getRandom() {
+		if (random == null) {
+			random = new Random(CustomizableVariables.randomSeed);
+		}
+		return random;
+	}
+
+	/**
+	 * Restarts the random choices of the simulation from a seed
+	 * 
+	 * @param seed
+	 */
+	public static void setRandomSeed(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * 
+	 * @return the lock held by the simulation thread during every step
+	 */
+	public static Object getSimulationLock() {
+		return simulationLock;
+	}
 }
@@ -37,7 +37,8 @@ import org.xml.sax.InputSource;
 public class DataLayer {
 
 	/**
-	 * generate a getFeature request to a wfs service
+	 * generate a getFeature request to a wfs service. The request is sent
+	 * without the simulation lock, which is taken only to add the emitters
 	 * 
 	 * @param positions
 	 * @param emitterManager
@@ -126,7 +127,9 @@ System.out.println(data);
 			System.out.println(soft);
 			Document doc = db.parse(new InputSource(new StringReader(soft)));
 
-			addEmitters(doc, emitterManager, streetGraph, paths);
+			synchronized (GlobalInstances.getSimulationLock()) {
+				addEmitters(doc, emitterManager, streetGraph, paths);
+			}
 
 		} catch (Exception io) {
 			System.out.println(io.getMessage());
@@ -0,0 +1,105 @@
+package it.graphitech.trafficSimulator;
+
+import it.graphitech.trafficSimulator.TrafficSim.AppFrame;
+import it.graphitech.trafficSimulator.core.CarManager;
+import it.graphitech.trafficSimulator.core.EmitterManager;
+
+/**
+ * Thread advancing the simulation with a fixed timestep of updateRate
+ * simulated milliseconds, independently of the Swing and OpenGL thread. After
+ * every step the positions of the cars are published in a CarSnapshot, which
+ * the renderer draws at its own pace.
+ * 
+ * The simulated time runs simulationSpeed times as fast as the wall clock, or
+ * as fast as possible if simulationSpeed is 0. After a stall the missed steps
+ * are run at once, up to MAX_CATCH_UP_STEPS of them.
+ * 
+ * Code changing the cars, the emitters or the road network from another
+ * thread must synchronize on GlobalInstances.getSimulationLock().
+ * 
+ */
+public class SimulationThread extends Thread {
+
+	// Beyond this number the missed steps are dropped
+	static final int MAX_CATCH_UP_STEPS = 10;
+
+	private CarManager carManager;
+	private EmitterManager emitterManager;
+	private AppFrame appFrame;
+
+	private long time = 0; // Simulated time in milliseconds
+	private volatile boolean running = true;
+
+	/**
+	 * 
+	 * @param carManager
+	 * @param emitterManager
+	 * @param appFrame
+	 *            the frame redrawn after every step, null for none
+	 */
+	public SimulationThread(CarManager carManager,
+			EmitterManager emitterManager, AppFrame appFrame) {
+		super("Simulation");
+		this.carManager = carManager;
+		this.emitterManager = emitterManager;
+		this.appFrame = appFrame;
+		this.setDaemon(true);
+	}
+
+	/**
+	 * Advances the simulation by one timestep and publishes the positions of
+	 * the cars
+	 */
+	public void step() {
+		long timeStep = CustomizableVariables.updateRate;
+		synchronized (GlobalInstances.getSimulationLock()) {
+			time += timeStep;
+			emitterManager.manageEmitters(time);
+			carManager.step(timeStep);
+			carManager.publishSnapshot(time);
+		}
+	}
+
+	public void run() {
+		long nextStep = System.nanoTime();
+		while (running) {
+			step();
+			if (appFrame != null) {
+				appFrame.getWwd().redraw();
+			}
+
+			double speed = CustomizableVariables.simulationSpeed;
+			if (speed <= 0) {
+				continue;
+			}
+			long stepNanos = (long) (CustomizableVariables.updateRate * 1000000L / speed);
+			nextStep += stepNanos;
+			long wait = nextStep - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			} else if (-wait > MAX_CATCH_UP_STEPS * stepNanos) {
+				nextStep = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the simulated time in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Stops the thread after the current step
+	 */
+	public void shutdown() {
+		running = false;
+	}
+
+}
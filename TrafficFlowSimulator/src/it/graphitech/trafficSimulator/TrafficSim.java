@@ -102,7 +102,7 @@ public class TrafficSim extends ApplicationTemplate {
 			parkingAreaManager = new ParkingAreaManager();
 
 			// Start the update thread
-			new WorkerThread(carManager, emitterManager, this).start();
+			new SimulationThread(carManager, emitterManager, this).start();
 
 			File file = new File(CustomizableVariables.fileBuilding);
 			Thread t = new it.graphitech.trafficSimulator.importShapes.buildings.BuildingWorkerThread(
@@ -118,7 +118,7 @@ public class TrafficSim extends ApplicationTemplate {
 			AreaManager.initArrowsLayer(getWwd(), this);
 
 			StreetsAnalysisManager.updateStreetAnalysisLayer(streetGraph
-					.getSegmentMap());
+					.getRoadNetwork());
 
 			this.getLayerPanel().update(this.getWwd());
 
@@ -0,0 +1,290 @@
+package it.graphitech.trafficSimulator;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.globes.Earth;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.ogc.kml.KMLPlacemark;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+import it.graphitech.trafficSimulator.TrafficSim.AppFrame;
+import it.graphitech.trafficSimulator.core.CarManager;
+import it.graphitech.trafficSimulator.core.EmitterManager;
+import it.graphitech.trafficSimulator.core.ParkingAreaManager;
+import it.graphitech.trafficSimulator.entities.RoadNetwork;
+import it.graphitech.trafficSimulator.entities.RoutePlanner;
+import it.graphitech.trafficSimulator.entities.SegmentInfo;
+import it.graphitech.trafficSimulator.importShapes.KMLPlacemarkImporter;
+import it.graphitech.trafficSimulator.renderable.PathExtArea;
+import it.graphitech.trafficSimulator.renderable.emitter.Emitter;
+import it.graphitech.trafficSimulator.renderableManager.GraphManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a traffic simulation without a World Wind canvas nor an OpenGL context,
+ * as fast as possible, and writes the results in two CSV files:
+ * segments.csv with the cars counted in every segment of the street graph
+ * and summary.csv with the simulation steps per second.
+ *
+ * The variables are read from CustomVariables.txt as in TrafficSim. The
+ * scenario file lists the street graph and the emitters and parking areas,
+ * one per line:
+ *
+ * <pre>
+ * &lt;roads&gt;sim_data/Roads_Geo_WGS84.KML&lt;/roads&gt;
+ * &lt;parking&gt;latitude longitude&lt;/parking&gt;
+ * &lt;emitter&gt;latitude longitude [goal latitude goal longitude]&lt;/emitter&gt;
+ * </pre>
+ *
+ * Emitters and parking areas are placed on the nearest segment of the street
+ * graph. Cars of an emitter without goal wander randomly.
+ *
+ * Usage: TrafficSimBatch scenario minutes outputDirectory
+ *
+ */
+public class TrafficSimBatch {
+
+	private String roads; // KML file or URL of the street graph
+	private List<double[]> parkings = new ArrayList<double[]>();
+	private List<double[]> emitters = new ArrayList<double[]>();
+
+	private CarManager carManager;
+	private EmitterManager emitterManager;
+
+	private long steps = 0; // Simulation steps run
+	private long wallTime = 0; // Time spent running them in milliseconds
+
+	/**
+	 * Reads the scenario file
+	 *
+	 * @param scenario
+	 * @throws IOException
+	 */
+	public void readScenario(File scenario) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(scenario));
+		try {
+			String s;
+			while ((s = reader.readLine()) != null) {
+				String val = getValue(s, "roads");
+				if (val != null) {
+					roads = val;
+				}
+				val = getValue(s, "parking");
+				if (val != null) {
+					parkings.add(parseDegrees(val));
+				}
+				val = getValue(s, "emitter");
+				if (val != null) {
+					emitters.add(parseDegrees(val));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (roads == null) {
+			throw new IOException("No <roads> in " + scenario);
+		}
+	}
+
+	/**
+	 *
+	 * @param line
+	 * @param tag
+	 * @return the value of the tag in the line, null if the tag is not there
+	 */
+	private static String getValue(String line, String tag) {
+		String startTag = "<" + tag + ">";
+		int startIndex = line.indexOf(startTag);
+		int endIndex = line.indexOf("</" + tag + ">");
+		if (startIndex == -1 || endIndex == -1) {
+			return null;
+		}
+		return line.substring(startIndex + startTag.length(), endIndex).trim();
+	}
+
+	/**
+	 *
+	 * @param val
+	 *            degrees separated by spaces
+	 * @return the degrees
+	 */
+	private static double[] parseDegrees(String val) {
+		String[] tokens = val.split("\\s+");
+		double[] degrees = new double[tokens.length];
+		for (int i = 0; i < tokens.length; ++i) {
+			degrees[i] = Double.valueOf(tokens[i]);
+		}
+		return degrees;
+	}
+
+	/**
+	 * Builds the street graph and places the parking areas and the emitters of
+	 * the scenario
+	 *
+	 * @throws IOException
+	 */
+	public void setUp() throws IOException {
+		String url = roads;
+		if (new File(roads).exists()) {
+			url = new File(roads).toURI().toURL().toString();
+		}
+		KMLPlacemarkImporter kmlImporter = new KMLPlacemarkImporter();
+		kmlImporter.setKMLFilePath(url);
+		kmlImporter.parseKMLFile();
+		List<KMLPlacemark> placemarks = kmlImporter.getPlacemarks();
+
+		TrafficSim.streetGraph = new GraphManager(placemarks);
+		GraphManager streetGraph = TrafficSim.streetGraph;
+
+		carManager = new CarManager();
+		emitterManager = new EmitterManager(carManager);
+		AppFrame.carManager = carManager;
+		AppFrame.emitterManager = emitterManager;
+		AppFrame.parkingAreaManager = new ParkingAreaManager();
+
+		for (double[] parking : parkings) {
+			Position pos = Position.fromDegrees(parking[0], parking[1]);
+			ParkingAreaManager.addParkingArea(pos,
+					streetGraph.getNearestPath(pos), streetGraph);
+		}
+
+		for (double[] emitter : emitters) {
+			Position pos = Position.fromDegrees(emitter[0], emitter[1]);
+			PathExtArea path = streetGraph.getNearestPath(pos);
+			Emitter e = new Emitter(pos,
+					streetGraph.getNearestPositionPairFromPathPoint(path, pos));
+			e.setOneway(path.isOneway());
+
+			if (emitter.length >= 4) {
+				Position goalPos = Position.fromDegrees(emitter[2], emitter[3]);
+				Position goal = new Position(goalPos.getLatitude(),
+						goalPos.getLongitude(),
+						CustomizableVariables.RENDERALTITUDE);
+				Position[] nearDest = streetGraph
+						.getNearestPositionPairFromPathPoint(
+								streetGraph.getNearestPath(goalPos), goalPos);
+				streetGraph.addNodeInSegment(nearDest[0], nearDest[1], goal);
+				e.setGoalDestination(goal);
+			}
+
+			emitterManager.addEmitters(e);
+			e.enable();
+		}
+		emitterManager.shuffle();
+	}
+
+	/**
+	 * Runs the simulation
+	 *
+	 * @param minutes
+	 *            the simulated time
+	 */
+	public void run(double minutes) {
+		SimulationThread simulation = new SimulationThread(carManager,
+				emitterManager, null);
+		long totalSteps = (long) (minutes * 60000 / CustomizableVariables.updateRate);
+
+		long start = System.currentTimeMillis();
+		for (steps = 0; steps < totalSteps; ++steps) {
+			simulation.step();
+		}
+		wallTime = System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Writes segments.csv and summary.csv
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public void writeResults(File directory) throws IOException {
+		directory.mkdirs();
+
+		RoadNetwork network = TrafficSim.streetGraph.getRoadNetwork();
+		PrintWriter out = new PrintWriter(new FileWriter(new File(directory,
+				"segments.csv")));
+		try {
+			out.println("edge,path_id,path_name,from_lat,from_lon,to_lat,to_lon,length,cars,total_cars");
+			for (int e = 0; e < network.getNumEdges(); ++e) {
+				SegmentInfo info = network.getSegmentInfo(e);
+				int from = network.getSource(e);
+				int to = network.getTarget(e);
+				out.println(e + "," + csv(info.path.getId()) + ","
+						+ csv(info.path.getName()) + ","
+						+ network.getLatitude(from) + ","
+						+ network.getLongitude(from) + ","
+						+ network.getLatitude(to) + ","
+						+ network.getLongitude(to) + ","
+						+ network.getLength(e) + "," + network.getCars(e)
+						+ "," + network.getTotalCars(e));
+			}
+		} finally {
+			out.close();
+		}
+
+		RoutePlanner planner = TrafficSim.streetGraph.getRoutePlanner();
+		double seconds = wallTime / 1000.0;
+		out = new PrintWriter(new FileWriter(new File(directory, "summary.csv")));
+		try {
+			out.println("steps,simulated_s,wall_s,steps_per_s,cars,route_searches,route_cache_hits");
+			out.println(steps + "," + steps * CustomizableVariables.updateRate
+					/ 1000.0 + "," + seconds + ","
+					+ (seconds > 0 ? steps / seconds : 0) + ","
+					+ carManager.getNumCars() + ","
+					+ planner.getNumSearches() + ","
+					+ planner.getNumCacheHits());
+		} finally {
+			out.close();
+		}
+
+		System.out.println(steps + " steps in " + seconds + " s, "
+				+ (seconds > 0 ? steps / seconds : 0) + " steps/s");
+	}
+
+	/**
+	 *
+	 * @param s
+	 * @return the string quoted for a CSV field
+	 */
+	private static String csv(String s) {
+		if (s == null) {
+			return "";
+		}
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            scenario file, simulated minutes, output directory
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err
+					.println("Usage: TrafficSimBatch scenario minutes outputDirectory");
+			System.exit(1);
+		}
+
+		CustomizableVariables.openFile("CustomVariables.txt");
+
+		// No canvas: a globe without elevations for the positions of the cars
+		GlobalInstances.setGlobe(new EllipsoidalGlobe(
+				Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS,
+				Earth.WGS84_ES, new ZeroElevationModel()));
+		GlobalInstances.setRandomSeed(CustomizableVariables.randomSeed);
+
+		TrafficSimBatch batch = new TrafficSimBatch();
+		batch.readScenario(new File(args[0]));
+		batch.setUp();
+		batch.run(Double.valueOf(args[1]));
+		batch.writeResults(new File(args[2]));
+	}
+}
@@ -9,10 +9,10 @@ import it.graphitech.trafficSimulator.GlobalInstances;
 import it.graphitech.trafficSimulator.TrafficSim;
 import it.graphitech.trafficSimulator.TrafficSim.AppFrame;
 import it.graphitech.trafficSimulator.renderable.car.Car;
+import it.graphitech.trafficSimulator.renderable.car.CarSnapshot;
 import it.graphitech.trafficSimulator.renderable.car.CarWithStatus;
 import it.graphitech.trafficSimulator.renderableManager.AreaManager;
 import it.graphitech.trafficSimulator.renderableManager.GraphManager;
-import it.graphitech.trafficSimulator.renderableManager.Renderizer;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -24,8 +24,8 @@ public class CarManager {
 	private List<Car> cars; // list of cars
 	private boolean dieOnDeadEnd; // Parameter for removing cars in two-way
 									// dead-end
-	private long lastTime; // Last time of render() invocation
 	private Globe g; // World Wind globe
+	private volatile CarSnapshot snapshot; // Cars after the last step
 
 	/**
 	 * CarManager constructor
@@ -35,7 +35,7 @@ public class CarManager {
 	public CarManager() {
 		this.cars = new ArrayList<Car>();
 		this.dieOnDeadEnd = false;
-		this.lastTime = System.currentTimeMillis();
+		this.snapshot = new CarSnapshot(0, cars, null);
 
 		this.g = GlobalInstances.getGlobe();
 	}
@@ -51,7 +51,6 @@ public class CarManager {
 		this.cars.add(car);
 		this.getStreetGraph().addNewCarToSegment(car, car.getOrigin(),
 				car.getDestination());
-		GlobalInstances.getRenderizer().renderCar(car);
 
 	}
 
@@ -62,7 +61,6 @@ public class CarManager {
 	 */
 	private void removeCar(Car car) {
 		this.cars.remove(car);
-		GlobalInstances.getRenderizer().unrenderCar(car);
 	}
 
 	/**
@@ -70,6 +68,31 @@ public class CarManager {
 	 */
 	public void reset() {
 		this.cars = new ArrayList<Car>();
+		publishSnapshot(snapshot.getTime());
+	}
+
+	/**
+	 * Publishes the current positions of the cars and the cars counted in the
+	 * segments for the renderer
+	 * 
+	 * @param time
+	 *            the simulated time in milliseconds
+	 */
+	public void publishSnapshot(long time) {
+		GraphManager streetGraph = getStreetGraph();
+		this.snapshot = new CarSnapshot(time, cars,
+				streetGraph != null ? streetGraph.getRoadNetwork() : null);
+		if (GlobalInstances.getRenderizer() != null) {
+			GlobalInstances.getRenderizer().publishCars(snapshot);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the cars as they were after the last step
+	 */
+	public CarSnapshot getSnapshot() {
+		return this.snapshot;
 	}
 
 	/**
@@ -98,7 +121,7 @@ public class CarManager {
 	 */
 	public Position chooseDestination(Position origin, Position lastVisited) {
 		List<Position> positions = getStreetGraph().reachableFrom(origin);
-		Collections.shuffle(positions);
+		Collections.shuffle(positions, GlobalInstances.getRandom());
 		Iterator<Position> i = positions.iterator();
 		Position result = null;
 		while (i.hasNext()) {
@@ -123,7 +146,7 @@ public class CarManager {
 		List<Position> positions = getStreetGraph().reachableFrom(origin);
 		// List<Position> positions =
 		// getStreetGraph().reachableJgraphFrom(origin);
-		Collections.shuffle(positions);
+		Collections.shuffle(positions, GlobalInstances.getRandom());
 		Iterator<Position> i = positions.iterator();
 		Position result = null;
 		while (i.hasNext()) {
@@ -142,7 +165,7 @@ public class CarManager {
 		List<Position> positions = getStreetGraph().reachableFrom(origin);
 		// List<Position> positions =
 		// getStreetGraph().reachableJgraphFrom(origin);
-		Collections.shuffle(positions);
+		Collections.shuffle(positions, GlobalInstances.getRandom());
 		Iterator<Position> i = positions.iterator();
 		Position result = null;
 		while (i.hasNext()) {
@@ -155,15 +178,14 @@ public class CarManager {
 	}
 
 	/**
-	 * Compute the next node of the best path from origin to destination goal
+	 * Compute the next node of the route of a car towards its destination goal
 	 * 
-	 * @param origin
-	 * @param goal
-	 * @return the next node of the best path
+	 * @param car
+	 * @return the next node of the route
 	 */
-	public Position chooseNextNode(Position origin, Position goal) {
+	public Position chooseNextNode(Car car) {
 		List<Position> positions = getStreetGraph().getNextNodeForDestination(
-				origin, goal);
+				car, car.getPosition(), car.getGoalDestination());
 		if (positions.isEmpty()) {
 			return null;
 		} else {
@@ -199,11 +221,11 @@ public class CarManager {
 
 	/**
 	 * decide the position of all cars
+	 * 
+	 * @param timeDelta
+	 *            the simulated time of the step in milliseconds
 	 */
-	public void render() {
-		long newTime = System.currentTimeMillis();
-		long timeDelta = newTime - this.lastTime;
-		this.lastTime = newTime;
+	public void step(long timeDelta) {
 
 		List<Car> carToRemove = new ArrayList<Car>();
 
@@ -266,11 +288,6 @@ public class CarManager {
 			removeCar(car);
 
 		}
-		
-		
-		
-		
-		Renderizer.updateParkingAreas();
 	}
 
 	/**
@@ -337,8 +354,7 @@ public class CarManager {
 		// Car has not reached the destination. Get the next node of the path
 		else {
 			// System.out.println("CAR HAS NOT REACHED DESTINATION");
-			destination = chooseNextNode(car.getPosition(),
-					car.getGoalDestination());
+			destination = chooseNextNode(car);
 			if (destination != null) {
 				getStreetGraph().updateSegments(car, car.getOrigin(),
 						car.getPosition(), destination);
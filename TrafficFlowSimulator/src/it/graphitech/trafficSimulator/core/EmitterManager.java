@@ -35,8 +35,11 @@ public class EmitterManager {
 	/**
 	 * Asks emitters to generate cars. If an emitter returns a car, it is added
 	 * in the car manager
+	 * 
+	 * @param newTime
+	 *            the simulated time in milliseconds
 	 */
-	public void manageEmitters() {
+	public void manageEmitters(long newTime) {
 		
 	
 		
@@ -45,7 +48,6 @@ public class EmitterManager {
 			
 			if(emitter.isActive()){
 			
-			long newTime = System.currentTimeMillis();
 			long timeDelta = newTime - lastTime;
 			if(carManager.getNumCars()<CustomizableVariables.numMaxCars){
 			
@@ -94,7 +96,9 @@ public class EmitterManager {
 	 *            the emitter to add
 	 */
 	public void addEmitters(Emitter emitter) {
-		GlobalInstances.getRenderizer().renderEmitter(emitter);
+		if (GlobalInstances.getRenderizer() != null) {
+			GlobalInstances.getRenderizer().renderEmitter(emitter);
+		}
 		emitter.setValue(AVKey.DISPLAY_NAME, "Emitter #" + emitterNumber++);
 		emitters.add(emitter);
 		//lastAddedEmitter = emitter;
@@ -128,6 +132,6 @@ public class EmitterManager {
 	}
 	
 	public void shuffle(){
-		Collections.shuffle(emitters);
+		Collections.shuffle(emitters, GlobalInstances.getRandom());
 	}
 }
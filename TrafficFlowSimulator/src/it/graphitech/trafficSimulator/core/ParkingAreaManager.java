@@ -34,7 +34,9 @@ public class ParkingAreaManager {
 	 * adds a parking area to the list
 	 */
 	public void addParkingArea(ParkingArea parkingArea) {
-		GlobalInstances.getRenderizer().renderParkingArea(parkingArea);
+		if (GlobalInstances.getRenderizer() != null) {
+			GlobalInstances.getRenderizer().renderParkingArea(parkingArea);
+		}
 		parkingArea.setValue(AVKey.DISPLAY_NAME, "Parking Area #"
 				+ parkingAreaNumber++);
 		parkingAreas.add(parkingArea);
@@ -51,7 +53,9 @@ public class ParkingAreaManager {
 		parkingArea.disable();
 		parkingAreas.remove(parkingArea);
 
-		GlobalInstances.getRenderizer().unrenderParkingArea(parkingArea);
+		if (GlobalInstances.getRenderizer() != null) {
+			GlobalInstances.getRenderizer().unrenderParkingArea(parkingArea);
+		}
 	}
 
 	/**
@@ -128,7 +132,7 @@ public class ParkingAreaManager {
 	 * @param path
 	 * @param streetGraph
 	 */
-	private static void addParkingArea(Position pos, PathExtArea path,
+	public static void addParkingArea(Position pos, PathExtArea path,
 			GraphManager streetGraph) {
 		Position goal = new Position(pos.getLatitude(), pos.getLongitude(),
 		// Position goal = new Position(lat, lon,
@@ -136,8 +140,7 @@ public class ParkingAreaManager {
 
 		Position[] nearDest = streetGraph.getNearestPositionPairFromPathPoint(
 				path, goal);
-		streetGraph.updateGraph(nearDest[0], nearDest[1], goal, path);
-		streetGraph.addNodeInJGraph(nearDest[0], nearDest[1], goal);
+		streetGraph.addNodeInSegment(nearDest[0], nearDest[1], goal);
 
 		ParkingArea parkingArea = new ParkingArea(goal);
 
@@ -0,0 +1,571 @@
+package it.graphitech.trafficSimulator.entities;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import it.graphitech.trafficSimulator.CustomizableVariables;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compact model of the road network. Nodes are dense integer ids, looked up by
+ * their latitude and longitude through a primitive hash table, and directed
+ * edges are dense integer ids too. The outgoing edges of every node are kept
+ * in CSR form (compressed sparse row): the edges leaving node n are
+ * outEdges[firstOut[n]] .. outEdges[firstOut[n + 1] - 1].
+ *
+ * The state of the edges (length, cars on it, open or closed) is kept in
+ * arrays indexed by the edge id. Edge ids never change: when the network is
+ * modified the new edges are appended and the CSR index is rebuilt, so the
+ * state of the existing edges is preserved.
+ *
+ * Routes are searched with A*. Edge lengths are straight-line distances
+ * between the Cartesian points of their nodes, so the straight-line distance
+ * to the target is a consistent heuristic whatever the traffic.
+ *
+ */
+public class RoadNetwork {
+
+	/** Edge inside a danger area, not used while danger areas are included */
+	static final byte DANGER = 1;
+	/** Edge replaced by the two halves of a split */
+	static final byte REMOVED = 2;
+
+	private int numNodes = 0;
+	private double[] latitudes = new double[256];
+	private double[] longitudes = new double[256];
+	private Position[] positions = new Position[256];
+	// x, y, z of the nodes on the globe
+	private double[] points = new double[256 * 3];
+
+	// Open addressing table of node ids + 1, 0 for empty slots
+	private int[] table = new int[512];
+
+	private int numEdges = 0;
+	private int[] edgeSource = new int[256];
+	private int[] edgeTarget = new int[256];
+	private double[] edgeLength = new double[256];
+	private int[] edgeCars = new int[256];
+	private int[] edgeTotalCars = new int[256];
+	private byte[] edgeFlags = new byte[256];
+	private SegmentInfo[] edgeInfo = new SegmentInfo[256];
+
+	private int[] firstOut = new int[1];
+	private int[] outEdges = new int[0];
+	// Edges added after the last buildAdjacency, by source and target
+	private HashMap<Long, Integer> pendingEdges = new HashMap<Long, Integer>();
+
+	private boolean dangerAreasIncluded = false;
+	// Incremented whenever edges are added, closed or opened
+	private int version = 0;
+
+	/**
+	 * Returns the id of the node at the given coordinates, adding it if it is
+	 * not in the network yet
+	 *
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @param point
+	 *            the Cartesian point of the node on the globe, the one the
+	 *            edge lengths are measured from
+	 * @return the node id
+	 */
+	public int addNode(double latitude, double longitude, Vec4 point) {
+		int node = getNode(latitude, longitude);
+		if (node != -1) {
+			return node;
+		}
+
+		if (numNodes == latitudes.length) {
+			latitudes = Arrays.copyOf(latitudes, numNodes * 2);
+			longitudes = Arrays.copyOf(longitudes, numNodes * 2);
+			positions = Arrays.copyOf(positions, numNodes * 2);
+			points = Arrays.copyOf(points, numNodes * 2 * 3);
+		}
+		node = numNodes++;
+		latitudes[node] = latitude;
+		longitudes[node] = longitude;
+		positions[node] = Position.fromDegrees(latitude, longitude,
+				CustomizableVariables.RENDERALTITUDE);
+		points[node * 3] = point.x;
+		points[node * 3 + 1] = point.y;
+		points[node * 3 + 2] = point.z;
+
+		if (numNodes * 2 > table.length) {
+			rehash(table.length * 2);
+		} else {
+			insert(node);
+		}
+		return node;
+	}
+
+	/**
+	 *
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @return the id of the node at the given coordinates, -1 if there is none
+	 */
+	public int getNode(double latitude, double longitude) {
+		int mask = table.length - 1;
+		for (int slot = hash(latitude, longitude) & mask;; slot = (slot + 1)
+				& mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return -1;
+			}
+			if (latitudes[entry - 1] == latitude
+					&& longitudes[entry - 1] == longitude) {
+				return entry - 1;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param pos
+	 * @return the id of the node at the latitude and longitude of pos, -1 if
+	 *         there is none
+	 */
+	public int getNode(Position pos) {
+		return getNode(pos.getLatitude().degrees, pos.getLongitude().degrees);
+	}
+
+	private static int hash(double latitude, double longitude) {
+		long bits = Double.doubleToLongBits(latitude) * 31
+				+ Double.doubleToLongBits(longitude);
+		int h = (int) (bits ^ (bits >>> 32));
+		return h ^ (h >>> 16);
+	}
+
+	private void insert(int node) {
+		int mask = table.length - 1;
+		int slot = hash(latitudes[node], longitudes[node]) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = node + 1;
+	}
+
+	private void rehash(int size) {
+		table = new int[size];
+		for (int node = 0; node < numNodes; ++node) {
+			insert(node);
+		}
+	}
+
+	/**
+	 * Adds the directed edge from node from to node to. If the edge already
+	 * exists its segment information is replaced and its id returned. The CSR
+	 * index is not updated until buildAdjacency is called.
+	 *
+	 * @param from
+	 * @param to
+	 * @param length
+	 *            length in meters
+	 * @param info
+	 *            the path the edge belongs to
+	 * @return the edge id
+	 */
+	public int addEdge(int from, int to, double length, SegmentInfo info) {
+		int edge = findEdgeInList(from, to);
+		if (edge != -1) {
+			edgeInfo[edge] = info;
+			return edge;
+		}
+
+		if (numEdges == edgeSource.length) {
+			int size = numEdges * 2;
+			edgeSource = Arrays.copyOf(edgeSource, size);
+			edgeTarget = Arrays.copyOf(edgeTarget, size);
+			edgeLength = Arrays.copyOf(edgeLength, size);
+			edgeCars = Arrays.copyOf(edgeCars, size);
+			edgeTotalCars = Arrays.copyOf(edgeTotalCars, size);
+			edgeFlags = Arrays.copyOf(edgeFlags, size);
+			edgeInfo = Arrays.copyOf(edgeInfo, size);
+		}
+		edge = numEdges++;
+		edgeSource[edge] = from;
+		edgeTarget[edge] = to;
+		edgeLength[edge] = length;
+		edgeInfo[edge] = info;
+		pendingEdges.put(pairKey(from, to), edge);
+		return edge;
+	}
+
+	/**
+	 * Looks for an edge also among the ones added after the last
+	 * buildAdjacency
+	 */
+	private int findEdgeInList(int from, int to) {
+		int edge = findEdge(from, to);
+		if (edge != -1) {
+			return edge;
+		}
+		Integer pending = pendingEdges.get(pairKey(from, to));
+		return pending != null ? pending : -1;
+	}
+
+	private static long pairKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	/**
+	 * Builds the CSR index of the outgoing edges of every node. To be called
+	 * after adding nodes or edges.
+	 */
+	public void buildAdjacency() {
+		int[] first = new int[numNodes + 1];
+		for (int e = 0; e < numEdges; ++e) {
+			first[edgeSource[e] + 1]++;
+		}
+		for (int n = 0; n < numNodes; ++n) {
+			first[n + 1] += first[n];
+		}
+		int[] out = new int[numEdges];
+		int[] next = Arrays.copyOf(first, numNodes);
+		for (int e = 0; e < numEdges; ++e) {
+			out[next[edgeSource[e]]++] = e;
+		}
+		firstOut = first;
+		outEdges = out;
+		pendingEdges.clear();
+		version++;
+	}
+
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+	public int getNumEdges() {
+		return numEdges;
+	}
+
+	/**
+	 *
+	 * @return a number that changes whenever edges are added, closed or
+	 *         opened, so that routes planned before can be recognised
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return the position of the node, at the render altitude. The same
+	 *         object is returned at every call
+	 */
+	public Position getPosition(int node) {
+		return positions[node];
+	}
+
+	public double getLatitude(int node) {
+		return latitudes[node];
+	}
+
+	public double getLongitude(int node) {
+		return longitudes[node];
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return the number of edges leaving the node, open or not
+	 */
+	public int getNumOutEdges(int node) {
+		return node < firstOut.length - 1 ? firstOut[node + 1] - firstOut[node]
+				: 0;
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @param i
+	 *            between 0 and getNumOutEdges(node) - 1
+	 * @return the id of the i-th edge leaving the node
+	 */
+	public int getOutEdge(int node, int i) {
+		return outEdges[firstOut[node] + i];
+	}
+
+	/**
+	 *
+	 * @param from
+	 * @param to
+	 * @return the id of the edge from node from to node to, open or not. -1 if
+	 *         there is none
+	 */
+	public int findEdge(int from, int to) {
+		if (from < 0 || from >= firstOut.length - 1) {
+			return -1;
+		}
+		for (int k = firstOut[from]; k < firstOut[from + 1]; ++k) {
+			if (edgeTarget[outEdges[k]] == to) {
+				return outEdges[k];
+			}
+		}
+		return -1;
+	}
+
+	public int getSource(int edge) {
+		return edgeSource[edge];
+	}
+
+	public int getTarget(int edge) {
+		return edgeTarget[edge];
+	}
+
+	public double getLength(int edge) {
+		return edgeLength[edge];
+	}
+
+	/**
+	 *
+	 * @param edge
+	 * @return the weight of the edge for routing: its length plus a penalty
+	 *         for every car on it
+	 */
+	public double getWeight(int edge) {
+		return edgeLength[edge] + CustomizableVariables.PER_CAR_PENALTY
+				* edgeCars[edge];
+	}
+
+	public SegmentInfo getSegmentInfo(int edge) {
+		return edgeInfo[edge];
+	}
+
+	/**
+	 *
+	 * @param edge
+	 * @return the number of cars currently on the edge
+	 */
+	public int getCars(int edge) {
+		return edgeCars[edge];
+	}
+
+	/**
+	 *
+	 * @param edge
+	 * @return the number of cars entered in the edge since the network was
+	 *         built
+	 */
+	public int getTotalCars(int edge) {
+		return edgeTotalCars[edge];
+	}
+
+	public void addCar(int edge) {
+		edgeCars[edge]++;
+		edgeTotalCars[edge]++;
+	}
+
+	public void removeCar(int edge) {
+		edgeCars[edge]--;
+	}
+
+	/**
+	 *
+	 * @param edge
+	 * @return true if cars can choose the edge: it has not been split and, if
+	 *         danger areas are included, it is not inside one
+	 */
+	public boolean isOpen(int edge) {
+		byte flags = edgeFlags[edge];
+		return (flags & REMOVED) == 0
+				&& !(dangerAreasIncluded && (flags & DANGER) != 0);
+	}
+
+	public void setDanger(int edge, boolean danger) {
+		byte flags = edgeFlags[edge];
+		if (danger) {
+			edgeFlags[edge] |= DANGER;
+		} else {
+			edgeFlags[edge] &= ~DANGER;
+		}
+		if (edgeFlags[edge] != flags) {
+			version++;
+		}
+	}
+
+	/**
+	 * Closes the edge for good. Its state is kept, so that the cars already on
+	 * it can leave it.
+	 *
+	 * @param edge
+	 */
+	public void setRemoved(int edge) {
+		edgeFlags[edge] |= REMOVED;
+		version++;
+	}
+
+	public void setDangerAreasIncluded(boolean dangerAreasIncluded) {
+		if (this.dangerAreasIncluded != dangerAreasIncluded) {
+			this.dangerAreasIncluded = dangerAreasIncluded;
+			version++;
+		}
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return true if at least one open edge leaves the node
+	 */
+	public boolean hasOpenOutEdge(int node) {
+		for (int i = 0; i < getNumOutEdges(node); ++i) {
+			if (isOpen(getOutEdge(node, i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Reused by every search
+	private double[] distances = new double[0];
+	// Distance from the start plus the estimate to the target
+	private double[] priorities = new double[0];
+	private int[] previousEdge = new int[0];
+	private int[] visited = new int[0];
+	private int visitMark = 0;
+	private int[] heap = new int[0];
+	private int[] heapIndex = new int[0];
+	private int heapSize;
+
+	/**
+	 * Computes the shortest path between two nodes over the open edges, using
+	 * the current edge weights. A* search, guided by the straight-line distance
+	 * to the target
+	 *
+	 * @param from
+	 * @param to
+	 * @return the edges of the path in order, empty if from is to, null if to
+	 *         cannot be reached
+	 */
+	public int[] shortestPath(int from, int to) {
+		if (from < 0 || to < 0) {
+			return null;
+		}
+		if (from == to) {
+			return new int[0];
+		}
+		if (distances.length < numNodes) {
+			distances = new double[numNodes];
+			priorities = new double[numNodes];
+			previousEdge = new int[numNodes];
+			visited = new int[numNodes];
+			heap = new int[numNodes];
+			heapIndex = new int[numNodes];
+			visitMark = 0;
+		}
+		// Nodes not marked with the current visit have infinite distance
+		visitMark++;
+		heapSize = 0;
+
+		reach(from, 0, -1, to);
+		while (heapSize > 0) {
+			int node = poll();
+			if (node == to) {
+				break;
+			}
+			double distance = distances[node];
+			for (int k = firstOut[node]; k < firstOut[node + 1]; ++k) {
+				int edge = outEdges[k];
+				if (isOpen(edge)) {
+					reach(edgeTarget[edge], distance + getWeight(edge), edge, to);
+				}
+			}
+		}
+
+		if (visited[to] != visitMark) {
+			return null;
+		}
+		int n = 0;
+		for (int node = to; node != from; node = edgeSource[previousEdge[node]]) {
+			n++;
+		}
+		int[] path = new int[n];
+		for (int node = to; node != from; node = edgeSource[previousEdge[node]]) {
+			path[--n] = previousEdge[node];
+		}
+		return path;
+	}
+
+	/**
+	 * Straight-line distance between two nodes, never more than the length of
+	 * a path between them
+	 */
+	private double estimate(int node, int target) {
+		double dx = points[target * 3] - points[node * 3];
+		double dy = points[target * 3 + 1] - points[node * 3 + 1];
+		double dz = points[target * 3 + 2] - points[node * 3 + 2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private void reach(int node, double distance, int edge, int target) {
+		if (visited[node] != visitMark) {
+			visited[node] = visitMark;
+			distances[node] = distance;
+			priorities[node] = distance + estimate(node, target);
+			previousEdge[node] = edge;
+			heapIndex[node] = heapSize;
+			heap[heapSize++] = node;
+			siftUp(heapIndex[node]);
+		} else if (heapIndex[node] != -1 && distance < distances[node]) {
+			priorities[node] += distance - distances[node];
+			distances[node] = distance;
+			previousEdge[node] = edge;
+			siftUp(heapIndex[node]);
+		}
+	}
+
+	private int poll() {
+		int node = heap[0];
+		heapIndex[node] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			siftDown(0);
+		}
+		return node;
+	}
+
+	private void siftUp(int i) {
+		int node = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (priorities[heap[parent]] <= priorities[node]) {
+				break;
+			}
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+
+	private void siftDown(int i) {
+		int node = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize
+					&& priorities[heap[child + 1]] < priorities[heap[child]]) {
+				child++;
+			}
+			if (priorities[heap[child]] >= priorities[node]) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+}
@@ -0,0 +1,64 @@
+package it.graphitech.trafficSimulator.entities;
+
+/**
+ * A route planned by the RoutePlanner: the edges leading from a node to a
+ * target node, with the weights they had when the route was planned. Routes
+ * are shared by all the cars going the same way and are never modified.
+ *
+ */
+public class Route {
+
+	private final int target;
+	private final int[] edges;
+	// remainingCosts[i] is the weight of edges i.. when the route was planned
+	private final double[] remainingCosts;
+	private final int version;
+
+	/**
+	 *
+	 * @param target
+	 *            the target node
+	 * @param edges
+	 *            the edges of the route in order, null if the target cannot
+	 *            be reached
+	 * @param remainingCosts
+	 *            for each edge, the weight of the route from it
+	 * @param version
+	 *            the version of the network the route was planned on
+	 */
+	Route(int target, int[] edges, double[] remainingCosts, int version) {
+		this.target = target;
+		this.edges = edges;
+		this.remainingCosts = remainingCosts;
+		this.version = version;
+	}
+
+	public int getTarget() {
+		return target;
+	}
+
+	public boolean isReachable() {
+		return edges != null;
+	}
+
+	public int getNumEdges() {
+		return edges.length;
+	}
+
+	public int getEdge(int step) {
+		return edges[step];
+	}
+
+	/**
+	 *
+	 * @param step
+	 * @return the weight of the route from edge step when it was planned
+	 */
+	public double getRemainingCost(int step) {
+		return step < remainingCosts.length ? remainingCosts[step] : 0;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,118 @@
+package it.graphitech.trafficSimulator.entities;
+
+import it.graphitech.trafficSimulator.CustomizableVariables;
+
+import java.util.HashMap;
+
+/**
+ * Plans the routes of the cars on a RoadNetwork. The route of every (origin,
+ * destination) pair is cached, so that the cars leaving from the same node
+ * for the same goal share one search. A route, cached or followed by a car,
+ * is planned again only when it is no longer valid: the network has been
+ * modified, or the weight of the part still to be travelled grew by more than
+ * CustomizableVariables.REPLAN_THRESHOLD because of the cars on it.
+ *
+ */
+public class RoutePlanner {
+
+	// The cache is emptied when it grows beyond this number of routes
+	static final int MAX_CACHED_ROUTES = 8192;
+
+	private final RoadNetwork network;
+	private final HashMap<Long, Route> routes = new HashMap<Long, Route>();
+	private int cacheVersion;
+
+	private int numSearches = 0;
+	private int numCacheHits = 0;
+
+	public RoutePlanner(RoadNetwork network) {
+		this.network = network;
+		this.cacheVersion = network.getVersion();
+	}
+
+	/**
+	 * Returns the route between two nodes, from the cache if it is still valid
+	 *
+	 * @param from
+	 * @param to
+	 * @return the route, null if to cannot be reached from from
+	 */
+	public Route getRoute(int from, int to) {
+		if (from < 0 || to < 0) {
+			return null;
+		}
+		if (cacheVersion != network.getVersion()) {
+			routes.clear();
+			cacheVersion = network.getVersion();
+		}
+
+		Long key = ((long) from << 32) | (to & 0xffffffffL);
+		Route route = routes.get(key);
+		if (route != null && isValid(route, 0)) {
+			numCacheHits++;
+		} else {
+			route = plan(from, to);
+			if (routes.size() >= MAX_CACHED_ROUTES) {
+				routes.clear();
+			}
+			routes.put(key, route);
+		}
+		return route.isReachable() ? route : null;
+	}
+
+	/**
+	 * Checks if the rest of a route, from edge step, can still be followed:
+	 * the network has not been modified since it was planned, and the weight
+	 * of its remaining edges did not grow beyond the threshold.
+	 *
+	 * @param route
+	 * @param step
+	 * @return true if the route is still valid
+	 */
+	public boolean isValid(Route route, int step) {
+		if (route.getVersion() != network.getVersion()) {
+			return false;
+		}
+		if (!route.isReachable()) {
+			// Only a modification of the network can change it
+			return true;
+		}
+		double cost = 0;
+		for (int i = step; i < route.getNumEdges(); ++i) {
+			cost += network.getWeight(route.getEdge(i));
+		}
+		return cost <= route.getRemainingCost(step)
+				* (1 + CustomizableVariables.REPLAN_THRESHOLD);
+	}
+
+	private Route plan(int from, int to) {
+		numSearches++;
+		int[] edges = network.shortestPath(from, to);
+		if (edges == null) {
+			return new Route(to, null, null, network.getVersion());
+		}
+		double[] remainingCosts = new double[edges.length];
+		double cost = 0;
+		for (int i = edges.length - 1; i >= 0; --i) {
+			cost += network.getWeight(edges[i]);
+			remainingCosts[i] = cost;
+		}
+		return new Route(to, edges, remainingCosts, network.getVersion());
+	}
+
+	/**
+	 *
+	 * @return the number of searches run so far
+	 */
+	public int getNumSearches() {
+		return numSearches;
+	}
+
+	/**
+	 *
+	 * @return the number of routes taken from the cache so far
+	 */
+	public int getNumCacheHits() {
+		return numCacheHits;
+	}
+}
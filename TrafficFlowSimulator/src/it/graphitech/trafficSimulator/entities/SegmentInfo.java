@@ -18,16 +18,13 @@ public class SegmentInfo {
 	public PathExtArea analysisPath; // Correspondent path of the network that
 										// is extruded for the visual analysis
 	public double length; // Segment length
-	public int counter; // Cars counter
-	public int total_counter; // Cars counter
-	public Vector<Car> cars; // List of cars in the segment
+	public Vector<Car> cars; // List of cars in the segment, the counters are
+								// kept by the RoadNetwork
 
 	public SegmentInfo(PathExtArea path, PathExtArea analysisPath, double length) {
 		this.path = path;
 		this.analysisPath = analysisPath;
 		this.length = length;
-		this.counter = 0;
-		this.total_counter = 0;
 		this.cars = new Vector<Car>();
 	}
 }
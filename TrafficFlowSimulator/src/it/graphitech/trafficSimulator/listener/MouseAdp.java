@@ -4,6 +4,7 @@ import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.geom.Position;
 
 import it.graphitech.trafficSimulator.CustomizableVariables;
+import it.graphitech.trafficSimulator.GlobalInstances;
 import it.graphitech.trafficSimulator.TrafficSim;
 import it.graphitech.trafficSimulator.ServiceInterface.DataLayer;
 import it.graphitech.trafficSimulator.TrafficSim.AppFrame;
@@ -47,6 +48,11 @@ public class MouseAdp extends MouseAdapter {
 		super.mouseClicked(arg0);
 	}
 
+	/**
+	 * Picks the areas drawn by the user. The simulation lock is held only
+	 * while emitters, parking areas or the road network are changed, not while
+	 * picking, waiting for the WFS server or for the dialog
+	 */
 	@Override
 	public void mousePressed(MouseEvent mouseEvent) {
 		if (trafficSimPanel.selectAreaBtn.isSelected()) {
@@ -59,7 +65,9 @@ public class MouseAdp extends MouseAdapter {
 						if (position != null) {
 
 							if (trafficSimPanel.isSelectingDepartureArea()) {
-								AppFrame.emitterManager.resetLastEmmitters();
+								synchronized (GlobalInstances.getSimulationLock()) {
+									AppFrame.emitterManager.resetLastEmmitters();
+								}
 							}
 							if (positions == null) {
 
@@ -95,21 +103,24 @@ public class MouseAdp extends MouseAdapter {
 										TrafficSim.streetGraph.getPaths()
 												.values());
 
+						// the emitters are added under the lock after the request
 						DataLayer.sendEmitterRequestPost(positions,
 								frame.emitterManager, TrafficSim.streetGraph,
 								setPaths);
 
-						ArrayList<Emitter> listEmit = AppFrame.emitterManager
-								.getLastAddedEmitters();
+						synchronized (GlobalInstances.getSimulationLock()) {
+							ArrayList<Emitter> listEmit = AppFrame.emitterManager
+									.getLastAddedEmitters();
 
-						DepartureArea departureArea = AreaManager
-								.getLastDepartureArea();
-						ArrayList<Integer> idDestAreaArrayForEachEmitter = AreaManager
-								.createIdDestAreaArray(listEmit);
-						departureArea
-								.setIdDestAreaArrayForEachEmitter(idDestAreaArrayForEachEmitter);
+							DepartureArea departureArea = AreaManager
+									.getLastDepartureArea();
+							ArrayList<Integer> idDestAreaArrayForEachEmitter = AreaManager
+									.createIdDestAreaArray(listEmit);
+							departureArea
+									.setIdDestAreaArrayForEachEmitter(idDestAreaArrayForEachEmitter);
 
-						AreaManager.generateIdAreasForEachVehicle();
+							AreaManager.generateIdAreasForEachVehicle();
+						}
 						positions = null;
 						position = null;
 						trafficSimPanel.setSelectingDestinationArea(true);
@@ -123,10 +134,13 @@ public class MouseAdp extends MouseAdapter {
 								.getSelectedSegments(positions,
 										TrafficSim.streetGraph.getPaths()
 												.values());
-						Position a_parkingArea_pos = ParkingAreaManager
-								.insertMiddleParkingArea(setPaths,
-										frame.emitterManager,
-										TrafficSim.streetGraph);
+						Position a_parkingArea_pos;
+						synchronized (GlobalInstances.getSimulationLock()) {
+							a_parkingArea_pos = ParkingAreaManager
+									.insertMiddleParkingArea(setPaths,
+											frame.emitterManager,
+											TrafficSim.streetGraph);
+						}
 
 						if (a_parkingArea_pos != null) {
 
@@ -140,27 +154,32 @@ public class MouseAdp extends MouseAdapter {
 											setPaths.iterator().next(),
 											a_parkingArea_pos);
 
-							ArrayList<Emitter> listEmit = AppFrame.emitterManager
-									.getLastAddedEmitters();
+							ArrayList<Emitter> listEmit;
+							Area departureArea;
+							Area destArea;
+							int numVehiclesWithNoDest;
+							synchronized (GlobalInstances.getSimulationLock()) {
+								listEmit = AppFrame.emitterManager
+										.getLastAddedEmitters();
 
+								departureArea = AreaManager
+										.getLastDepartureArea();
 
+								destArea = AreaManager.createDestiantionArea(
+										positions, departureArea, goal);
 
-							Area departureArea = AreaManager
-									.getLastDepartureArea();
-
-							Area destArea = AreaManager.createDestiantionArea(
-									positions, departureArea, goal);
+								AreaManager
+										.generatePolyginDestinationArea(destArea);
+								if (AreaManager.getIdAreasForEachVehicle().size() == 0) {
 
-							AreaManager
-									.generatePolyginDestinationArea(destArea);
-							if (AreaManager.getIdAreasForEachVehicle().size() == 0) {
+									AreaManager
+											.createIdDestAreaArrayForEachEmitter(listEmit);
+								}
 
-								AreaManager
-										.createIdDestAreaArrayForEachEmitter(listEmit);
+								numVehiclesWithNoDest = AreaManager
+										.getNumVehiclesWithNoDestination();
 							}
-
-							int numVehiclesWithNoDest = AreaManager
-									.getNumVehiclesWithNoDestination();
+							// modal: the simulation goes on while it is open
 							AreaDialog newContentPane = new AreaDialog(frame,
 									numVehiclesWithNoDest);
 							newContentPane.setSize(400, 150);
@@ -168,58 +187,60 @@ public class MouseAdp extends MouseAdapter {
 							newContentPane.setLocationRelativeTo(frame);
 							newContentPane.setVisible(true);
 
-							AreaManager.assignNumVehiclesToDestination(
-									newContentPane.selectedValue,
-									destArea.getIndex());
+							synchronized (GlobalInstances.getSimulationLock()) {
+								AreaManager.assignNumVehiclesToDestination(
+										newContentPane.selectedValue,
+										destArea.getIndex());
 
-							TrafficSim.streetGraph.updateColors();
+								TrafficSim.streetGraph.updateColors();
 
-							int numVehicles = AreaManager.getNumVehicles();
-							double valVehicles = ((double) newContentPane.selectedValue)
-									/ ((double) numVehicles);
+								int numVehicles = AreaManager.getNumVehicles();
+								double valVehicles = ((double) newContentPane.selectedValue)
+										/ ((double) numVehicles);
 
-//							System.out
-//									.println(newContentPane.selectedValue
-//											+ " / " + numVehicles + " = "
-//											+ valVehicles);
+//								System.out
+//										.println(newContentPane.selectedValue
+//												+ " / " + numVehicles + " = "
+//												+ valVehicles);
 							
 							
-							AreaManager.generateArcs(departureArea, destArea,
-									valVehicles);
+								AreaManager.generateArcs(departureArea, destArea,
+										valVehicles);
 
-							int j = 0;
+								int j = 0;
 
-							for (int i = 0; i < listEmit.size(); i++) {
+								for (int i = 0; i < listEmit.size(); i++) {
 
-								EmitterDestAreas emitterDestArea = (EmitterDestAreas) listEmit
-										.get(i);
+									EmitterDestAreas emitterDestArea = (EmitterDestAreas) listEmit
+											.get(i);
 
-								emitterDestArea.createArrayAreas();
-								emitterDestArea.createArrayGoals();
-								int numCars = emitterDestArea.getNumCars();
-								for (int l = 0; l < numCars; l++) {
-									int idArea = AreaManager
-											.getIdAreasForEachVehicle().get(j);
+									emitterDestArea.createArrayAreas();
+									emitterDestArea.createArrayGoals();
+									int numCars = emitterDestArea.getNumCars();
+									for (int l = 0; l < numCars; l++) {
+										int idArea = AreaManager
+												.getIdAreasForEachVehicle().get(j);
 
-									if (idArea != -1) {
-										emitterDestArea.addArea(idArea);
-										Position refPos = AreaManager
-												.getReferencePosition(idArea);
+										if (idArea != -1) {
+											emitterDestArea.addArea(idArea);
+											Position refPos = AreaManager
+													.getReferencePosition(idArea);
 
-							emitterDestArea.addGoal(refPos);
+								emitterDestArea.addGoal(refPos);
+										}
+
+										j++;
 									}
+									emitterDestArea
+											.setNearGoalDestination(nearDest);
 
-									j++;
 								}
-								emitterDestArea
-										.setNearGoalDestination(nearDest);
-
+								numVehiclesWithNoDest = AreaManager
+										.getNumVehiclesWithNoDestination();
+								//System.out.println("dopo num veicoli con nessuna dest: "+ numVehiclesWithNoDest);
+								TrafficSim.streetGraph.addNodeInSegment(nearDest[0],
+										nearDest[1], goal);
 							}
-							numVehiclesWithNoDest = AreaManager
-									.getNumVehiclesWithNoDestination();
-							//System.out.println("dopo num veicoli con nessuna dest: "+ numVehiclesWithNoDest);
-							TrafficSim.streetGraph.addNodeInJGraph(nearDest[0],
-									nearDest[1], goal);
 
 							positions = null;
 							position = null;
@@ -262,17 +283,16 @@ public class MouseAdp extends MouseAdapter {
 									positions = null;
 									position = null;
 
-									for (PathExtArea path : setPaths) {
-										path.setDangerArea(true);
-									}
+									synchronized (GlobalInstances.getSimulationLock()) {
+										for (PathExtArea path : setPaths) {
+											path.setDangerArea(true);
+										}
 
-									TrafficSim.streetGraph
-											.setDangerAreasIncluded(true);
-									TrafficSim.streetGraph
-											.buildJGraphWithoutDangerAreas();
-									TrafficSim.streetGraph
-											.buildGraphWithoutDangerAreas();
-									TrafficSim.streetGraph.updateColors();
+										TrafficSim.streetGraph
+												.setDangerAreasIncluded(true);
+										TrafficSim.streetGraph.updateDangerAreas();
+										TrafficSim.streetGraph.updateColors();
+									}
 								} else {
 									positions.add(position);
 									AreaManager.generateDangerPolygonArea(
@@ -300,14 +320,15 @@ public class MouseAdp extends MouseAdapter {
 					positions = null;
 					position = null;
 
-					for (PathExtArea path : setPaths) {
-						path.setDangerArea(true);
-					}
+					synchronized (GlobalInstances.getSimulationLock()) {
+						for (PathExtArea path : setPaths) {
+							path.setDangerArea(true);
+						}
 
-					TrafficSim.streetGraph.setDangerAreasIncluded(true);
-					TrafficSim.streetGraph.buildJGraphWithoutDangerAreas();
-					TrafficSim.streetGraph.buildGraphWithoutDangerAreas();
-					TrafficSim.streetGraph.updateColors();
+						TrafficSim.streetGraph.setDangerAreasIncluded(true);
+						TrafficSim.streetGraph.updateDangerAreas();
+						TrafficSim.streetGraph.updateColors();
+					}
 
 				}
 
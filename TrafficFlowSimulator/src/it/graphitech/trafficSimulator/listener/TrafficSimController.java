@@ -59,14 +59,18 @@ public class TrafficSimController implements ActionListener, SelectListener,
 			trafficSimPanel.selectDangerAreaBtn.setEnabled(false);
 			trafficSimPanel.importDangerAreaBtn.setEnabled(false);
 			
-			//shuffle
-			frame.emitterManager.shuffle();
-			
-			doActivateOrDeactivateEmitters(true);
+			synchronized (GlobalInstances.getSimulationLock()) {
+				//shuffle
+				frame.emitterManager.shuffle();
+
+				doActivateOrDeactivateEmitters(true);
+			}
 			
 		} else if (ACTION_COMMAND_DEACTIVATE_EMITTERS.equalsIgnoreCase(e
 				.getActionCommand())) {
-			doActivateOrDeactivateEmitters(false);
+			synchronized (GlobalInstances.getSimulationLock()) {
+				doActivateOrDeactivateEmitters(false);
+			}
 		}
 
 		else {
@@ -105,10 +109,12 @@ public class TrafficSimController implements ActionListener, SelectListener,
 	}
 
 	public void resetAll() {
-		AppFrame.carManager.reset();
-		AppFrame.emitterManager.reset();
-		TrafficSim.streetGraph.reset();
-		GlobalInstances.getRenderizer().reset();
+		synchronized (GlobalInstances.getSimulationLock()) {
+			AppFrame.carManager.reset();
+			AppFrame.emitterManager.reset();
+			TrafficSim.streetGraph.reset();
+			GlobalInstances.getRenderizer().reset();
+		}
 	}
 
 	@Override
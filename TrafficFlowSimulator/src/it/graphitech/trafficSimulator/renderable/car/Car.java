@@ -2,21 +2,17 @@ package it.graphitech.trafficSimulator.renderable.car;
 
 import it.graphitech.trafficSimulator.CustomizableVariables;
 import it.graphitech.trafficSimulator.GlobalInstances;
-import gov.nasa.worldwind.WorldWind;
-import gov.nasa.worldwind.avlist.AVKey;
+import it.graphitech.trafficSimulator.entities.Route;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
-import gov.nasa.worldwind.render.BasicShapeAttributes;
-import gov.nasa.worldwind.render.Ellipsoid;
 import gov.nasa.worldwind.render.Material;
-import gov.nasa.worldwind.render.Renderable;
-import gov.nasa.worldwind.render.ShapeAttributes;
 
 public class Car {
 	
-	private Ellipsoid ellipsoid;
+	private Material color = Material.WHITE; // Color drawn by the CarLayer
 	
+	private Position position; // Simulated position
 	private Position origin; // Provenance position
 	private Position destination; // Destination position
 	private Position goalPosition; // Ultimate destination (destination emitters)
@@ -26,6 +22,9 @@ public class Car {
 	
 	private double lastDiff = 9999999; // Delta between current position and destination
 	
+	private Route route; // Route towards the destination goal
+	private int routeStep; // Index of the next edge of the route
+	
 	private Globe g;
 	
 	/**
@@ -41,7 +40,7 @@ public class Car {
 		this.destination = destination;
 		this.speed = speed;
 		this.originalSpeed = speed;    
-		this.ellipsoid = build3D(currPos);
+		this.position = currPos;
 	}
 
 	/**
@@ -105,15 +104,7 @@ public class Car {
 	 * @return car current position
 	 */
 	public Position getPosition() {
-		return this.ellipsoid.getCenterPosition();
-	}
-	
-	/**
-	 * 
-	 * @return the World Wind renderable object
-	 */
-	public Renderable getRenderable() {
-		return this.ellipsoid;
+		return this.position;
 	}
 	
 	/**
@@ -122,12 +113,12 @@ public class Car {
 	 * @param p the position
 	 */
 	public void moveTo(Position p) {		
-		this.ellipsoid.moveTo(p);
-		Vec4 p1 = g.computePointFromPosition(this.ellipsoid.getCenterPosition());
+		this.position = p;
+		Vec4 p1 = g.computePointFromPosition(this.position);
 		Vec4 p2 = g.computePointFromPosition(this.destination);
 		double diff = p1.distanceTo3(p2);
 		if(lastDiff < diff) {
-			this.ellipsoid.moveTo(this.destination);
+			this.position = this.destination;
 			lastDiff = 9999999;
 		} else {
 			lastDiff = diff;
@@ -153,50 +144,51 @@ public class Car {
 	
 	/**
 	 * 
-	 * @return true if car has a destination goal
+	 * @return the route the car is following towards its destination goal
 	 */
-	public boolean hasGoalDestination() {
-		return this.goalPosition != null;
+	public Route getRoute() {
+		return this.route;
 	}
 	
 	/**
-	 * Set color of the car
-	 * @param material a Material World Wind object
+	 * 
+	 * @return the index in the route of the next edge to travel
 	 */
-	public void setColor(Material material) {
-		this.ellipsoid.getAttributes().setInteriorMaterial(material);
+	public int getRouteStep() {
+		return this.routeStep;
 	}
 	
 	/**
-	 * Create a new ellipsoid
-	 * @param currPos the position of the ellipsoid
-	 * @return
+	 * Set the route towards the destination goal
+	 * @param route the route, shared with other cars
+	 * @param step the index in the route of the next edge to travel
 	 */
-	private Ellipsoid build3D(Position currPos) {
-		Ellipsoid obj = new Ellipsoid(currPos, CustomizableVariables.CAR_RADIUS, CustomizableVariables.CAR_RADIUS, CustomizableVariables.CAR_RADIUS);
-		obj.setAltitudeMode(WorldWind.RELATIVE_TO_GROUND);
-		obj.setAttributes(getAttributes(Material.WHITE));
-		obj.setDetailHint(-0.5);
-		
-		obj.setVisible(true);
-		obj.setValue(AVKey.DISPLAY_NAME, "Car");
-		return obj;
+	public void setRoute(Route route, int step) {
+		this.route = route;
+		this.routeStep = step;
 	}
 	
 	/**
-	 * Get the shape attributes for a renderable object
-	 * @param color color of the object
-	 * @return the shape attributes
+	 * 
+	 * @return true if car has a destination goal
 	 */
-	private ShapeAttributes getAttributes(Material color) {
-		ShapeAttributes attrs = new BasicShapeAttributes();
-        attrs.setInteriorOpacity(1.0);
-        attrs.setEnableLighting(true);
-        attrs.setInteriorMaterial(color);
-        attrs.setOutlineMaterial(Material.RED);
-        attrs.setOutlineWidth(0.1d);
-        attrs.setDrawInterior(true);
-        attrs.setDrawOutline(false);
-        return attrs;
+	public boolean hasGoalDestination() {
+		return this.goalPosition != null;
+	}
+	
+	/**
+	 * 
+	 * @return the color of the car
+	 */
+	public Material getColor() {
+		return this.color;
+	}
+	
+	/**
+	 * Set color of the car
+	 * @param material a Material World Wind object
+	 */
+	public void setColor(Material material) {
+		this.color = material;
 	}
 }
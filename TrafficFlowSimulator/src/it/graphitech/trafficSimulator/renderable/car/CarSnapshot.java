@@ -0,0 +1,100 @@
+package it.graphitech.trafficSimulator.renderable.car;
+
+import gov.nasa.worldwind.geom.Position;
+import it.graphitech.trafficSimulator.entities.RoadNetwork;
+
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * Immutable state of the cars after a step of the simulation, published by
+ * the simulation thread and drawn by the renderer. Besides the positions of
+ * the cars it holds the cars counted in every edge of the road network, from
+ * which the renderer sets the look of the streets.
+ * 
+ */
+public class CarSnapshot {
+
+	private final long time;
+	private final Position[] positions;
+	private final Color[] colors; // Diffuse colours of the cars
+	private final int[] edgeCars; // Cars currently on every edge
+	private final int[] edgeTotalCars; // Cars entered in every edge
+
+	/**
+	 * 
+	 * @param time
+	 *            simulated time in milliseconds
+	 * @param cars
+	 *            the cars in the network, their positions and colours are
+	 *            copied
+	 * @param network
+	 *            the road network, its car counts are copied. It can be null
+	 */
+	public CarSnapshot(long time, List<Car> cars, RoadNetwork network) {
+		this.time = time;
+		int numCars = cars.size();
+		this.positions = new Position[numCars];
+		this.colors = new Color[numCars];
+		for (int i = 0; i < numCars; ++i) {
+			Car car = cars.get(i);
+			this.positions[i] = car.getPosition();
+			this.colors[i] = car.getColor().getDiffuse();
+		}
+
+		int numEdges = (network != null) ? network.getNumEdges() : 0;
+		this.edgeCars = new int[numEdges];
+		this.edgeTotalCars = new int[numEdges];
+		for (int edge = 0; edge < numEdges; ++edge) {
+			this.edgeCars[edge] = network.getCars(edge);
+			this.edgeTotalCars[edge] = network.getTotalCars(edge);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the simulated time in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public int getNumCars() {
+		return positions.length;
+	}
+
+	public Position getPosition(int i) {
+		return positions[i];
+	}
+
+	public Color getColor(int i) {
+		return colors[i];
+	}
+
+	/**
+	 * 
+	 * @return the number of edges whose cars were counted
+	 */
+	public int getNumEdges() {
+		return edgeCars.length;
+	}
+
+	/**
+	 * 
+	 * @param edge
+	 * @return the number of cars on the edge
+	 */
+	public int getCars(int edge) {
+		return edge < edgeCars.length ? edgeCars[edge] : 0;
+	}
+
+	/**
+	 * 
+	 * @param edge
+	 * @return the number of cars entered in the edge since the network was
+	 *         built
+	 */
+	public int getTotalCars(int edge) {
+		return edge < edgeTotalCars.length ? edgeTotalCars[edge] : 0;
+	}
+}
@@ -22,6 +22,7 @@ public class Emitter extends Ellipsoid {
 	//protected double carFrequency=CustomizableVariables.carFrequency;
 	protected double carSpeed=CustomizableVariables.carSpeed;
 	protected boolean active;
+	protected Position goal; // Destination goal of the emitted cars, null for none
 	
 	private boolean oneway;	
 	private boolean destinationsSwapped; //If destinations are swapped in the destinations array
@@ -83,6 +84,23 @@ public class Emitter extends Ellipsoid {
 		this.oneway = value;
 	}
 	
+	/**
+	 * 
+	 * @return the destination goal of the emitted cars, null if they have none
+	 */
+	public Position getGoalDestination() {
+		return this.goal;
+	}
+	
+	/**
+	 * Set the destination goal of the emitted cars. The goal must be a node
+	 * of the street graph
+	 * @param goal
+	 */
+	public void setGoalDestination(Position goal) {
+		this.goal = goal;
+	}
+	
 	/**
 	 * Disable the emitter
 	 */
@@ -150,6 +168,7 @@ public class Emitter extends Ellipsoid {
 			
 			
 			car = new Car(this.position, this.destinations[0], this.destinations[1], this.carSpeed);
+			car.setGoalDestination(this.goal);
 		//	this.lastTime += this.carFrequency;
 		}
 		return car;
@@ -7,6 +7,7 @@ import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.render.Material;
 import gov.nasa.worldwind.render.Renderable;
 import it.graphitech.trafficSimulator.CustomizableVariables;
+import it.graphitech.trafficSimulator.GlobalInstances;
 import it.graphitech.trafficSimulator.renderable.car.CarWithStatus;
 import it.graphitech.trafficSimulator.renderableManager.AreaManager;
 
@@ -143,7 +144,7 @@ public class EmitterDestAreas extends Emitter {
 		//if(this.active && timeDelta > this.carFrequency) {
 		if(this.active) {
 			if(currCar<numCars){
-			double speed=CustomizableVariables.minSpeed+Math.random()*CustomizableVariables.deltaSpeed;
+			double speed=CustomizableVariables.minSpeed+GlobalInstances.getRandom().nextDouble()*CustomizableVariables.deltaSpeed;
 			
 			car = new CarWithStatus(this.position, this.destinations[0], this.destinations[1],speed);
 			
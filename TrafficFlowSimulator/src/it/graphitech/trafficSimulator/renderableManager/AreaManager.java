@@ -596,14 +596,15 @@ public class AreaManager {
 					positions, TrafficSim.streetGraph.getPaths().values());
 			positions = null;
 
-			for (PathExtArea path : setPaths) {
-				path.setDangerArea(true);
-			}
+			synchronized (GlobalInstances.getSimulationLock()) {
+				for (PathExtArea path : setPaths) {
+					path.setDangerArea(true);
+				}
 
-			TrafficSim.streetGraph.setDangerAreasIncluded(true);
-			TrafficSim.streetGraph.buildJGraphWithoutDangerAreas();
-			TrafficSim.streetGraph.buildGraphWithoutDangerAreas();
-			TrafficSim.streetGraph.updateColors();
+				TrafficSim.streetGraph.setDangerAreasIncluded(true);
+				TrafficSim.streetGraph.updateDangerAreas();
+				TrafficSim.streetGraph.updateColors();
+			}
 
 		} catch (Exception e) {
 			e.printStackTrace();
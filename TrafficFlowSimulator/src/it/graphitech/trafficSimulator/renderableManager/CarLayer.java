@@ -0,0 +1,163 @@
+package it.graphitech.trafficSimulator.renderableManager;
+
+import com.sun.opengl.util.BufferUtil;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.OGLStackHandler;
+
+import it.graphitech.trafficSimulator.CustomizableVariables;
+import it.graphitech.trafficSimulator.TrafficSim;
+import it.graphitech.trafficSimulator.renderable.car.CarSnapshot;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import javax.media.opengl.GL;
+
+/**
+ * Layer drawing the cars of the last CarSnapshot published by the simulation
+ * as a single batch of points. When a new snapshot is drawn for the first time
+ * the positions and the colours of its cars are copied, on the rendering
+ * thread, in two buffers that are drawn with one glDrawArrays call.
+ *
+ * The points have the size of a car of radius CAR_RADIUS when seen from near,
+ * and at least MIN_POINT_SIZE pixels when seen from far. Cars are not
+ * pickable.
+ *
+ * A new snapshot also updates, on the rendering thread, the look of the
+ * streets and of the parking areas, which the simulation thread never
+ * changes.
+ *
+ */
+public class CarLayer extends AbstractLayer {
+
+	// Size in pixels of the cars far from the eye
+	static final float MIN_POINT_SIZE = 2;
+	// Size in pixels of the cars near the eye
+	static final float MAX_POINT_SIZE = 64;
+
+	private volatile CarSnapshot snapshot;
+	private CarSnapshot drawnSnapshot;
+	private double drawnExaggeration;
+
+	private FloatBuffer points; // Positions of the cars relative to referenceCenter
+	private ByteBuffer colors; // RGB colours of the cars
+	private int numPoints = 0;
+	private Vec4 referenceCenter;
+
+	public CarLayer() {
+		this.setPickEnabled(false);
+	}
+
+	/**
+	 * Sets the cars to draw. It can be called from any thread
+	 *
+	 * @param snapshot
+	 *            the cars to draw, null for none
+	 */
+	public void setSnapshot(CarSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Fills the buffers with the cars of the current snapshot, if it is not
+	 * the one already in the buffers
+	 *
+	 * @param dc
+	 */
+	private void update(DrawContext dc) {
+		CarSnapshot current = this.snapshot;
+		if (current == drawnSnapshot
+				&& dc.getVerticalExaggeration() == drawnExaggeration) {
+			return;
+		}
+
+		if (current != drawnSnapshot && current != null) {
+			if (TrafficSim.streetGraph != null) {
+				TrafficSim.streetGraph.updatePathAttributes(current);
+			}
+			Renderizer.updateParkingAreas();
+		}
+
+		numPoints = (current != null) ? current.getNumCars() : 0;
+		if (points == null || points.capacity() < 3 * numPoints) {
+			int capacity = Math.max(2 * numPoints, 1024);
+			points = BufferUtil.newFloatBuffer(3 * capacity);
+			colors = BufferUtil.newByteBuffer(3 * capacity);
+		}
+		points.clear();
+		colors.clear();
+
+		double altitude = CustomizableVariables.RENDERALTITUDE
+				+ CustomizableVariables.CAR_RADIUS;
+		for (int i = 0; i < numPoints; ++i) {
+			Position pos = current.getPosition(i);
+			Vec4 pt = dc.computeTerrainPoint(pos.getLatitude(),
+					pos.getLongitude(), altitude);
+			if (i == 0) {
+				referenceCenter = pt;
+			}
+			points.put((float) (pt.x - referenceCenter.x));
+			points.put((float) (pt.y - referenceCenter.y));
+			points.put((float) (pt.z - referenceCenter.z));
+
+			Color color = current.getColor(i);
+			colors.put((byte) color.getRed());
+			colors.put((byte) color.getGreen());
+			colors.put((byte) color.getBlue());
+		}
+		points.flip();
+		colors.flip();
+
+		drawnSnapshot = current;
+		drawnExaggeration = dc.getVerticalExaggeration();
+	}
+
+	@Override
+	protected void doRender(DrawContext dc) {
+		update(dc);
+		if (numPoints == 0) {
+			return;
+		}
+
+		GL gl = dc.getGL();
+		OGLStackHandler ogsh = new OGLStackHandler();
+		ogsh.pushAttrib(gl, GL.GL_CURRENT_BIT | GL.GL_ENABLE_BIT
+				| GL.GL_COLOR_BUFFER_BIT | GL.GL_POINT_BIT);
+		ogsh.pushClientAttrib(gl, GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+		try {
+			dc.getView().pushReferenceCenter(dc, referenceCenter);
+
+			gl.glDisable(GL.GL_LIGHTING);
+			gl.glDisable(GL.GL_TEXTURE_2D);
+			gl.glEnable(GL.GL_DEPTH_TEST);
+			gl.glEnable(GL.GL_BLEND);
+			gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+			gl.glEnable(GL.GL_POINT_SMOOTH);
+
+			// OpenGL divides the point size by the distance from the eye, so
+			// the size set is the one of a car seen from 1 meter
+			double carPixels = CustomizableVariables.CAR_RADIUS
+					* dc.getView().getViewport().getWidth()
+					/ dc.getView().getFieldOfView().tanHalfAngle();
+			gl.glPointSize((float) carPixels);
+			gl.glPointParameterfv(GL.GL_POINT_DISTANCE_ATTENUATION,
+					new float[] { 0, 0, 1 }, 0);
+			gl.glPointParameterf(GL.GL_POINT_SIZE_MIN, MIN_POINT_SIZE);
+			gl.glPointParameterf(GL.GL_POINT_SIZE_MAX, MAX_POINT_SIZE);
+
+			gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+			gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+			gl.glVertexPointer(3, GL.GL_FLOAT, 0, points);
+			gl.glColorPointer(3, GL.GL_UNSIGNED_BYTE, 0, colors);
+			gl.glDrawArrays(GL.GL_POINTS, 0, numPoints);
+		} finally {
+			dc.getView().popReferenceCenter(dc);
+			ogsh.pop(gl);
+		}
+	}
+}
@@ -17,41 +17,39 @@ import gov.nasa.worldwind.render.ShapeAttributes;
 
 import it.graphitech.trafficSimulator.CustomizableVariables;
 import it.graphitech.trafficSimulator.GlobalInstances;
-import it.graphitech.trafficSimulator.entities.MyEdge;
+import it.graphitech.trafficSimulator.entities.RoadNetwork;
+import it.graphitech.trafficSimulator.entities.Route;
+import it.graphitech.trafficSimulator.entities.RoutePlanner;
 import it.graphitech.trafficSimulator.entities.SegmentInfo;
 import it.graphitech.trafficSimulator.renderable.PathExtArea;
 import it.graphitech.trafficSimulator.renderable.car.Car;
+import it.graphitech.trafficSimulator.renderable.car.CarSnapshot;
 
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.jgrapht.alg.DijkstraShortestPath;
-import org.jgrapht.graph.DefaultDirectedWeightedGraph;
-
 public class GraphManager {
 
 	private Map<String, PathExtArea> paths;
 	private Map<String, PathExtArea> analysisPaths;
 
-	private Map<String, Set<String>> graph;
-	private ConcurrentHashMap<String, SegmentInfo> segmentMap;
+	private RoadNetwork network;
+	private RoutePlanner planner;
+	// Edges of every path: [0] in the normal way, [1] in the opposite way.
+	// Read on the rendering thread, the arrays are replaced, never changed
+	private Map<PathExtArea, int[][]> pathEdges;
+	// Counts the paths were last drawn with, used on the rendering thread
+	private Map<PathExtArea, int[]> renderedCounts = new HashMap<PathExtArea, int[]>();
 	private List<KMLPlacemark> placemarks;
 
 	private boolean dangerAreasIncluded = false;
 
-	DefaultDirectedWeightedGraph<String, MyEdge> jGraph;
-
-	private Map<String, Set<String>> graphWithoutDangerAreas;
-	DefaultDirectedWeightedGraph<String, MyEdge> jGraphWithoutDangerAreas;
 	private RenderableLayer layer_areas;
 
 	/**
@@ -65,9 +63,7 @@ public class GraphManager {
 
 		buildRenderablePaths(placemarks);
 		buildRenderableAnalysisPaths(placemarks);
-		buildGraph();
-		buildSegmentMap();
-		buildJGraph();
+		buildRoadNetwork();
 
 		renderPathsInAreasLayer();
 		StreetsAnalysisManager.initStreetsAnalysisLayer(analysisPaths);
@@ -259,179 +255,73 @@ public class GraphManager {
 	}
 
 	/**
-	 * Builds a graph with path segments. The graph is encoded in a map having
-	 * as keys a string representation of a segment node and as values the
-	 * string representation of adjacent nodes
+	 * Builds the road network with path segments. Every position of a path is
+	 * a node, and every segment is an edge in the way of the path plus, if the
+	 * path is not one way, an edge in the opposite way. Each edge has its own
+	 * SegmentInfo.
 	 */
-	private void buildGraph() {
-		graph = new HashMap<String, Set<String>>();
+	private void buildRoadNetwork() {
+		network = new RoadNetwork();
+		network.setDangerAreasIncluded(dangerAreasIncluded);
+		planner = new RoutePlanner(network);
+		pathEdges = new ConcurrentHashMap<PathExtArea, int[][]>();
 
 		for (PathExtArea path : paths.values()) {
+			PathExtArea analysisPath = analysisPaths.get(path.getId());
+
 			ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
 					.getPositions();
 			int nPos = positions.size();
+			int[] nodes = new int[nPos];
 			for (int i = 0; i < nPos; ++i) {
-				Position pos = positions.get(i);
-
-				String key = getGraphKey(pos);
-				if (!graph.containsKey(key)) {
-					graph.put(key, new HashSet<String>());
-				}
-
-				if (i != nPos - 1) {
-					graph.get(key).add(getGraphKey(positions.get(i + 1)));
-				}
-
-				if (i != 0 && !path.isOneway()) {
-					graph.get(key).add(getGraphKey(positions.get(i - 1)));
-				}
+				nodes[i] = addNode(positions.get(i));
 			}
-		}
-	}
-
-	/**
-	 * Builds a graph with path segments. The graph is encoded in a map having
-	 * as keys a string representation of a segment node and as values the
-	 * string representation of adjacent nodes
-	 * 
-	 * It doesn't take into account the paths that are inside a "dangerous" area
-	 */
-	public void buildGraphWithoutDangerAreas() {
-		graphWithoutDangerAreas = new HashMap<String, Set<String>>();
 
-		for (PathExtArea path : paths.values()) {
-
-			if (!path.isDangerArea()) {
-				ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-						.getPositions();
-				int nPos = positions.size();
-				for (int i = 0; i < nPos; ++i) {
-					Position pos = positions.get(i);
-
-					String key = getGraphKey(pos);
-					if (!graphWithoutDangerAreas.containsKey(key)) {
-						graphWithoutDangerAreas.put(key, new HashSet<String>());
-					}
-
-					if (i != nPos - 1) {
-						graphWithoutDangerAreas.get(key).add(
-								getGraphKey(positions.get(i + 1)));
-					}
-
-					if (i != 0 && !path.isOneway()) {
-						graphWithoutDangerAreas.get(key).add(
-								getGraphKey(positions.get(i - 1)));
-					}
+			int nSegments = Math.max(nPos - 1, 0);
+			int[] forward = new int[nSegments];
+			int[] backward = new int[path.isOneway() ? 0 : nSegments];
+			for (int i = 0; i < nSegments; ++i) {
+				double edgeLength = computeDistance(positions.get(i),
+						positions.get(i + 1));
+				forward[i] = network.addEdge(nodes[i], nodes[i + 1], edgeLength,
+						new SegmentInfo(path, analysisPath, edgeLength));
+
+				if (!path.isOneway()) {
+					backward[i] = network.addEdge(nodes[i + 1], nodes[i],
+							edgeLength, new SegmentInfo(path, analysisPath,
+									edgeLength));
 				}
-
 			}
+			pathEdges.put(path, new int[][] { forward, backward });
 		}
-	}
-
-	public void updateGraph(Position position1, Position position2,
-			Position middle, PathExtArea path) {
-		if (!dangerAreasIncluded) {
-			String key = getGraphKey(position1);
-			graph.get(key).remove(getGraphKey(position2));
-			graph.get(key).add(getGraphKey(middle));
-
-			String key2 = getGraphKey(position2);
-			graph.get(key2).remove(getGraphKey(position1));
-			graph.get(key2).add(getGraphKey(middle));
 
-			String key3 = getGraphKey(middle);
-			graph.put(key3, new HashSet<String>());
-			graph.get(key3).add(getGraphKey(position1));
-			graph.get(key3).add(getGraphKey(position2));
-
-		} else {
-			String key = getGraphKey(position1);
-			graphWithoutDangerAreas.get(key).remove(getGraphKey(position2));
-			graphWithoutDangerAreas.get(key).add(getGraphKey(middle));
-
-			String key2 = getGraphKey(position2);
-			graphWithoutDangerAreas.get(key2).remove(getGraphKey(position1));
-			graphWithoutDangerAreas.get(key2).add(getGraphKey(middle));
-
-			String key3 = getGraphKey(middle);
-			graphWithoutDangerAreas.put(key3, new HashSet<String>());
-			graphWithoutDangerAreas.get(key3).add(getGraphKey(position1));
-			graphWithoutDangerAreas.get(key3).add(getGraphKey(position2));
-		}
+		network.buildAdjacency();
 	}
 
 	/**
-	 * Method used for building a key from a position. The key includes the
-	 * coordinates of a position.
+	 * Adds the node at position pos to the network, with its point on the
+	 * globe at the render altitude
 	 * 
 	 * @param pos
-	 * @return a string representation of a position
+	 * @return the node id
 	 */
-	private String getGraphKey(Position pos) {
-		return pos.getLatitude().degrees + ";" + pos.getLongitude().degrees;
-	}
-
-	/**
-	 * Converts a string representation of a position into a position
-	 * 
-	 * @param key
-	 * @return the position
-	 */
-	private Position keyToPosition(String key) {
-		String[] coordinates = key.split(";");
-		Position pos = Position.fromDegrees(Double.parseDouble(coordinates[0]),
-				Double.parseDouble(coordinates[1]));
-		return new Position(pos.getLatitude(), pos.getLongitude(),
+	private int addNode(Position pos) {
+		Position nodePos = new Position(pos.getLatitude(), pos.getLongitude(),
 				CustomizableVariables.RENDERALTITUDE);
-	}
-
-	private void buildSegmentMap() {
-		// segmentMap = new HashMap<String, SegmentInfo>();
-		segmentMap = new ConcurrentHashMap<String, SegmentInfo>();
-
-		Iterator<PathExtArea> it = paths.values().iterator();
-		Iterator<PathExtArea> it2 = analysisPaths.values().iterator();
-
-		while (it.hasNext()) {
-
-			PathExtArea path = it.next();
-			PathExtArea path2 = it2.next();
-
-			ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-					.getPositions();
-			int nPos = positions.size();
-			for (int i = 0; i < nPos; ++i) {
-				Position pos = positions.get(i);
-
-				if (i != nPos - 1) {
-					Position end = positions.get(i + 1);
-					segmentMap.put(segmentToKey(pos, end), new SegmentInfo(
-							path, path2, computeDistance(pos, end)));
-				}
-
-				if (i != 0 && !path.isOneway()) {
-					Position end = positions.get(i - 1);
-					segmentMap.put(segmentToKey(pos, end), new SegmentInfo(
-							path, path2, computeDistance(pos, end)));
-				}
-			}
-		}
-
-		// printAllInfo();
+		return network.addNode(pos.getLatitude().degrees,
+				pos.getLongitude().degrees, GlobalInstances.getGlobe()
+						.computePointFromPosition(nodePos));
 	}
 
 	/**
-	 * Builds a key from the two points identifying a segment The key is built
-	 * using the coordinates of the two points
+	 * The edge of the segment identified by positions p1 and p2
 	 * 
 	 * @param p1
-	 *            position one
 	 * @param p2
-	 *            position two
-	 * @return
+	 * @return the edge, -1 if the segment is not in the network
 	 */
-	private String segmentToKey(Position p1, Position p2) {
-		return getGraphKey(p1) + ";" + getGraphKey(p2);
+	private int getEdge(Position p1, Position p2) {
+		return network.findEdge(network.getNode(p1), network.getNode(p2));
 	}
 
 	/**
@@ -470,54 +360,60 @@ public class GraphManager {
 		// my modify
 		if ((p1 != null) & (p2 != null) & (p3 != null)) {
 
-			decrementSegment(car, p1, p2);
-			incrementSegment(car, p2, p3);
-
-			String key1 = segmentToKey(p1, p2);
-			String key2 = segmentToKey(p2, p3);
-
-			if ((key1 != null) & (key2 != null)) {
-
-				SegmentInfo seg1 = segmentMap.get(key1);
-				SegmentInfo seg2 = segmentMap.get(key2);
-
-				if ((seg1 != null) && (seg2 != null)) {
-					PathExtArea path1 = seg1.path;
-					PathExtArea path2 = seg2.path;
-					if (path1 != path2) {
-						/*
-						 * The visual attributes of the paths are set
-						 * considering the number of cars in them and their
-						 * length.
-						 */
-						double w1 = computeWidth(totalCarsInPath(path1),
-								path1.getLength());
-						double w2 = computeWidth(totalCarsInPath(path2),
-								path2.getLength());
-						path1.getAttributes().setOutlineWidth(w1);
-						path2.getAttributes().setOutlineWidth(w2);
-
-						//int currentCountedCarsInPath = seg1.counter;
-						//int currentCountedCarsInPath2 = seg2.counter;
-
-						int currentCountedCarsInPath = currentCarsInPath(path1);
-						int currentCountedCarsInPath2 = currentCarsInPath(path2);
-						
-						int totalCountedCarsInPath = totalCountedCarsInPath(path1)[2];
-						int totalCountedCarsInPath2 = totalCountedCarsInPath(path2)[2];
-
-						StreetsAnalysisManager.updateStreetAnalysisLayer(seg1,
-								totalCountedCarsInPath,
-								currentCountedCarsInPath);
-						StreetsAnalysisManager.updateStreetAnalysisLayer(seg2,
-								totalCountedCarsInPath2,
-								currentCountedCarsInPath2);
+			int edge1 = getEdge(p1, p2);
+			int edge2 = getEdge(p2, p3);
 
-					}
+			decrementSegment(car, edge1);
+			incrementSegment(car, edge2);
+		}
+	}
 
+	/**
+	 * Sets the visual attributes of the paths, and of their analysis paths,
+	 * from the cars counted in a snapshot: the width of a path from the number
+	 * of cars in it and its length, the elevation of the analysis path from
+	 * the cars entered in it and its colour from its most crowded segment. Only
+	 * the paths whose counts changed since the last call are updated.
+	 * 
+	 * It must be called on the rendering thread, the simulation thread does
+	 * not touch the paths.
+	 * 
+	 * @param snapshot
+	 */
+	public void updatePathAttributes(CarSnapshot snapshot) {
+		for (Map.Entry<PathExtArea, int[][]> entry : pathEdges.entrySet()) {
+			PathExtArea path = entry.getKey();
+			int[][] edges = entry.getValue();
+
+			// cars in the normal way, in the opposite way, entered, maximum
+			int[] counts = new int[4];
+			for (int way = 0; way < 2; ++way) {
+				for (int edge : edges[way]) {
+					int cars = snapshot.getCars(edge);
+					counts[way] += cars;
+					counts[2] += snapshot.getTotalCars(edge);
+					counts[3] = Math.max(counts[3], cars);
 				}
 			}
 
+			int[] rendered = renderedCounts.get(path);
+			if (rendered == null) {
+				// the look the paths are built with
+				rendered = new int[4];
+				renderedCounts.put(path, rendered);
+			}
+			if (rendered[0] != counts[0] || rendered[1] != counts[1]) {
+				path.getAttributes().setOutlineWidth(
+						computeWidth(counts, path.getLength()));
+			}
+			if (rendered[2] != counts[2] || rendered[3] != counts[3]) {
+				PathExtArea analysisPath = analysisPaths.get(path.getId());
+				if (analysisPath != null) {
+					StreetsAnalysisManager.updateStreetAnalysisLayer(
+							analysisPath, counts[2], counts[3]);
+				}
+			}
+			System.arraycopy(counts, 0, rendered, 0, counts.length);
 		}
 	}
 
@@ -529,110 +425,37 @@ public class GraphManager {
 	 * @return true if the segment is in the graph, false otherwise
 	 */
 	public boolean segmentExists(Position p1, Position p2) {
-		return segmentMap.containsKey(segmentToKey(p1, p2));
+		return getEdge(p1, p2) != -1;
 	}
 
 	/**
-	 * Adds a car to the segment identified by position p1 and p2
+	 * Adds a car to the segment of an edge. Its weight for the shortest paths
+	 * grows with the cars in it.
 	 * 
 	 * @param car
-	 * @param p1
-	 * @param p2
+	 * @param edge
+	 *            the edge, nothing is done if -1
 	 */
-	private void incrementSegment(Car car, Position p1, Position p2) {
-		String key = segmentToKey(p1, p2);
-		SegmentInfo info = segmentMap.get(key);
-
-		if (info != null) {
-
-			info.counter++;
-			info.total_counter++;
+	private void incrementSegment(Car car, int edge) {
+		if (edge != -1) {
+			network.addCar(edge);
 			// Add a car at the beginning of the list
-			info.cars.add(0, car);
-
-			if (!dangerAreasIncluded) {
-				// Update edge weight
-				MyEdge edge = jGraph.getEdge(getGraphKey(p1), getGraphKey(p2));
-				double newWeight = edge.getLength()
-						+ CustomizableVariables.PER_CAR_PENALTY * info.counter;
-				jGraph.setEdgeWeight(edge, newWeight);
-
-			} else {
-
-		MyEdge edge = jGraphWithoutDangerAreas.getEdge(getGraphKey(p1),
-						getGraphKey(p2));
-
-				if (edge == null) {
-					System.out.println("this edge doesn't exist in the graph");
-				}
-
-				double edgeLength = edge.getLength();
-				int numCars = info.counter;
-				double newWeight = edgeLength
-						+ CustomizableVariables.PER_CAR_PENALTY * numCars;
-
-				jGraphWithoutDangerAreas.setEdgeWeight(edge, newWeight);
-			}
-
+			network.getSegmentInfo(edge).cars.add(0, car);
 		}
 	}
 
 	/**
-	 * Removes a car from the segment identified by position p1 and p2
+	 * Removes a car from the segment of an edge
 	 * 
 	 * @param car
-	 * @param p1
-	 * @param p2
+	 * @param edge
+	 *            the edge, nothing is done if -1
 	 */
-	private void decrementSegment(Car car, Position p1, Position p2) {
-		String key = segmentToKey(p1, p2);
-		if (key != null) {
-			SegmentInfo info = segmentMap.get(key);
-
-			if (info != null) {
-				boolean isRemoved = info.cars.remove(car);
-
-				if (isRemoved) {
-					info.counter--;
-
-					if (!dangerAreasIncluded) {
-						// Update edge weight
-						MyEdge edge = jGraph.getEdge(getGraphKey(p1),
-								getGraphKey(p2));
-						double newWeight = edge.getLength()
-								+ CustomizableVariables.PER_CAR_PENALTY
-								* info.counter;
-
-						if (newWeight <= 0) {
-							System.out.println("isRemoved: " + isRemoved);
-							System.out.println("edge.getLength(): "
-									+ edge.getLength());
-							System.out.println("info.counter: " + info.counter);
-							System.out.println("WEIGHT < 0: " + newWeight);
-						}
-
-						jGraph.setEdgeWeight(edge, newWeight);
-
-					} else {
-
-				MyEdge edge = jGraphWithoutDangerAreas.getEdge(
-								getGraphKey(p1), getGraphKey(p2));
-						double newWeight = edge.getLength()
-								+ CustomizableVariables.PER_CAR_PENALTY
-								* info.counter;
-
-						if (newWeight <= 0) {
-							System.out.println("isRemoved: " + isRemoved);
-							System.out.println("edge.getLength(): "
-									+ edge.getLength());
-							System.out.println("info.counter: " + info.counter);
-							System.out.println("WEIGHT < 0: " + newWeight);
-						}
-
-						jGraphWithoutDangerAreas.setEdgeWeight(edge, newWeight);
-					}
-
-				}
+	private void decrementSegment(Car car, int edge) {
+		if (edge != -1) {
+			boolean isRemoved = network.getSegmentInfo(edge).cars.remove(car);
+			if (isRemoved) {
+				network.removeCar(edge);
 			}
 		}
 	}
@@ -656,10 +479,10 @@ public class GraphManager {
 																// passable in
 																// the segments
 
-		String key = segmentToKey(p1, p2);
+		int edge = getEdge(p1, p2);
 
-		if (key != null) {
-			SegmentInfo info = segmentMap.get(key);
+		if (edge != -1) {
+			SegmentInfo info = network.getSegmentInfo(edge);
 			if (info != null) {
 				Integer carIndex = info.cars.indexOf(car); // Position of the
 															// car in the queue
@@ -698,37 +521,31 @@ public class GraphManager {
 	}
 
 	/**
-	 * Add a new car to a segment identified by positions p1 and p2. The visual
-	 * aspect of the segment is updated too
+	 * Add a new car to a segment identified by positions p1 and p2
 	 * 
 	 * @param car
 	 * @param p1
 	 * @param p2
 	 */
 	public void addNewCarToSegment(Car car, Position p1, Position p2) {
-		incrementSegment(car, p1, p2);
-		SegmentInfo pathSI = segmentMap.get(segmentToKey(p1, p2));
-		double w = computeWidth(totalCarsInPath(pathSI.path),
-				pathSI.path.getLength());
-		pathSI.path.getAttributes().setOutlineWidth(w);
+		int edge = getEdge(p1, p2);
+		if (edge != -1) {
+			incrementSegment(car, edge);
+		}
 
 	}
 
 	/**
-	 * Remove a car from the segment identified by positions p1 and p2. The
-	 * visual aspect of the segment is updated too
+	 * Remove a car from the segment identified by positions p1 and p2
 	 * 
 	 * @param car
 	 * @param p1
 	 * @param p2
 	 */
 	public void removeCarFromSegment(Car car, Position p1, Position p2) {
-		decrementSegment(car, p1, p2);
-		SegmentInfo pathSI = segmentMap.get(segmentToKey(p1, p2));
-		if (pathSI != null) {
-			double w = computeWidth(totalCarsInPath(pathSI.path),
-					pathSI.path.getLength());
-			pathSI.path.getAttributes().setOutlineWidth(w);
+		int edge = getEdge(p1, p2);
+		if (edge != -1) {
+			decrementSegment(car, edge);
 		}
 
 	}
@@ -741,19 +558,11 @@ public class GraphManager {
 	 *         ret[2] total number of cars
 	 */
 	public int[] totalCarsInPath(PathExtArea path) {
-		ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-				.getPositions();
+		int[][] edges = pathEdges.get(path);
 		int ret[] = new int[3];
-		ret[0] = ret[1] = ret[2] = 0;
-		int nPos = positions.size();
-		for (int i = 0; i < nPos; ++i) {
-			if (i != nPos - 1) {
-				ret[0] += segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i + 1))).counter;
-			}
-			if (i != 0 && !path.isOneway()) {
-				ret[1] += segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i - 1))).counter;
+		for (int way = 0; way < 2; ++way) {
+			for (int edge : edges[way]) {
+				ret[way] += network.getCars(edge);
 			}
 		}
 
@@ -761,20 +570,20 @@ public class GraphManager {
 		return ret;
 	}
 
+	/**
+	 * Computes the number of cars that entered a path since the network was
+	 * built.
+	 * 
+	 * @param path
+	 * @return ret[0] cars in the normal way, ret[1] cars in the opposite way,
+	 *         ret[2] total number of cars
+	 */
 	public int[] totalCountedCarsInPath(PathExtArea path) {
-		ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-				.getPositions();
+		int[][] edges = pathEdges.get(path);
 		int ret[] = new int[3];
-		ret[0] = ret[1] = ret[2] = 0;
-		int nPos = positions.size();
-		for (int i = 0; i < nPos; ++i) {
-			if (i != nPos - 1) {
-				ret[0] += segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i + 1))).total_counter;
-			}
-			if (i != 0 && !path.isOneway()) {
-				ret[1] += segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i - 1))).total_counter;
+		for (int way = 0; way < 2; ++way) {
+			for (int edge : edges[way]) {
+				ret[way] += network.getTotalCars(edge);
 			}
 		}
 
@@ -782,27 +591,21 @@ public class GraphManager {
 		return ret;
 	}
 
+	/**
+	 * The number of cars in the most crowded segment of a path
+	 * 
+	 * @param path
+	 * @return the maximum number of cars in a segment of the path
+	 */
 	public int currentCarsInPath(PathExtArea path) {
-		ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-				.getPositions();
-		int numMaxCars=0;
-		
-		int nPos = positions.size();
-		for (int i = 0; i < nPos; ++i) {
-			if (i != nPos - 1) {
-				int count = segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i + 1))).counter;
-				if(count>numMaxCars){numMaxCars=count;}
-							}
-			if (i != 0 && !path.isOneway()) {
-				int count = segmentMap.get(segmentToKey(positions.get(i),
-						positions.get(i - 1))).counter;
-				if(count>numMaxCars){numMaxCars=count;
-				
+		int[][] edges = pathEdges.get(path);
+		int numMaxCars = 0;
+		for (int way = 0; way < 2; ++way) {
+			for (int edge : edges[way]) {
+				numMaxCars = Math.max(numMaxCars, network.getCars(edge));
 			}
 		}
-		}
-		
+
 		return numMaxCars;
 	}
 	
@@ -835,240 +638,121 @@ public class GraphManager {
 		return width;
 	}
 
-	/*
-	 * JGraph related code
-	 */
-
 	/**
-	 * Builds a specular graph using JGraphT objects
+	 * Flags the edges of the paths inside a "dangerous" area. While the danger
+	 * areas are included, cars are neither routed through these edges nor
+	 * choose them at a crossing
 	 */
-	private void buildJGraph() {
-
-		System.out.println("BUILD JGRAPH");
-
-		jGraph = new DefaultDirectedWeightedGraph<String, MyEdge>(MyEdge.class);
-
-		for (PathExtArea path : paths.values()) {
-			ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-					.getPositions();
-			int nPos = positions.size();
-
-			for (Position position : positions) {
-				String key = getGraphKey(position);
-				if (!jGraph.containsVertex(key)) {
-					jGraph.addVertex(key);
-				}
-			}
-
-			for (int i = 0; i < nPos; ++i) {
-				Position pos = positions.get(i);
-
-				if (i != nPos - 1) {
-					String v1 = getGraphKey(pos);
-					String v2 = getGraphKey(positions.get(i + 1));
-					MyEdge edge = new MyEdge();
-					jGraph.addEdge(v1, v2, edge);
-
-					double edgeLength = computeDistance(pos,
-							positions.get(i + 1));
-					edge.setLength(edgeLength);
-					jGraph.setEdgeWeight(edge, edgeLength);
-				}
-
-				if (i != 0 && !path.isOneway()) {
-					String v1 = getGraphKey(pos);
-					String v2 = getGraphKey(positions.get(i - 1));
-					MyEdge edge = new MyEdge();
-					jGraph.addEdge(v1, v2, edge);
-
-					double edgeLength = computeDistance(pos,
-							positions.get(i - 1));
-					edge.setLength(edgeLength);
-					jGraph.setEdgeWeight(edge, edgeLength);
-				}
-			}
-		}
-	}
-
-	public void buildJGraphWithoutDangerAreas() {
-
-		System.out.println("BUILD JGRAPH with dangerous areas");
-		
-		jGraphWithoutDangerAreas = new DefaultDirectedWeightedGraph<String, MyEdge>(
-				MyEdge.class);
-
-		for (PathExtArea path : paths.values()) {
-
-			if (!path.isDangerArea()) {
-				ArrayList<? extends Position> positions = (ArrayList<? extends Position>) path
-						.getPositions();
-				int nPos = positions.size();
-
-				for (Position position : positions) {
-					String key = getGraphKey(position);
-					if (!jGraphWithoutDangerAreas.containsVertex(key)) {
-						jGraphWithoutDangerAreas.addVertex(key);
-					}
-				}
-
-				for (int i = 0; i < nPos; ++i) {
-					Position pos = positions.get(i);
-
-					if (i != nPos - 1) {
-						String v1 = getGraphKey(pos);
-						String v2 = getGraphKey(positions.get(i + 1));
-						MyEdge edge = new MyEdge();
-						jGraphWithoutDangerAreas.addEdge(v1, v2, edge);
-
-						double edgeLength = computeDistance(pos,
-								positions.get(i + 1));
-						edge.setLength(edgeLength);
-						jGraphWithoutDangerAreas
-								.setEdgeWeight(edge, edgeLength);
-					}
-
-					if (i != 0 && !path.isOneway()) {
-						String v1 = getGraphKey(pos);
-						String v2 = getGraphKey(positions.get(i - 1));
-						MyEdge edge = new MyEdge();
-						jGraphWithoutDangerAreas.addEdge(v1, v2, edge);
-
-						double edgeLength = computeDistance(pos,
-								positions.get(i - 1));
-						edge.setLength(edgeLength);
-						jGraphWithoutDangerAreas
-								.setEdgeWeight(edge, edgeLength);
-					}
-				}
-			}
+	public void updateDangerAreas() {
+		int numEdges = network.getNumEdges();
+		for (int edge = 0; edge < numEdges; ++edge) {
+			network.setDanger(edge,
+					network.getSegmentInfo(edge).path.isDangerArea());
 		}
 	}
 
 	public int getNumVertex() {
-		if (!dangerAreasIncluded) {
-			return jGraph.vertexSet().size();
-		} else {
-			// System.out.println("DANGER!!");
-			return jGraphWithoutDangerAreas.vertexSet().size();
-		}
-
+		return network.getNumNodes();
 	}
 
 	/**
-	 * Adds an intermediate node between two positions p1 and p2.
+	 * Adds an intermediate node between two positions p1 and p2. The segment
+	 * (p1, p2) is replaced by the segments (p1, newPos) and (newPos, p2), and
+	 * so is the opposite one if the path is not one way. The cars already in
+	 * the old segment finish it. Nothing is done if there is no such segment
+	 * or newPos is already a node.
 	 * 
 	 * @param p1
 	 * @param p2
 	 * @param newPos
 	 */
-	public void addNodeInJGraph(Position p1, Position p2, Position newPos) {
+	public void addNodeInSegment(Position p1, Position p2, Position newPos) {
+		int v1 = network.getNode(p1);
+		int v2 = network.getNode(p2);
+		int edge = network.findEdge(v1, v2);
+		if (edge == -1 || network.getNode(newPos) != -1) {
+			return;
+		}
 
-		SegmentInfo segmentInfo = segmentMap.get(segmentToKey(p1, p2));
+		SegmentInfo segmentInfo = network.getSegmentInfo(edge);
 		PathExtArea path = segmentInfo.path;
 		PathExtArea analysisPath = segmentInfo.analysisPath;
 
-		String v1 = getGraphKey(p1);
-		String v2 = getGraphKey(p2);
-		String newV = getGraphKey(newPos);
-
-		if (!dangerAreasIncluded) {
-
-			jGraph.addVertex(newV);
-
-			MyEdge edge = new MyEdge();
-			jGraph.addEdge(v1, newV, edge);
-
-			double edgeLength = computeDistance(p1, newPos);
-			edge.setLength(edgeLength);
-			jGraph.setEdgeWeight(edge, edgeLength);
-
-			segmentMap.put(segmentToKey(p1, newPos), new SegmentInfo(path,
-					analysisPath, edgeLength));
-
-			edge = new MyEdge();
-			jGraph.addEdge(newV, v2, edge);
-
-			edgeLength = computeDistance(newPos, p2);
-			edge.setLength(edgeLength);
-			jGraph.setEdgeWeight(edge, edgeLength);
-
-			segmentMap.put(segmentToKey(newPos, p2), new SegmentInfo(path,
-					analysisPath, edgeLength));
-
-			if (!path.isOneway()) {
-				edge = new MyEdge();
-				jGraph.addEdge(newV, v1, edge);
-
-				edgeLength = computeDistance(newPos, p1);
-				edge.setLength(edgeLength);
-				jGraph.setEdgeWeight(edge, edgeLength);
-
-				segmentMap.put(segmentToKey(newPos, p1), new SegmentInfo(path,
-						analysisPath, edgeLength));
+		int newV = addNode(newPos);
+
+		double edgeLength = computeDistance(p1, newPos);
+		int first = network.addEdge(v1, newV, edgeLength, new SegmentInfo(
+				path, analysisPath, edgeLength));
+
+		edgeLength = computeDistance(newPos, p2);
+		int second = network.addEdge(newV, v2, edgeLength, new SegmentInfo(
+				path, analysisPath, edgeLength));
+		network.setRemoved(edge);
+		replacePathEdge(path, edge, first, second);
+
+		int oppositeEdge = network.findEdge(v2, v1);
+		if (oppositeEdge != -1) {
+			edgeLength = computeDistance(newPos, p1);
+			first = network.addEdge(newV, v1, edgeLength, new SegmentInfo(
+					path, analysisPath, edgeLength));
+
+			edgeLength = computeDistance(p2, newPos);
+			second = network.addEdge(v2, newV, edgeLength, new SegmentInfo(
+					path, analysisPath, edgeLength));
+			network.setRemoved(oppositeEdge);
+			replacePathEdge(path, oppositeEdge, first, second);
+		}
 
-				edge = new MyEdge();
-				jGraph.addEdge(v2, newV, edge);
+		network.buildAdjacency();
+		updateDangerAreas();
+	}
 
-				edgeLength = computeDistance(p2, newPos);
-				edge.setLength(edgeLength);
-				jGraph.setEdgeWeight(edge, edgeLength);
+	/**
+	 * Replaces an edge of a path with the two edges it was split in, so that
+	 * the cars on them are still counted for the path. A new array is put in
+	 * pathEdges, the rendering thread may be reading the old one.
+	 * 
+	 * @param path
+	 * @param edge
+	 *            the removed edge
+	 * @param first
+	 * @param second
+	 *            the edges replacing it, in the order of the path positions
+	 */
+	private void replacePathEdge(PathExtArea path, int edge, int first,
+			int second) {
+		int[][] edges = pathEdges.get(path);
+		if (edges == null) {
+			return;
+		}
 
-				segmentMap.put(segmentToKey(p2, newPos), new SegmentInfo(path,
-						analysisPath, edgeLength));
+		int[][] newEdges = new int[2][];
+		for (int way = 0; way < 2; ++way) {
+			int index = -1;
+			for (int i = 0; i < edges[way].length; ++i) {
+				if (edges[way][i] == edge) {
+					index = i;
+				}
 			}
-		} else {
-
-		jGraphWithoutDangerAreas.addVertex(newV);
-
-			MyEdge edge = new MyEdge();
-			jGraphWithoutDangerAreas.addEdge(v1, newV, edge);
-
-			double edgeLength = computeDistance(p1, newPos);
-			edge.setLength(edgeLength);
-			jGraphWithoutDangerAreas.setEdgeWeight(edge, edgeLength);
-
-			segmentMap.put(segmentToKey(p1, newPos), new SegmentInfo(path,
-					analysisPath, edgeLength));
-
-			edge = new MyEdge();
-			jGraphWithoutDangerAreas.addEdge(newV, v2, edge);
-
-			edgeLength = computeDistance(newPos, p2);
-			edge.setLength(edgeLength);
-			jGraphWithoutDangerAreas.setEdgeWeight(edge, edgeLength);
-
-			segmentMap.put(segmentToKey(newPos, p2), new SegmentInfo(path,
-					analysisPath, edgeLength));
-
-			if (!path.isOneway()) {
-				edge = new MyEdge();
-				jGraphWithoutDangerAreas.addEdge(newV, v1, edge);
-
-				edgeLength = computeDistance(newPos, p1);
-				edge.setLength(edgeLength);
-				jGraphWithoutDangerAreas.setEdgeWeight(edge, edgeLength);
-
-				segmentMap.put(segmentToKey(newPos, p1), new SegmentInfo(path,
-						analysisPath, edgeLength));
-
-				edge = new MyEdge();
-				jGraphWithoutDangerAreas.addEdge(v2, newV, edge);
-
-				edgeLength = computeDistance(p2, newPos);
-				edge.setLength(edgeLength);
-				jGraphWithoutDangerAreas.setEdgeWeight(edge, edgeLength);
-
-				segmentMap.put(segmentToKey(p2, newPos), new SegmentInfo(path,
-						analysisPath, edgeLength));
+			if (index == -1) {
+				newEdges[way] = edges[way];
+				continue;
 			}
+			int[] wayEdges = new int[edges[way].length + 1];
+			System.arraycopy(edges[way], 0, wayEdges, 0, index);
+			wayEdges[index] = first;
+			wayEdges[index + 1] = second;
+			System.arraycopy(edges[way], index + 1, wayEdges, index + 2,
+					edges[way].length - index - 1);
+			newEdges[way] = wayEdges;
 		}
-
+		pathEdges.put(path, newEdges);
 	}
 
 	public void renderPathsInAreasLayer() {
 
 		this.layer_areas = new RenderableLayer();
-		GlobalInstances.getWwd().getModel().getLayers().add(layer_areas);
+		GlobalInstances.addLayer(layer_areas);
 
 		layer_areas.removeAllRenderables();
 		layer_areas.setName("Streets with Areas");
@@ -1097,21 +781,15 @@ public class GraphManager {
 	 * @return the adjacent nodes of pos
 	 */
 	public List<Position> reachableFrom(Position pos) {
-		String key = getGraphKey(pos);
+		int node = network.getNode(pos);
 		List<Position> positions = new ArrayList<Position>();
 
-		if (!dangerAreasIncluded) {
-			if (graph.containsKey(key)) {
-				Set<String> adjacents = graph.get(key);
-				for (String adjacent : adjacents) {
-					positions.add(keyToPosition(adjacent));
-				}
-			}
-		} else {
-			if (graphWithoutDangerAreas.containsKey(key)) {
-				Set<String> adjacents = graphWithoutDangerAreas.get(key);
-				for (String adjacent : adjacents) {
-					positions.add(keyToPosition(adjacent));
+		if (node != -1) {
+			int numOutEdges = network.getNumOutEdges(node);
+			for (int i = 0; i < numOutEdges; ++i) {
+				int edge = network.getOutEdge(node, i);
+				if (network.isOpen(edge)) {
+					positions.add(network.getPosition(network.getTarget(edge)));
 				}
 			}
 		}
@@ -1120,52 +798,64 @@ public class GraphManager {
 	}
 
 	/**
-	 * Computes the best path between position pos and dest using segments
-	 * weights
+	 * Returns the next node of the route of a car at position pos towards
+	 * dest. The car keeps following its route while it is valid, i.e. the
+	 * segments in front of it did not get too crowded, otherwise it takes the
+	 * best route from pos using segments weights
 	 * 
+	 * @param car
 	 * @param pos
 	 * @param dest
-	 * @return the list of positions of the best path. Returs null if the path
+	 * @return a list with the next position of the route. Empty if the route
 	 *         does not exist
 	 */
-	public List<Position> getNextNodeForDestination(Position pos, Position dest) {
-		List<MyEdge> edges = null;
-		if (!dangerAreasIncluded) {
-			edges = DijkstraShortestPath.findPathBetween(jGraph,
-					getGraphKey(pos), getGraphKey(dest));
-		} else {
-			edges = DijkstraShortestPath.findPathBetween(
-					jGraphWithoutDangerAreas, getGraphKey(pos),
-					getGraphKey(dest));
+	public List<Position> getNextNodeForDestination(Car car, Position pos,
+			Position dest) {
+		int from = network.getNode(pos);
+		int to = network.getNode(dest);
+
+		Route route = car.getRoute();
+		int step = car.getRouteStep();
+		if (route == null || route.getTarget() != to
+				|| step >= route.getNumEdges()
+				|| network.getSource(route.getEdge(step)) != from
+				|| !planner.isValid(route, step)) {
+			route = planner.getRoute(from, to);
+			step = 0;
 		}
 
-		String nextNode = (String) edges.get(0).getB();
 		List<Position> positions = new ArrayList<Position>();
-		positions.add(keyToPosition(nextNode));
+		if (route != null && step < route.getNumEdges()) {
+			positions.add(network.getPosition(network.getTarget(route
+					.getEdge(step))));
+			car.setRoute(route, step + 1);
+		}
 
 		return positions;
 	}
 
+	/**
+	 * Computes the best path between position pos and dest using segments
+	 * weights
+	 * 
+	 * @param pos
+	 * @param dest
+	 * @return the list of positions of the best path. Returs null if the path
+	 *         does not exist
+	 */
 	public List<Position> getNextNodesForDestination(Position pos, Position dest) {
-		List<MyEdge> edges = null;
-		if (!dangerAreasIncluded) {
-			edges = DijkstraShortestPath.findPathBetween(jGraph,
-					getGraphKey(pos), getGraphKey(dest));
-		} else {
-			edges = DijkstraShortestPath.findPathBetween(
-					jGraphWithoutDangerAreas, getGraphKey(pos),
-					getGraphKey(dest));
-		}
+		Route route = planner.getRoute(network.getNode(pos),
+				network.getNode(dest));
 
-		List<Position> positions = new ArrayList<Position>();
-
-		if (edges == null) {
+		if (route == null) {
 			return null;
 		}
 
-		for (MyEdge edge : edges) {
-			String nextNode = (String) edge.getB();
-			positions.add(keyToPosition(nextNode));
+		List<Position> positions = new ArrayList<Position>(
+				route.getNumEdges());
+		for (int step = 0; step < route.getNumEdges(); ++step) {
+			positions.add(network.getPosition(network.getTarget(route
+					.getEdge(step))));
 		}
 		return positions;
 	}
@@ -1176,17 +866,17 @@ public class GraphManager {
 	 * @return a random position from the graph
 	 */
 	public Position getRandomPosition() {
-		Random generator = new Random();
-
-		if (!dangerAreasIncluded) {
-			Object[] array = graph.keySet().toArray();
-			String key = (String) array[generator.nextInt(array.length)];
-			return keyToPosition(key);
-		} else {
-			Object[] array = graphWithoutDangerAreas.keySet().toArray();
-			String key = (String) array[generator.nextInt(array.length)];
-			return keyToPosition(key);
+		Random generator = GlobalInstances.getRandom();
+		int numNodes = network.getNumNodes();
+		int node = generator.nextInt(numNodes);
+
+		if (dangerAreasIncluded) {
+			// The first node after it still having a way out
+			for (int i = 0; i < numNodes && !network.hasOpenOutEdge(node); ++i) {
+				node = (node + 1) % numNodes;
+			}
 		}
+		return network.getPosition(node);
 	}
 
 	/**
@@ -1195,13 +885,31 @@ public class GraphManager {
 	 * @return the same position from the graph
 	 */
 	public Position getFixedPosition() {
-		if (!dangerAreasIncluded) {
-			String key = (String) graph.keySet().toArray()[16];
-			return keyToPosition(key);
-		} else {
-			String key = (String) graphWithoutDangerAreas.keySet().toArray()[16];
-			return keyToPosition(key);
+		return network.getPosition(Math.min(16, network.getNumNodes() - 1));
+	}
+
+	/**
+	 * Finds the path passing nearest to a position, comparing the position
+	 * with the points of every path
+	 * 
+	 * @param pos
+	 * @return the nearest path, null if there are no paths
+	 */
+	public PathExtArea getNearestPath(Position pos) {
+		Vec4 point = GlobalInstances.getGlobe().computePointFromPosition(pos);
+		PathExtArea nearestPath = null;
+		double distance = Double.MAX_VALUE;
+		for (PathExtArea path : paths.values()) {
+			for (Position pathPos : path.getPositions()) {
+				double newDistance = GlobalInstances.getGlobe()
+						.computePointFromPosition(pathPos).distanceTo3(point);
+				if (newDistance < distance) {
+					distance = newDistance;
+					nearestPath = path;
+				}
+			}
 		}
+		return nearestPath;
 	}
 
 	/**
@@ -1282,10 +990,11 @@ public class GraphManager {
 	public void printCars() {
 		System.out
 				.println("-------------------PRINT INFO------------------------");
-		for (Entry<String, SegmentInfo> entry : segmentMap.entrySet()) {
-			if (entry.getValue().total_counter > 0) {
-				System.out.println(entry.getValue().path.getName() + ": "
-						+ entry.getValue().total_counter);
+		int numEdges = network.getNumEdges();
+		for (int edge = 0; edge < numEdges; ++edge) {
+			if (network.getTotalCars(edge) > 0) {
+				System.out.println(network.getSegmentInfo(edge).path.getName()
+						+ ": " + network.getTotalCars(edge));
 			}
 		}
 		System.out
@@ -1295,9 +1004,10 @@ public class GraphManager {
 	public void printAllInfo() {
 		System.out
 				.println("-------------------PRINT ALL INFO------------------------");
-		for (Entry<String, SegmentInfo> entry : segmentMap.entrySet()) {
-			System.out.println(entry.getValue().path.getName() + ": "
-					+ entry.getValue().total_counter);
+		int numEdges = network.getNumEdges();
+		for (int edge = 0; edge < numEdges; ++edge) {
+			System.out.println(network.getSegmentInfo(edge).path.getName()
+					+ ": " + network.getTotalCars(edge));
 
 		}
 		System.out
@@ -1312,9 +1022,9 @@ public class GraphManager {
 	 * @return the name of the path. An empty string if the path does not exist
 	 */
 	public String lookUpSegment(Position p1, Position p2) {
-		String key = segmentToKey(p1, p2);
-		if (segmentMap.containsKey(key)) {
-			return segmentMap.get(key).path.getName();
+		int edge = getEdge(p1, p2);
+		if (edge != -1) {
+			return network.getSegmentInfo(edge).path.getName();
 		}
 		return "";
 	}
@@ -1325,9 +1035,7 @@ public class GraphManager {
 	public void reset() {
 		buildRenderablePaths(placemarks);
 		buildRenderableAnalysisPaths(placemarks);
-		buildGraph();
-		buildSegmentMap();
-		buildJGraph();
+		buildRoadNetwork();
 		// renderPaths();
 		renderPathsInAreasLayer();
 		StreetsAnalysisManager.initStreetsAnalysisLayer(analysisPaths);
@@ -1337,22 +1045,17 @@ public class GraphManager {
 		return paths;
 	}
 
-	public Map<String, Set<String>> getGraph() {
-
-		if (!dangerAreasIncluded) {
-			return graph;
-		} else {
-			return graphWithoutDangerAreas;
-		}
-
+	public RoadNetwork getRoadNetwork() {
+		return network;
 	}
 
-	public ConcurrentHashMap<String, SegmentInfo> getSegmentMap() {
-		return segmentMap;
+	public RoutePlanner getRoutePlanner() {
+		return planner;
 	}
 
 	public void setDangerAreasIncluded(boolean dangerAreasIncluded) {
 		this.dangerAreasIncluded = dangerAreasIncluded;
+		network.setDangerAreasIncluded(dangerAreasIncluded);
 	}
 
 }
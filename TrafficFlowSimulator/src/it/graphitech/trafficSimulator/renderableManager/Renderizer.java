@@ -7,7 +7,7 @@ import gov.nasa.worldwind.util.WWMath;
 
 import it.graphitech.trafficSimulator.CustomizableVariables;
 import it.graphitech.trafficSimulator.GlobalInstances;
-import it.graphitech.trafficSimulator.renderable.car.Car;
+import it.graphitech.trafficSimulator.renderable.car.CarSnapshot;
 import it.graphitech.trafficSimulator.renderable.emitter.Emitter;
 import it.graphitech.trafficSimulator.renderable.emitter.ParkingArea;
 
@@ -21,18 +21,18 @@ import java.util.Map;
  */
 public class Renderizer {
 
-	private final String CAR = "CAR";
 	private final String EMITTER = "EMITTER";
 	private final String PARKING_AREA = "PARKING_AREA";
 
 	private Map<Object, Renderable> renderMap; // Renderable objects map
 	private Map<String, RenderableLayer> layers; // Layers map
+	private CarLayer carLayer; // Cars drawn as a batch of points
 
 	public Renderizer() {
 		this.renderMap = new HashMap<Object, Renderable>();
 		this.layers = new HashMap<String, RenderableLayer>();
 
-		RenderableLayer carLayer = new RenderableLayer();
+		this.carLayer = new CarLayer();
 		RenderableLayer emitterLayer = new RenderableLayer();
 		RenderableLayer parkingAreaLayer = new RenderableLayer();
 
@@ -42,7 +42,6 @@ public class Renderizer {
 		parkingAreaLayer.setName("parkingArea");
 		parkingAreaLayer.setEnabled(false);
 
-		this.layers.put(CAR, carLayer);
 		this.layers.put(EMITTER, emitterLayer);
 		this.layers.put(PARKING_AREA, parkingAreaLayer);
 
@@ -52,28 +51,14 @@ public class Renderizer {
 	}
 
 	/**
-	 * Render a car
+	 * Render the cars of a snapshot, in place of the ones of the previous
+	 * snapshot. It can be called from any thread
 	 * 
-	 * @param car
-	 *            car to render
+	 * @param snapshot
+	 *            the cars to render
 	 */
-	public void renderCar(Car car) {
-		if (!this.renderMap.containsKey(car)) {
-			this.renderMap.put(car, car.getRenderable());
-			this.layers.get(CAR).addRenderable(car.getRenderable());
-		}
-	}
-
-	/**
-	 * Remove a car from rendering
-	 * 
-	 * @param car
-	 */
-	public void unrenderCar(Car car) {
-		if (this.renderMap.containsKey(car)) {
-			this.renderMap.remove(car);
-			this.layers.get(CAR).removeRenderable(car.getRenderable());
-		}
+	public void publishCars(CarSnapshot snapshot) {
+		this.carLayer.setSnapshot(snapshot);
 	}
 
 	/**
@@ -108,6 +93,9 @@ public class Renderizer {
 
 	
 	public static void updateParkingAreas() {
+		if (GlobalInstances.getWwd() == null) {
+			return;
+		}
 		RenderableLayer layer =(RenderableLayer)GlobalInstances.getWwd().getModel().getLayers().getLayerByName("parkingArea");
 		if(layer!=null){
 		for(Renderable renderable : layer.getRenderables()){
@@ -155,7 +143,7 @@ public class Renderizer {
 	 * Clean the layers
 	 */
 	public void reset() {
-		this.layers.get(CAR).removeAllRenderables();
+		this.carLayer.setSnapshot(null);
 		this.layers.get(EMITTER).removeAllRenderables();
 	}
 	
@@ -7,28 +7,23 @@ import gov.nasa.worldwind.render.ShapeAttributes;
 import gov.nasa.worldwind.util.WWMath;
 import it.graphitech.trafficSimulator.CustomizableVariables;
 import it.graphitech.trafficSimulator.GlobalInstances;
-import it.graphitech.trafficSimulator.entities.SegmentInfo;
+import it.graphitech.trafficSimulator.entities.RoadNetwork;
 import it.graphitech.trafficSimulator.renderable.PathExtArea;
 
 import java.awt.Color;
-import java.util.Enumeration;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class StreetsAnalysisManager {
 
 	static final RenderableLayer streetsAnalysisLayer = new RenderableLayer();
 
-	public static void updateStreetAnalysisLayer(
-			ConcurrentHashMap<String, SegmentInfo> segmentsInfo) {
+	public static void updateStreetAnalysisLayer(RoadNetwork network) {
 
-		Enumeration<SegmentInfo> segments = segmentsInfo.elements();
+		int numEdges = network.getNumEdges();
+		for (int edge = 0; edge < numEdges; ++edge) {
 
-		while (segments.hasMoreElements()) {
-
-			SegmentInfo segm = segments.nextElement();
-			PathExtArea path = segm.analysisPath;
-			double value = segm.total_counter;
+			PathExtArea path = network.getSegmentInfo(edge).analysisPath;
+			double value = network.getTotalCars(edge);
 
 			path.setIncrementElevation(value / 10);
 			path.getAttributes().setOutlineMaterial(Material.YELLOW);
@@ -38,11 +33,20 @@ public class StreetsAnalysisManager {
 
 	}
 
-	public static void updateStreetAnalysisLayer(SegmentInfo segmentsInfo,
+	/**
+	 * Sets the look of an analysis path. It must be called on the rendering
+	 * thread
+	 * 
+	 * @param path
+	 *            the analysis path
+	 * @param value
+	 *            the cars entered in the path, for its elevation
+	 * @param value2
+	 *            the cars in its most crowded segment, for its colour
+	 */
+	public static void updateStreetAnalysisLayer(PathExtArea path,
 			double value, double value2) {
 
-		PathExtArea path = segmentsInfo.analysisPath;
-
 		path.setIncrementElevation(value / 10);
 		path.getAttributes().setOutlineWidth(0.1);
 		path.setExtrude(true);
@@ -80,8 +84,7 @@ public class StreetsAnalysisManager {
 			Map<String, PathExtArea> analysisPaths) {
 
 		streetsAnalysisLayer.setName("StreetsAnalysisLayer");
-		GlobalInstances.getWwd().getModel().getLayers()
-				.add(streetsAnalysisLayer);
+		GlobalInstances.addLayer(streetsAnalysisLayer);
 
 		streetsAnalysisLayer.setPickEnabled(false);
 